@@ -0,0 +1,53 @@
+package jay.audio.roomaudio.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.model.RoomLayout;
+
+// Loading a room file (text or binary) and scaling it onto the grid.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class LoadBenchmark {
+    @Param({"400x300", "1024x1024", "2048x2048", "4096x4096"})
+    public String size;
+
+    // Relative to the working directory, normally the repository root
+    @Param({"rooms/3.txt"})
+    public String room;
+
+    private File file;
+    private Scene scene;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] wh = size.split("x");
+        file = new File(room);
+        scene = new Scene(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+    }
+
+    @Benchmark
+    public Scene load() throws IOException {
+        scene.applyRoom(RoomLayout.load(file));
+        return scene;
+    }
+}
@@ -0,0 +1,58 @@
+package jay.audio.roomaudio.bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jay.audio.roomaudio.controller.RoomController;
+import jay.audio.roomaudio.view.RoomPanel;
+
+// RoomPanel.paintComponent turning the latest frame into an image, off screen.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class RenderBenchmark {
+    @Param({"400x300", "1024x1024", "2048x2048", "4096x4096"})
+    public String size;
+
+    private RoomPanel panel;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] wh = size.split("x");
+        int width = Integer.parseInt(wh[0]), height = Integer.parseInt(wh[1]);
+        RoomController controller = new RoomController(width, height, false);
+        panel = new RoomPanel(controller, width, height);
+        controller.setRoomPanel(panel);
+        panel.setSize(width, height);
+        graphics = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB).createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void render() {
+        panel.paint(graphics);
+    }
+}
@@ -0,0 +1,91 @@
+package jay.audio.roomaudio.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.StepEngine;
+import jay.audio.roomaudio.model.RoomLayout;
+
+// Solver steps per second for each engine, mode, grid size and room. Every
+// invocation advances STEPS steps, so engines that block steps in time
+// (TILED) run whole blocks; the "cells" counter reports cells per second.
+// Active-region tracking is off so every cell is swept.
+//
+// DISTRIBUTED starts worker JVMs and HIGH_ORDER computes a different
+// stencil, so neither is in the default engine list; name them with -p engine=...
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class StepBenchmark {
+    private static final int STEPS = 8;
+
+    @Param({"400x300", "1024x1024", "2048x2048", "4096x4096"})
+    public String size;
+
+    @Param({"ideal", "realism"})
+    public String mode;
+
+    // Relative to the working directory, normally the repository root
+    @Param({"rooms/3.txt"})
+    public String room;
+
+    @Param({"SERIAL", "PARALLEL", "VECTOR", "FLOAT", "TILED", "OFF_HEAP"})
+    public String engine;
+
+    private int cellsPerStep;
+    private Scene scene;
+    private StepEngine stepEngine;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Cells {
+        public long cells;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] wh = size.split("x");
+        int width = Integer.parseInt(wh[0]), height = Integer.parseInt(wh[1]);
+        cellsPerStep = width * height;
+        scene = new Scene(width, height);
+        scene.applyRoom(RoomLayout.load(new File(room)));
+        scene.setRealismMode(mode.equals("realism"));
+        scene.setActiveRegionTracking(false);
+        scene.getSources().add(width / 2, height / 2);
+        stepEngine = EngineType.valueOf(engine).create(width, height);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stepEngine.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void step(Cells counter) {
+        stepEngine.advance(scene, STEPS);
+        counter.cells += (long) STEPS * cellsPerStep;
+    }
+}
@@ -2,16 +2,24 @@ package jay.audio.roomaudio;
 
 import javax.swing.*;
 import jay.audio.roomaudio.controller.RoomController;
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.source.WaveformType;
 import jay.audio.roomaudio.view.RoomPanel;
 import java.awt.event.*;
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class MainSimulationFrame extends JFrame {
     private RoomController controller;
     private RoomPanel panel;
     private boolean running = true; 
     private boolean dualMode = false;
+    private final Map<EngineType, JRadioButtonMenuItem> engineItems = new EnumMap<>(EngineType.class);
+    private JCheckBoxMenuItem gridFilesItem;
 
     public MainSimulationFrame() {
         setTitle("SIMULATION MODE");
@@ -57,9 +65,40 @@ public class MainSimulationFrame extends JFrame {
         JMenuItem loadRoomItem = new JMenuItem("Load Room");
         loadRoomItem.addActionListener(e -> loadRoom());
 
+        JMenuItem saveCheckpointItem = new JMenuItem("Save Checkpoint");
+        saveCheckpointItem.addActionListener(e -> saveCheckpoint());
+        JMenuItem restoreCheckpointItem = new JMenuItem("Restore Checkpoint");
+        restoreCheckpointItem.addActionListener(e -> restoreCheckpoint());
+
+        JCheckBoxMenuItem trackingItem = new JCheckBoxMenuItem("Skip Quiet Regions", controller.isActiveRegionTracking());
+        trackingItem.addActionListener(e -> controller.setActiveRegionTracking(trackingItem.isSelected()));
+
+        JMenuItem recordItem = new JMenuItem("Record Probes");
+        recordItem.addActionListener(e -> toggleRecording(recordItem));
+
+        JMenuItem reflectionsItem = new JMenuItem("Early Reflections to WAV");
+        reflectionsItem.addActionListener(e -> computeEarlyReflections());
+
+        JMenuItem hybridItem = new JMenuItem("Hybrid Impulse Responses to WAV");
+        hybridItem.addActionListener(e -> computeHybridResponses());
+
+        JMenuItem clearProbesItem = new JMenuItem("Clear Probes");
+        clearProbesItem.addActionListener(e -> {
+            controller.clearProbes();
+            panel.repaint();
+        });
+
         simMenu.add(startStopItem);
         simMenu.add(clearWavesItem);
         simMenu.add(loadRoomItem);
+        simMenu.add(saveCheckpointItem);
+        simMenu.add(restoreCheckpointItem);
+        simMenu.add(trackingItem);
+        simMenu.addSeparator();
+        simMenu.add(recordItem);
+        simMenu.add(reflectionsItem);
+        simMenu.add(hybridItem);
+        simMenu.add(clearProbesItem);
         menuBar.add(simMenu);
 
         // Mode menu: Ideal vs Realism
@@ -79,9 +118,165 @@ public class MainSimulationFrame extends JFrame {
 
         menuBar.add(modeMenu);
 
+        // Engine menu: how each step is computed
+        JMenu engineMenu = new JMenu("Engine");
+        ButtonGroup engineGroup = new ButtonGroup();
+        for (EngineType type : EngineType.values()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(type.getDisplayName(), controller.getEngineType() == type);
+            item.addActionListener(e -> engineChanged(controller.setEngineType(type), "Error switching engine: "));
+            engineGroup.add(item);
+            engineMenu.add(item);
+            engineItems.put(type, item);
+        }
+        engineMenu.addSeparator();
+        gridFilesItem = new JCheckBoxMenuItem("Map Off-heap Grids to Files", controller.getGridDirectory() != null);
+        gridFilesItem.addActionListener(e -> chooseGridDirectory(gridFilesItem));
+        engineMenu.add(gridFilesItem);
+        menuBar.add(engineMenu);
+
+        // Speed menu: solver steps per rendered frame
+        JMenu speedMenu = new JMenu("Speed");
+        ButtonGroup speedGroup = new ButtonGroup();
+        int[] speeds = {0, 1, 4, 16, 64};
+        for (int steps : speeds) {
+            String label = steps == 0 ? "Max" : steps + " steps/frame";
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(label, controller.getStepsPerFrame() == steps);
+            item.addActionListener(e -> controller.setStepsPerFrame(steps));
+            speedGroup.add(item);
+            speedMenu.add(item);
+        }
+        speedMenu.addSeparator();
+        JCheckBoxMenuItem hudItem = new JCheckBoxMenuItem("Show Metrics", panel.isHudVisible());
+        hudItem.addActionListener(e -> panel.setHudVisible(hudItem.isSelected()));
+        speedMenu.add(hudItem);
+        menuBar.add(speedMenu);
+
+        // Source menu: what the clicked sources emit
+        JMenu sourceMenu = new JMenu("Source");
+        ButtonGroup waveformGroup = new ButtonGroup();
+        for (WaveformType type : WaveformType.values()) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(type.getDisplayName(), controller.getWaveformType() == type);
+            item.addActionListener(e -> controller.setWaveformType(type));
+            waveformGroup.add(item);
+            sourceMenu.add(item);
+        }
+        sourceMenu.addSeparator();
+        ButtonGroup frequencyGroup = new ButtonGroup();
+        double[] frequencies = {25, 50, 100, 200};
+        for (double frequency : frequencies) {
+            String label = (int) frequency + " Hz";
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(label, controller.getSourceFrequency() == frequency);
+            item.addActionListener(e -> controller.setSourceFrequency(frequency));
+            frequencyGroup.add(item);
+            sourceMenu.add(item);
+        }
+        menuBar.add(sourceMenu);
+
         return menuBar;
     }
 
+    // Probes are placed with shift-click; each records to its own WAV file
+    private void toggleRecording(JMenuItem recordItem) {
+        try {
+            if (controller.isRecording()) {
+                long dropped = controller.stopRecording();
+                recordItem.setText("Record Probes");
+                if (dropped > 0) {
+                    JOptionPane.showMessageDialog(this, dropped + " probe samples were dropped because the disk "
+                        + "could not keep up; the recordings have gaps (see recording.txt).",
+                        "Recording incomplete", JOptionPane.WARNING_MESSAGE);
+                }
+                return;
+            }
+            JFileChooser fc = new JFileChooser(".");
+            fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            controller.startRecording(fc.getSelectedFile(), false);
+            recordItem.setText("Stop Recording");
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Error recording probes: " + ex.getMessage());
+        }
+    }
+
+    // Image-source impulse responses (third order, one second) for every probe
+    private void computeEarlyReflections() {
+        if (controller.getProbes().length == 0) {
+            JOptionPane.showMessageDialog(this, "Place probes with shift-click first.");
+            return;
+        }
+        JFileChooser fc = new JFileChooser(".");
+        fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File dir = fc.getSelectedFile();
+        controller.computeEarlyReflections(dir, 3, 1.0).whenComplete((n, ex) -> SwingUtilities.invokeLater(() ->
+            JOptionPane.showMessageDialog(this, ex == null
+                ? n + " impulse responses written to " + dir.getName()
+                : "Error computing reflections: " + ex.getMessage())));
+    }
+
+    private void computeHybridResponses() {
+        if (controller.getProbes().length == 0) {
+            JOptionPane.showMessageDialog(this, "Place probes with shift-click first.");
+            return;
+        }
+        JFileChooser fc = new JFileChooser(".");
+        fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File dir = fc.getSelectedFile();
+        controller.computeHybridResponses(dir, 4, 3, 1.0).whenComplete((n, ex) -> SwingUtilities.invokeLater(() ->
+            JOptionPane.showMessageDialog(this, ex == null
+                ? n + " impulse responses written to " + dir.getName()
+                : "Error computing hybrid responses: " + ex.getMessage())));
+    }
+
+    private void chooseGridDirectory(JCheckBoxMenuItem item) {
+        if (!item.isSelected()) {
+            engineChanged(controller.setGridDirectory(null), "Error recreating the off-heap engine: ");
+            return;
+        }
+        JFileChooser fc = new JFileChooser(".");
+        fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            item.setSelected(false);
+            return;
+        }
+        engineChanged(controller.setGridDirectory(fc.getSelectedFile()), "Error recreating the off-heap engine: ");
+    }
+
+    // Once an engine change settles, the menus show the engine and grid files actually in use
+    private void engineChanged(CompletableFuture<EngineType> change, String error) {
+        change.whenComplete((type, ex) -> SwingUtilities.invokeLater(() -> {
+            engineItems.get(controller.getEngineType()).setSelected(true);
+            gridFilesItem.setSelected(controller.getGridDirectory() != null);
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                JOptionPane.showMessageDialog(this, error + cause.getMessage());
+            }
+        }));
+    }
+
+    private void saveCheckpoint() {
+        JFileChooser fc = new JFileChooser(".");
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = fc.getSelectedFile();
+        controller.saveCheckpoint(file).whenComplete((v, ex) -> SwingUtilities.invokeLater(() ->
+            JOptionPane.showMessageDialog(this, ex == null
+                ? "Checkpoint saved: " + file.getName()
+                : "Error saving checkpoint: " + ex.getMessage())));
+    }
+
+    private void restoreCheckpoint() {
+        JFileChooser fc = new JFileChooser(".");
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = fc.getSelectedFile();
+        controller.restoreCheckpoint(file).whenComplete((v, ex) -> SwingUtilities.invokeLater(() -> {
+            if (ex != null) {
+                JOptionPane.showMessageDialog(this, "Error restoring checkpoint: " + ex.getMessage());
+            }
+            panel.repaint();
+        }));
+    }
+
     private void loadRoom() {
         JFileChooser fc = new JFileChooser("rooms");
         int result = fc.showOpenDialog(this);
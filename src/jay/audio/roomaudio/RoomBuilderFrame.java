@@ -4,13 +4,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 
+import jay.audio.roomaudio.model.RoomFile;
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.RoomLayout;
+
 public class RoomBuilderFrame extends JFrame {
     private int width = 20;
     private int height = 15;
@@ -219,6 +221,18 @@ public class RoomBuilderFrame extends JFrame {
         File dir = new File("rooms");
         if(!dir.exists()) dir.mkdirs();
 
+        // Text rooms hold single-digit materials; anything else needs the binary format
+        if (hasMultiDigitMaterials()) {
+            File file = new File(dir, name + ".room");
+            try {
+                RoomFile.write(new RoomLayout(width, height, obstacles, materials), file);
+                JOptionPane.showMessageDialog(this, "Room saved as: " + file.getAbsolutePath());
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Error saving room: " + ex.getMessage());
+            }
+            return;
+        }
+
         File file = new File(dir, name + ".txt");
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
             writer.write(width + " " + height);
@@ -248,38 +262,30 @@ public class RoomBuilderFrame extends JFrame {
         }
     }
 
+    private boolean hasMultiDigitMaterials() {
+        for (int i=0; i<width; i++) {
+            for (int j=0; j<height; j++) {
+                if (materials[i][j] > 9) return true;
+            }
+        }
+        return false;
+    }
+
     private void loadRoom() {
         JFileChooser fc = new JFileChooser("rooms");
         int result = fc.showOpenDialog(this);
         if(result == JFileChooser.APPROVE_OPTION) {
             File file = fc.getSelectedFile();
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String line = br.readLine();
-                if(line==null) throw new IOException("Invalid room file.");
-                String[] parts = line.split(" ");
-                int w = Integer.parseInt(parts[0]);
-                int h = Integer.parseInt(parts[1]);
-                if (w!=width || h!=height) {
+            try {
+                RoomLayout layout = RoomLayout.load(file);
+                if (layout.getWidth()!=width || layout.getHeight()!=height) {
                     throw new IOException("Room dimensions do not match builder dimensions.");
                 }
-
-                // read obstacles
-                for (int j=0; j<height; j++) {
-                    line = br.readLine();
-                    if(line==null || line.length()<width) throw new IOException("Invalid obstacles line.");
-                    for (int i=0; i<width; i++) {
-                        obstacles[i][j] = (line.charAt(i)=='1');
-                    }
-                }
-
-                // read materials
-                for (int j=0; j<height; j++) {
-                    line = br.readLine();
-                    if(line==null || line.length()<width) throw new IOException("Invalid materials line.");
-                    for (int i=0; i<width; i++) {
-                        char c = line.charAt(i);
-                        if(c < '0' || c > '9') throw new IOException("Invalid material digit.");
-                        materials[i][j] = c - '0';
+                CellProperties cells = layout.getCells();
+                for (int i=0; i<width; i++) {
+                    for (int j=0; j<height; j++) {
+                        obstacles[i][j] = cells.isObstacle(i, j);
+                        materials[i][j] = cells.getMaterial(i, j);
                     }
                 }
 
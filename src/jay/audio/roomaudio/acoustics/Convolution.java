@@ -0,0 +1,75 @@
+package jay.audio.roomaudio.acoustics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Offline convolution of whole signals. Each channel's input is cut into
+// segments that are convolved independently (overlap-add at the segment
+// level) with a large-block PartitionedConvolver, so channels and segments all
+// run in parallel; the segment outputs are then summed.
+public class Convolution {
+    private static final int OFFLINE_BLOCK = 4096;
+
+    // Returns one output per input channel, each input.length + ir.length - 1 long
+    public static float[][] convolve(float[][] input, float[] ir, int threads) {
+        int length = input[0].length;
+        int outLength = length + ir.length - 1;
+        // Enough segments to keep every thread busy, but not so short that the IR tail dominates
+        int segments = Math.max(1, Math.min(threads * 2 / input.length + 1, length / (8 * OFFLINE_BLOCK)));
+        int segmentLength = (length + segments - 1) / segments;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<float[]>> parts = new ArrayList<>();
+            for (float[] channel : input) {
+                for (int s=0; s<segments; s++) {
+                    int from = s * segmentLength;
+                    int to = Math.min(length, from + segmentLength);
+                    parts.add(pool.submit(() -> convolveSegment(channel, from, to, ir)));
+                }
+            }
+
+            float[][] out = new float[input.length][outLength];
+            int part = 0;
+            for (int c=0; c<input.length; c++) {
+                for (int s=0; s<segments; s++) {
+                    float[] segment = parts.get(part++).get();
+                    int offset = s * segmentLength;
+                    int count = Math.min(segment.length, outLength - offset);
+                    for (int i=0; i<count; i++) out[c][offset + i] += segment[i];
+                }
+            }
+            return out;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Convolution interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Convolution failed", ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Full convolution of input[from, to) with the IR, (to - from) + ir.length - 1 samples
+    private static float[] convolveSegment(float[] input, int from, int to, float[] ir) {
+        int block = Math.min(OFFLINE_BLOCK, Integer.highestOneBit(Math.max(64, ir.length)));
+        PartitionedConvolver conv = new PartitionedConvolver(ir, block);
+        int total = (to - from) + ir.length - 1;
+        int blocks = (total + block - 1) / block;
+        float[] in = new float[block];
+        float[] out = new float[blocks * block];
+        for (int b=0; b<blocks; b++) {
+            int start = from + b * block;
+            int count = Math.max(0, Math.min(block, to - start));
+            for (int i=0; i<block; i++) in[i] = i < count ? input[start + i] : 0f;
+            conv.process(in, 0, out, b * block);
+        }
+        float[] result = new float[total];
+        System.arraycopy(out, 0, result, 0, total);
+        return result;
+    }
+}
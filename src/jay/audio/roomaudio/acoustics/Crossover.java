@@ -0,0 +1,62 @@
+package jay.audio.roomaudio.acoustics;
+
+// Fourth-order Linkwitz-Riley crossover: each band is two cascaded
+// second-order Butterworth sections. The two outputs are in phase at every
+// frequency and sum to an all-pass copy of the input, so signals split at the
+// same frequency recombine without a dip or bump at the crossover.
+public class Crossover {
+    private static final double Q = Math.sqrt(0.5);
+
+    private final double frequency;
+    // b0, b1, b2, a1, a2, normalised by a0
+    private final double[] low = new double[5], high = new double[5];
+
+    public Crossover(double frequency, double sampleRate) {
+        if (!(frequency > 0 && frequency < sampleRate / 2)) {
+            throw new IllegalArgumentException(String.format(
+                "Crossover must be between 0 and %.1f Hz (Nyquist): %s", sampleRate / 2, frequency));
+        }
+        this.frequency = frequency;
+        double w0 = 2 * Math.PI * frequency / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * Q);
+        double a0 = 1 + alpha;
+        double[] a = {-2 * cos / a0, (1 - alpha) / a0};
+        low[0] = (1 - cos) / 2 / a0;
+        low[1] = (1 - cos) / a0;
+        low[2] = low[0];
+        high[0] = (1 + cos) / 2 / a0;
+        high[1] = -(1 + cos) / a0;
+        high[2] = high[0];
+        low[3] = high[3] = a[0];
+        low[4] = high[4] = a[1];
+    }
+
+    public double[] lowPass(double[] in) {
+        return biquad(biquad(in, low), low);
+    }
+
+    public double[] highPass(double[] in) {
+        return biquad(biquad(in, high), high);
+    }
+
+    // Direct form I, starting from rest
+    private static double[] biquad(double[] in, double[] k) {
+        double[] out = new double[in.length];
+        double x1 = 0, x2 = 0, y1 = 0, y2 = 0;
+        for (int n=0; n<in.length; n++) {
+            double x = in[n];
+            double y = k[0] * x + k[1] * x1 + k[2] * x2 - k[3] * y1 - k[4] * y2;
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+            out[n] = y;
+        }
+        return out;
+    }
+
+    public double getFrequency() {
+        return frequency;
+    }
+}
@@ -0,0 +1,65 @@
+package jay.audio.roomaudio.acoustics;
+
+// In-place iterative radix-2 complex FFT of a fixed power-of-two size, with
+// the bit-reversal permutation and twiddle factors precomputed once. The
+// tables are read-only, so one instance can be shared between threads.
+public class FFT {
+    private final int n;
+    private final int[] bitReverse;
+    private final double[] cos, sin;
+
+    public FFT(int n) {
+        if (n < 2 || Integer.bitCount(n) != 1) throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        this.n = n;
+        int bits = Integer.numberOfTrailingZeros(n);
+        bitReverse = new int[n];
+        for (int i=0; i<n; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new double[n / 2];
+        sin = new double[n / 2];
+        for (int i=0; i<n/2; i++) {
+            cos[i] = Math.cos(2 * Math.PI * i / n);
+            sin[i] = Math.sin(2 * Math.PI * i / n);
+        }
+    }
+
+    public int size() {
+        return n;
+    }
+
+    // Forward transform; the inverse is scaled by 1/n
+    public void transform(double[] re, double[] im, boolean inverse) {
+        for (int i=0; i<n; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        double sign = inverse ? 1 : -1;
+        for (int len=2; len<=n; len<<=1) {
+            int half = len >> 1;
+            int step = n / len;
+            for (int i=0; i<n; i+=len) {
+                for (int k=0, t=0; k<half; k++, t+=step) {
+                    double wr = cos[t], wi = sign * sin[t];
+                    int a = i + k, b = a + half;
+                    double xr = re[b]*wr - im[b]*wi;
+                    double xi = re[b]*wi + im[b]*wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+        if (inverse) {
+            double scale = 1.0 / n;
+            for (int i=0; i<n; i++) {
+                re[i] *= scale;
+                im[i] *= scale;
+            }
+        }
+    }
+}
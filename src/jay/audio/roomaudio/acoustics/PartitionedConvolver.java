@@ -0,0 +1,88 @@
+package jay.audio.roomaudio.acoustics;
+
+import java.util.Arrays;
+
+// Uniformly partitioned overlap-add FFT convolution of a stream with a fixed
+// impulse response. The IR is cut into partitions of `block` samples whose
+// spectra are computed once; every input block is transformed once, kept in a
+// frequency-domain delay line and multiplied against all partitions. Latency
+// is one block and the cost per block is one FFT pair plus P complex MACs,
+// instead of block * irLength multiply-adds in the time domain.
+public class PartitionedConvolver {
+    private final int block;
+    private final FFT fft;
+    private final int partitions;
+    private final double[][] irRe, irIm;
+    private final double[][] fdlRe, fdlIm;
+    private int fdlPos = 0;
+
+    private final double[] bufRe, bufIm;
+    private final double[] accRe, accIm;
+    private final double[] overlap;
+
+    public PartitionedConvolver(float[] ir, int block) {
+        if (Integer.bitCount(block) != 1) throw new IllegalArgumentException("Block size must be a power of two: " + block);
+        this.block = block;
+        this.fft = new FFT(2 * block);
+        this.partitions = Math.max(1, (ir.length + block - 1) / block);
+        int n = 2 * block;
+
+        irRe = new double[partitions][n];
+        irIm = new double[partitions][n];
+        for (int p=0; p<partitions; p++) {
+            int from = p * block;
+            int count = Math.min(block, ir.length - from);
+            for (int i=0; i<count; i++) irRe[p][i] = ir[from + i];
+            fft.transform(irRe[p], irIm[p], false);
+        }
+
+        fdlRe = new double[partitions][n];
+        fdlIm = new double[partitions][n];
+        bufRe = new double[n];
+        bufIm = new double[n];
+        accRe = new double[n];
+        accIm = new double[n];
+        overlap = new double[block];
+    }
+
+    public int getBlockSize() {
+        return block;
+    }
+
+    // Samples of output still to come after the input ends
+    public int getTailLength() {
+        return partitions * block;
+    }
+
+    // Convolves `block` input samples (in may be null for silence) into `block` output samples
+    public void process(float[] in, int inOff, float[] out, int outOff) {
+        int n = 2 * block;
+        double[] xr = fdlRe[fdlPos], xi = fdlIm[fdlPos];
+        for (int i=0; i<block; i++) xr[i] = in == null ? 0 : in[inOff + i];
+        Arrays.fill(xr, block, n, 0.0);
+        Arrays.fill(xi, 0.0);
+        fft.transform(xr, xi, false);
+
+        Arrays.fill(accRe, 0.0);
+        Arrays.fill(accIm, 0.0);
+        for (int p=0; p<partitions; p++) {
+            int slot = fdlPos - p;
+            if (slot < 0) slot += partitions;
+            double[] ar = fdlRe[slot], ai = fdlIm[slot];
+            double[] hr = irRe[p], hi = irIm[p];
+            for (int k=0; k<n; k++) {
+                accRe[k] += ar[k]*hr[k] - ai[k]*hi[k];
+                accIm[k] += ar[k]*hi[k] + ai[k]*hr[k];
+            }
+        }
+        System.arraycopy(accRe, 0, bufRe, 0, n);
+        System.arraycopy(accIm, 0, bufIm, 0, n);
+        fft.transform(bufRe, bufIm, true);
+
+        for (int i=0; i<block; i++) {
+            out[outOff + i] = (float) (bufRe[i] + overlap[i]);
+            overlap[i] = bufRe[block + i];
+        }
+        fdlPos = (fdlPos + 1) % partitions;
+    }
+}
@@ -0,0 +1,43 @@
+package jay.audio.roomaudio.acoustics;
+
+// Band-limited resampling with a Lanczos-windowed sinc. Used to bring an
+// impulse response captured at the solver rate (1/dt) to an audio rate.
+public class Resampler {
+    // Lobes of the windowed sinc on each side
+    private static final int TAPS = 16;
+
+    public static float[] resample(float[] in, double fromRate, double toRate) {
+        if (fromRate == toRate) return in.clone();
+        double ratio = toRate / fromRate;
+        int outLength = (int) Math.ceil(in.length * ratio);
+        float[] out = new float[outLength];
+        // When downsampling, widen the kernel so it also low-passes below the new Nyquist
+        double cutoff = Math.min(1.0, ratio);
+        double gain = cutoff;
+        int reach = (int) Math.ceil(TAPS / cutoff);
+
+        for (int n=0; n<outLength; n++) {
+            double t = n / ratio;
+            int center = (int) Math.floor(t);
+            double sum = 0;
+            for (int k=center-reach+1; k<=center+reach; k++) {
+                if (k < 0 || k >= in.length) continue;
+                double x = (t - k) * cutoff;
+                sum += in[k] * lanczos(x);
+            }
+            out[n] = (float) (sum * gain);
+        }
+        return out;
+    }
+
+    private static double lanczos(double x) {
+        if (Math.abs(x) >= TAPS) return 0.0;
+        return sinc(x) * sinc(x / TAPS);
+    }
+
+    private static double sinc(double x) {
+        if (Math.abs(x) < 1e-12) return 1.0;
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+}
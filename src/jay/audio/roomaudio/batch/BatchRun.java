@@ -0,0 +1,180 @@
+package jay.audio.roomaudio.batch;
+
+import java.io.IOException;
+import java.util.List;
+
+import jay.audio.roomaudio.checkpoint.Checkpoint;
+import jay.audio.roomaudio.checkpoint.CheckpointWriter;
+import jay.audio.roomaudio.engine.Frame;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.StepEngine;
+import jay.audio.roomaudio.metrics.MetricsReport;
+import jay.audio.roomaudio.metrics.SimulationMetrics;
+import jay.audio.roomaudio.model.RoomLayout;
+import jay.audio.roomaudio.source.SourceSet;
+import jay.audio.roomaudio.source.Waveform;
+
+// Executes one RunConfig without any UI and keeps the results in memory.
+public class BatchRun {
+    private static final int CHUNK_STEPS = 64;
+
+    private final RunConfig config;
+    // Already-loaded room, shared between runs of a sweep; loaded from the config if null
+    private final RoomLayout layout;
+
+    private Scene scene;
+    private long steps;
+    // Step the run resumed from, 0 for a fresh run
+    private long firstStep;
+    private double[][] probeSeries;
+    private Frame finalField;
+    private long wallNanos;
+    private final SimulationMetrics metrics = new SimulationMetrics();
+    private MetricsReport metricsReport;
+
+    public BatchRun(RunConfig config) {
+        this(config, null);
+    }
+
+    public BatchRun(RunConfig config, RoomLayout layout) {
+        this.config = config;
+        this.layout = layout;
+    }
+
+    public void run() throws IOException {
+        int width = config.getWidth();
+        int height = config.getHeight();
+        scene = createScene(config, layout);
+        List<int[]> probes = config.getProbes();
+        for (int[] xy : probes) checkInside(scene, xy, "Probe");
+
+        try (StepEngine engine = config.getEngineType().create(width, height,
+                config.getGridDirectory(), config.getDistributedOptions(), config.getEngineThreads())) {
+            firstStep = 0;
+            if (config.getResume() != null) {
+                // The checkpoint's room, sources and mode replace the configured ones
+                firstStep = Checkpoint.restore(config.getResume(), scene, engine);
+            }
+            steps = Math.max(0, config.resolveSteps(scene.getDt()) - firstStep);
+            if (steps > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many steps: " + steps);
+            probeSeries = new double[probes.size()][probes.isEmpty() ? 0 : (int) steps];
+            finalField = new Frame(width, height);
+
+            CheckpointWriter checkpoints = config.getCheckpoint() == null ? null
+                : new CheckpointWriter(config.getCheckpoint(), config.getCheckpointInterval());
+            metrics.setStepSize((long) width * height, scene.getDt());
+            SimulationMetrics.Snapshot before = metrics.snapshot();
+            long start = System.nanoTime();
+            // Chunks keep time-blocked engines efficient while checkpoints stay on schedule
+            int chunk = Math.max(engine.getTimeBlock(), CHUNK_STEPS);
+            for (int done=0; done<steps; ) {
+                int n = (int) Math.min(chunk, steps - done);
+                long chunkStart = System.nanoTime();
+                if (probes.isEmpty()) {
+                    engine.advance(scene, n);
+                } else {
+                    // Probes need every step, so engines that block steps in time run one at a time
+                    for (int i=0; i<n; i++) {
+                        engine.step(scene);
+                        for (int p=0; p<probes.size(); p++) {
+                            int[] xy = probes.get(p);
+                            probeSeries[p][done + i] = engine.sample(xy[0], xy[1]);
+                        }
+                    }
+                }
+                metrics.recordSteps(n, System.nanoTime() - chunkStart);
+                done += n;
+                if (checkpoints != null) checkpoints.maybeCheckpoint(scene, engine);
+            }
+            wallNanos = System.nanoTime() - start;
+            metricsReport = new MetricsReport(before, metrics.snapshot());
+            engine.snapshot(finalField);
+
+            if (checkpoints != null) {
+                checkpoints.close();
+                // The final state, so the run can be extended later
+                Checkpoint.save(config.getCheckpoint(), scene, engine);
+            }
+        }
+    }
+
+    // The configured grid with its room, materials, mode and sources; layout may be null
+    public static Scene createScene(RunConfig config, RoomLayout layout) throws IOException {
+        if (layout == null && config.getRoom() != null) {
+            layout = RoomLayout.load(config.getRoom());
+        }
+        Scene scene;
+        if (layout != null) {
+            // A room that records its cell size sets the grid's dx, and with it dt
+            scene = new Scene(config.getWidth(), config.getHeight(), layout.gridSpacing(config.getWidth()));
+            scene.applyRoom(layout);
+        } else {
+            scene = new Scene(config.getWidth(), config.getHeight());
+        }
+        if (config.getMaterialTable() != null) {
+            scene.setMaterialTable(config.getMaterialTable());
+        }
+        scene.setRealismMode(config.isRealismMode());
+
+        Waveform waveform = Waveform.parse(config.getWaveform(), scene.getDt());
+        for (int[] xy : config.getSources()) {
+            checkInside(scene, xy, "Source");
+            scene.getSources().add(xy[0], xy[1], waveform, SourceSet.DEFAULT_GAIN);
+        }
+        return scene;
+    }
+
+    public static void checkInside(Scene scene, int[] xy, String what) {
+        if (!scene.isInside(xy[0], xy[1])) {
+            throw new IllegalArgumentException(what + " outside the grid: " + xy[0] + "," + xy[1]);
+        }
+    }
+
+    public RunConfig getConfig() {
+        return config;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    // Steps computed by this run
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getFirstStep() {
+        return firstStep;
+    }
+
+    // [probe][step]
+    public double[][] getProbeSeries() {
+        return probeSeries;
+    }
+
+    public float[] getFinalField() {
+        return finalField.getValues();
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    // Live counters, e.g. for registering with JMX before run()
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Over the whole stepping loop; null before run() completes
+    public MetricsReport getMetricsReport() {
+        return metricsReport;
+    }
+
+    public double getStepsPerSecond() {
+        return steps / (wallNanos / 1e9);
+    }
+
+    public double getCellsPerSecond() {
+        return getStepsPerSecond() * config.getWidth() * config.getHeight();
+    }
+}
@@ -0,0 +1,111 @@
+package jay.audio.roomaudio.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.List;
+
+// Command-line entry point for compute nodes: no Swing classes are loaded.
+//
+// Writes to the output directory:
+//   probes.csv  step, time and pressure at every probe
+//   field.f32   final field, row-major little-endian float32 (width x height)
+//   stats.txt   run settings and timing
+//   metrics.txt step latency percentiles, throughput, real-time factor and allocation rate
+//
+// The run's metrics are also registered as a JMX MBean while it runs.
+public class HeadlessRunner {
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            printUsage();
+            return;
+        }
+        try {
+            RunConfig config = RunConfig.parse(args);
+            BatchRun run = new BatchRun(config);
+            run.getMetrics().register("headless");
+            run.run();
+            write(run);
+            System.out.printf("%d steps in %.3f s (%.0f steps/s), results in %s%n",
+                run.getSteps(), run.getWallNanos() / 1e9, run.getStepsPerSecond(), config.getOutputDir().getPath());
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            printUsage();
+            System.exit(1);
+        } catch (IllegalStateException ex) {
+            // The settings parsed but the machine cannot run them, e.g. too little direct memory
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: HeadlessRunner [--room FILE] [--size WxH] [--mode ideal|realism] [--materials ID=R/D,...]");
+        System.err.println("       [--engine SERIAL|PARALLEL|VECTOR|FLOAT|TILED|OFF_HEAP|HIGH_ORDER|DISTRIBUTED [--grid-dir DIR]]");
+        System.err.println("       [--engine-threads N]");
+        System.err.println("       [--workers N --transport mapped|socket --worker-engine TYPE --worker-threads N");
+        System.err.println("        --launcher CMD --worker-jvm OPTIONS --shared-dir DIR] [--steps N | --duration SECONDS]");
+        System.err.println("       [--source X,Y]... [--array X0,Y0,X1,Y1,N]... [--probe X,Y]... [--out DIR]");
+        System.err.println("       [--waveform continuous|impulse|ricker:HZ|sine:HZ|sample:FILE]");
+        System.err.println("       [--checkpoint FILE [--checkpoint-interval SECONDS]] [--resume FILE]");
+    }
+
+    public static void write(BatchRun run) throws IOException {
+        RunConfig config = run.getConfig();
+        File dir = config.getOutputDir();
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir.getPath());
+
+        writeProbes(run, new File(dir, "probes.csv"));
+        writeField(run.getFinalField(), new File(dir, "field.f32"));
+
+        try (PrintWriter out = new PrintWriter(new File(dir, "stats.txt"))) {
+            out.println("room=" + (config.getRoom() == null ? "" : config.getRoom().getPath()));
+            out.println("width=" + config.getWidth());
+            out.println("height=" + config.getHeight());
+            out.println("mode=" + (config.isRealismMode() ? "realism" : "ideal"));
+            out.println("engine=" + config.getEngineType());
+            out.println("sources=" + config.getSources().size());
+            out.println("waveform=" + config.getWaveform());
+            out.println("dt=" + run.getScene().getDt());
+            out.println("firstStep=" + run.getFirstStep());
+            out.println("steps=" + run.getSteps());
+            out.println("simulatedSeconds=" + (run.getFirstStep() + run.getSteps()) * run.getScene().getDt());
+            out.println("wallSeconds=" + run.getWallNanos() / 1e9);
+            out.println("stepsPerSecond=" + run.getStepsPerSecond());
+            out.println("cellsPerSecond=" + run.getCellsPerSecond());
+        }
+
+        try (PrintWriter out = new PrintWriter(new File(dir, "metrics.txt"))) {
+            run.getMetricsReport().write(out);
+        }
+    }
+
+    private static void writeProbes(BatchRun run, File file) throws IOException {
+        List<int[]> probes = run.getConfig().getProbes();
+        double[][] series = run.getProbeSeries();
+        double dt = run.getScene().getDt();
+        try (PrintWriter out = new PrintWriter(file)) {
+            StringBuilder header = new StringBuilder("step,time");
+            for (int[] xy : probes) header.append(",p_").append(xy[0]).append('_').append(xy[1]);
+            out.println(header);
+            if (probes.isEmpty()) return;
+            long first = run.getFirstStep();
+            for (int n=0; n<run.getSteps(); n++) {
+                StringBuilder row = new StringBuilder();
+                row.append(first + n + 1).append(',').append((first + n + 1) * dt);
+                for (double[] s : series) row.append(',').append(s[n]);
+                out.println(row);
+            }
+        }
+    }
+
+    private static void writeField(float[] field, File file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(field.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buf.asFloatBuffer().put(field);
+        Files.write(file.toPath(), buf.array());
+    }
+}
@@ -0,0 +1,184 @@
+package jay.audio.roomaudio.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jay.audio.roomaudio.engine.RowBands;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.model.RoomLayout;
+
+// Runs every combination of a SweepSpec headless, several runs at a time,
+// and appends one CSV line per run to the results file as each finishes.
+//
+// Usage: ParameterSweep SPEC [--out sweep.csv] [--threads N]
+//
+// The pool size is the smaller of --threads (default: cores) and the number
+// of runs whose grids fit in the free heap. The cores are shared out between
+// the concurrent runs, so each multi-core engine gets cores / pool threads
+// instead of every engine sizing its pool to the whole machine. Room files
+// are parsed once and shared between the runs that use them.
+public class ParameterSweep {
+    // Bytes per cell of one run: three double grids, two coefficient planes,
+    // obstacle/material arrays and the float frame
+    private static final int BYTES_PER_CELL = 3*8 + 2*8 + 1 + 4 + 4;
+
+    private final Map<File, RoomLayout> layouts = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            System.err.println("Usage: ParameterSweep SPEC [--out sweep.csv] [--threads N]");
+            return;
+        }
+        File out = new File("sweep.csv");
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int a=1; a+1<args.length; a+=2) {
+                switch (args[a]) {
+                    case "--out": out = new File(args[a+1]); break;
+                    case "--threads": threads = Integer.parseInt(args[a+1]); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[a]);
+                }
+            }
+            SweepSpec spec = SweepSpec.load(new File(args[0]));
+            new ParameterSweep().run(spec, threads, out);
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void run(SweepSpec spec, int maxThreads, File out) throws IOException {
+        List<SweepSpec.Run> runs = spec.expand();
+        int threads = Math.max(1, Math.min(Math.min(maxThreads, runs.size()), memoryLimit(spec, runs)));
+        int engineThreads = Math.max(1, RowBands.defaultThreads() / threads);
+        for (SweepSpec.Run run : runs) {
+            if (!run.getConfig().hasEngineThreads()) run.getConfig().setEngineThreads(engineThreads);
+        }
+        System.out.printf("%d runs on %d threads, %d engine threads each%n", runs.size(), threads, engineThreads);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<String> done = new ExecutorCompletionService<>(pool);
+        long start = System.nanoTime();
+        try (PrintWriter csv = new PrintWriter(out)) {
+            csv.println(header(spec.getProbeCount()));
+            csv.flush();
+            for (SweepSpec.Run run : runs) {
+                done.submit(() -> execute(run));
+            }
+            for (int n=0; n<runs.size(); n++) {
+                try {
+                    String line = done.take().get();
+                    csv.println(line);
+                    csv.flush();
+                    System.out.printf("[%d/%d] %s%n", n + 1, runs.size(), line);
+                } catch (ExecutionException ex) {
+                    // One bad run (e.g. an unreadable room) does not stop the sweep
+                    System.err.println("Run failed: " + ex.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.printf("Sweep finished in %.1f s, results in %s%n", (System.nanoTime() - start) / 1e9, out.getPath());
+    }
+
+    private String execute(SweepSpec.Run run) throws IOException {
+        RunConfig config = run.getConfig();
+        try {
+            RoomLayout layout = null;
+            if (config.getRoom() != null) {
+                layout = loadLayout(config.getRoom());
+            }
+            BatchRun batch = new BatchRun(config, layout);
+            batch.run();
+            return summarize(run, batch);
+        } catch (IOException | RuntimeException ex) {
+            throw new IOException("run " + run.getId() + " (" + run.getRoom() + "): " + ex.getMessage(), ex);
+        }
+    }
+
+    // dt of a run's grid, which follows the room's cell size
+    private double dt(RunConfig config) {
+        double dx = 1.0;
+        if (config.getRoom() != null) {
+            try {
+                dx = loadLayout(config.getRoom()).gridSpacing(config.getWidth());
+            } catch (IOException | RuntimeException ex) {
+                // Reported when the run itself fails to load the room
+            }
+        }
+        return new Scene(1, 1, dx).getDt();
+    }
+
+    private RoomLayout loadLayout(File file) throws IOException {
+        RoomLayout layout = layouts.get(file);
+        if (layout == null) {
+            // Two threads may both parse the same file the first time; the result is identical
+            layout = RoomLayout.load(file);
+            layouts.putIfAbsent(file, layout);
+        }
+        return layout;
+    }
+
+    private static String header(int probes) {
+        StringBuilder sb = new StringBuilder(
+            "run,room,materials,layout,mode,sources,steps,wallSeconds,stepsPerSecond,fieldEnergy,fieldPeak");
+        for (int p=0; p<probes; p++) {
+            sb.append(",probe").append(p).append("Peak");
+            sb.append(",probe").append(p).append("Rms");
+        }
+        return sb.toString();
+    }
+
+    private static String summarize(SweepSpec.Run run, BatchRun batch) {
+        RunConfig config = batch.getConfig();
+        double energy = 0, peak = 0;
+        for (float v : batch.getFinalField()) {
+            energy += (double) v * v;
+            peak = Math.max(peak, Math.abs(v));
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(run.getId()).append(',').append(run.getRoom()).append(',').append(run.getMaterials())
+            .append(',').append(run.getLayout()).append(',').append(config.isRealismMode() ? "realism" : "ideal")
+            .append(',').append(config.getSources().size()).append(',').append(batch.getSteps());
+        sb.append(String.format(Locale.ROOT, ",%.3f,%.1f,%.6e,%.6e",
+            batch.getWallNanos() / 1e9, batch.getStepsPerSecond(), energy, peak));
+        for (double[] series : batch.getProbeSeries()) {
+            double probePeak = 0, sumSq = 0;
+            for (double v : series) {
+                probePeak = Math.max(probePeak, Math.abs(v));
+                sumSq += v * v;
+            }
+            double rms = series.length > 0 ? Math.sqrt(sumSq / series.length) : 0;
+            sb.append(String.format(Locale.ROOT, ",%.6e,%.6e", probePeak, rms));
+        }
+        return sb.toString();
+    }
+
+    // Runs that fit in 80% of the heap still available
+    private int memoryLimit(SweepSpec spec, List<SweepSpec.Run> runs) {
+        Runtime rt = Runtime.getRuntime();
+        long free = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+        long cells = (long) (spec.getWidth() + 2) * (spec.getHeight() + 2);
+        // Rooms with finer cells take more steps for the same duration
+        long steps = 0;
+        for (SweepSpec.Run run : runs) {
+            steps = Math.max(steps, run.getConfig().resolveSteps(dt(run.getConfig())));
+        }
+        long perRun = cells * BYTES_PER_CELL + (long) spec.getProbeCount() * steps * 8;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (long) (free * 0.8) / perRun));
+    }
+}
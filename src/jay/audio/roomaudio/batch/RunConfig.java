@@ -0,0 +1,245 @@
+package jay.audio.roomaudio.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import jay.audio.roomaudio.distributed.DistributedOptions;
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.engine.RowBands;
+import jay.audio.roomaudio.model.MaterialTable;
+
+// One headless simulation run: room, grid, mode, engine, length, sources and probes.
+public class RunConfig {
+    private File room;
+    private int width = 400;
+    private int height = 300;
+    private boolean realismMode = false;
+    // Null keeps the Material enum's values
+    private MaterialTable materialTable;
+    private EngineType engineType = EngineType.VECTOR;
+    // Threads for the multi-core engines; 0 uses every core
+    private int engineThreads = 0;
+    private long steps = 1000;
+    // Simulated seconds; overrides steps when > 0
+    private double duration = 0;
+    private final List<int[]> sources = new ArrayList<>();
+    // Waveform spec for every source, see Waveform.parse
+    private String waveform = "continuous";
+    private final List<int[]> probes = new ArrayList<>();
+    private File outputDir = new File("results");
+    private File checkpoint;
+    private double checkpointInterval = 300;
+    private File resume;
+    // Backing files for the off-heap engine; null keeps its grids in direct memory
+    private File gridDirectory;
+    // Workers, transport and launcher for the distributed engine
+    private final DistributedOptions distributedOptions = new DistributedOptions();
+
+    // --room FILE --size WxH --mode ideal|realism --materials ID=R/D,... --engine TYPE --engine-threads N
+    // --steps N | --duration SECONDS
+    // --source X,Y (repeatable) --array X0,Y0,X1,Y1,N (N sources on a line, repeatable)
+    // --waveform SPEC --probe X,Y (repeatable) --out DIR
+    // --checkpoint FILE --checkpoint-interval SECONDS --resume FILE --grid-dir DIR
+    // and the distributed engine's options, see DistributedOptions.parse
+    public static RunConfig parse(String[] args) {
+        RunConfig config = new RunConfig();
+        for (int a=0; a<args.length; a++) {
+            String flag = args[a];
+            if (a + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + flag);
+            String value = args[++a];
+            switch (flag) {
+                case "--room": config.room = new File(value); break;
+                case "--size": {
+                    int[] size = parsePair(value, "x");
+                    config.width = size[0];
+                    config.height = size[1];
+                    break;
+                }
+                case "--mode": config.realismMode = parseMode(value); break;
+                case "--materials": config.materialTable = MaterialTable.parse(value); break;
+                case "--engine": config.engineType = EngineType.valueOf(value.toUpperCase()); break;
+                case "--engine-threads": config.setEngineThreads(Integer.parseInt(value)); break;
+                case "--steps": config.steps = Long.parseLong(value); break;
+                case "--duration": config.duration = Double.parseDouble(value); break;
+                case "--source": config.sources.add(parsePair(value, ",")); break;
+                case "--array": config.addArray(value); break;
+                case "--waveform": config.waveform = value; break;
+                case "--probe": config.probes.add(parsePair(value, ",")); break;
+                case "--out": config.outputDir = new File(value); break;
+                case "--checkpoint": config.checkpoint = new File(value); break;
+                case "--checkpoint-interval": config.checkpointInterval = Double.parseDouble(value); break;
+                case "--resume": config.resume = new File(value); break;
+                case "--grid-dir": config.gridDirectory = new File(value); break;
+                default:
+                    if (!config.distributedOptions.parse(flag, value)) {
+                        throw new IllegalArgumentException("Unknown option " + flag);
+                    }
+            }
+        }
+        return config;
+    }
+
+    static boolean parseMode(String value) {
+        switch (value.toLowerCase()) {
+            case "ideal": return false;
+            case "realism": return true;
+            default: throw new IllegalArgumentException("Mode must be ideal or realism: " + value);
+        }
+    }
+
+    static int[] parsePair(String value, String separator) {
+        String[] parts = value.split(separator);
+        if (parts.length != 2) throw new IllegalArgumentException("Expected two numbers: " + value);
+        return new int[] {Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+    }
+
+    // Evenly spaced sources from (x0, y0) to (x1, y1), e.g. a speaker array
+    void addArray(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 5) throw new IllegalArgumentException("Expected X0,Y0,X1,Y1,N: " + value);
+        int[] v = new int[5];
+        for (int i=0; i<5; i++) v[i] = Integer.parseInt(parts[i].trim());
+        int n = v[4];
+        if (n < 1) throw new IllegalArgumentException("Array needs at least one source: " + value);
+        for (int s=0; s<n; s++) {
+            double f = n == 1 ? 0 : (double) s / (n - 1);
+            sources.add(new int[] {
+                (int) Math.round(v[0] + f * (v[2] - v[0])),
+                (int) Math.round(v[1] + f * (v[3] - v[1]))
+            });
+        }
+    }
+
+    // Number of steps to run for a solver timestep of dt
+    public long resolveSteps(double dt) {
+        return duration > 0 ? (long) Math.ceil(duration / dt) : steps;
+    }
+
+    public File getRoom() {
+        return room;
+    }
+
+    public void setRoom(File room) {
+        this.room = room;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public boolean isRealismMode() {
+        return realismMode;
+    }
+
+    public void setRealismMode(boolean realismMode) {
+        this.realismMode = realismMode;
+    }
+
+    public MaterialTable getMaterialTable() {
+        return materialTable;
+    }
+
+    public void setMaterialTable(MaterialTable materialTable) {
+        this.materialTable = materialTable;
+    }
+
+    public EngineType getEngineType() {
+        return engineType;
+    }
+
+    public void setEngineType(EngineType engineType) {
+        this.engineType = engineType;
+    }
+
+    // Threads the engine will use: the configured count, or every core
+    public int getEngineThreads() {
+        return engineThreads > 0 ? engineThreads : RowBands.defaultThreads();
+    }
+
+    public boolean hasEngineThreads() {
+        return engineThreads > 0;
+    }
+
+    public void setEngineThreads(int engineThreads) {
+        if (engineThreads < 0) throw new IllegalArgumentException("Engine threads must be >= 0: " + engineThreads);
+        this.engineThreads = engineThreads;
+    }
+
+    public void setSteps(long steps) {
+        this.steps = steps;
+        this.duration = 0;
+    }
+
+    public void setDuration(double duration) {
+        this.duration = duration;
+    }
+
+    public List<int[]> getSources() {
+        return sources;
+    }
+
+    public String getWaveform() {
+        return waveform;
+    }
+
+    public void setWaveform(String waveform) {
+        this.waveform = waveform;
+    }
+
+    public List<int[]> getProbes() {
+        return probes;
+    }
+
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    // Written periodically (wall-clock seconds) and at the end of the run; null for none
+    public File getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(File checkpoint, double intervalSeconds) {
+        this.checkpoint = checkpoint;
+        this.checkpointInterval = intervalSeconds;
+    }
+
+    public double getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    // Checkpoint to continue from; the run still ends at the configured total steps
+    public File getResume() {
+        return resume;
+    }
+
+    public void setResume(File resume) {
+        this.resume = resume;
+    }
+
+    public File getGridDirectory() {
+        return gridDirectory;
+    }
+
+    public void setGridDirectory(File gridDirectory) {
+        this.gridDirectory = gridDirectory;
+    }
+
+    public DistributedOptions getDistributedOptions() {
+        return distributedOptions;
+    }
+}
@@ -0,0 +1,194 @@
+package jay.audio.roomaudio.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.model.MaterialTable;
+
+// A parameter sweep read from a text file, one setting per line:
+//
+//   room rooms/3.txt rooms/4.txt      room files (none = empty grid)
+//   materials default                 named material table, repeatable
+//   materials soft 1=0.8/0.98,2=0.6/0.95
+//   layout center 200,150             named source layout, repeatable
+//   layout line 50,50,350,50,16       (X,Y or X0,Y0,X1,Y1,N per entry)
+//   mode ideal realism
+//   size 400x300
+//   steps 2000 | duration 0.5
+//   engine SERIAL
+//   engine-threads 4                  (default: cores / concurrent runs)
+//   waveform impulse
+//   probe 100,100 300,200
+//
+// Every combination of room x materials x layout x mode becomes one run.
+// Lines starting with # are comments.
+public class SweepSpec {
+    private final List<File> rooms = new ArrayList<>();
+    private final Map<String, MaterialTable> materials = new LinkedHashMap<>();
+    private final Map<String, String[]> layouts = new LinkedHashMap<>();
+    private final List<Boolean> modes = new ArrayList<>();
+    private final List<int[]> probes = new ArrayList<>();
+    private int width = 400, height = 300;
+    private long steps = 1000;
+    private double duration = 0;
+    // Runs execute side by side, so each one stays on a single core
+    private EngineType engineType = EngineType.SERIAL;
+    // 0 leaves it to ParameterSweep
+    private int engineThreads = 0;
+    private String waveform = "impulse";
+
+    public static SweepSpec load(File file) throws IOException {
+        SweepSpec spec = new SweepSpec();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] tokens = line.split("\\s+");
+                try {
+                    spec.apply(tokens);
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException(file.getName() + ":" + lineNumber + ": " + ex.getMessage());
+                }
+            }
+        }
+        return spec;
+    }
+
+    private void apply(String[] tokens) {
+        String[] values = Arrays.copyOfRange(tokens, 1, tokens.length);
+        if (values.length == 0) throw new IllegalArgumentException("Missing value for " + tokens[0]);
+        switch (tokens[0]) {
+            case "room":
+                for (String v : values) rooms.add(v.equals("none") ? null : new File(v));
+                break;
+            case "materials":
+                materials.put(values[0], MaterialTable.parse(values.length > 1 ? values[1] : "default"));
+                break;
+            case "layout":
+                layouts.put(values[0], Arrays.copyOfRange(values, 1, values.length));
+                break;
+            case "mode":
+                for (String v : values) modes.add(RunConfig.parseMode(v));
+                break;
+            case "size": {
+                int[] size = RunConfig.parsePair(values[0], "x");
+                width = size[0];
+                height = size[1];
+                break;
+            }
+            case "steps": steps = Long.parseLong(values[0]); duration = 0; break;
+            case "duration": duration = Double.parseDouble(values[0]); break;
+            case "engine": engineType = EngineType.valueOf(values[0].toUpperCase()); break;
+            case "engine-threads": engineThreads = Integer.parseInt(values[0]); break;
+            case "waveform": waveform = values[0]; break;
+            case "probe":
+                for (String v : values) probes.add(RunConfig.parsePair(v, ","));
+                break;
+            default: throw new IllegalArgumentException("Unknown setting " + tokens[0]);
+        }
+    }
+
+    // The cartesian product, in a fixed order
+    public List<Run> expand() {
+        List<File> roomList = rooms.isEmpty() ? Arrays.asList((File) null) : rooms;
+        Map<String, MaterialTable> tables = materials;
+        if (tables.isEmpty()) {
+            tables = new LinkedHashMap<>();
+            tables.put("default", null);
+        }
+        Map<String, String[]> layoutMap = layouts;
+        if (layoutMap.isEmpty()) {
+            layoutMap = new LinkedHashMap<>();
+            layoutMap.put("center", new String[] {(width / 2) + "," + (height / 2)});
+        }
+        List<Boolean> modeList = modes.isEmpty() ? Arrays.asList(false) : modes;
+
+        List<Run> runs = new ArrayList<>();
+        for (File room : roomList) {
+            for (Map.Entry<String, MaterialTable> table : tables.entrySet()) {
+                for (Map.Entry<String, String[]> layout : layoutMap.entrySet()) {
+                    for (boolean realism : modeList) {
+                        RunConfig config = new RunConfig();
+                        config.setRoom(room);
+                        config.setSize(width, height);
+                        config.setMaterialTable(table.getValue());
+                        config.setRealismMode(realism);
+                        config.setEngineType(engineType);
+                        config.setEngineThreads(engineThreads);
+                        config.setSteps(steps);
+                        if (duration > 0) config.setDuration(duration);
+                        config.setWaveform(waveform);
+                        for (String entry : layout.getValue()) {
+                            if (entry.split(",").length == 5) {
+                                config.addArray(entry);
+                            } else {
+                                config.getSources().add(RunConfig.parsePair(entry, ","));
+                            }
+                        }
+                        config.getProbes().addAll(probes);
+                        runs.add(new Run(runs.size(), room == null ? "none" : room.getPath(),
+                            table.getKey(), layout.getKey(), config));
+                    }
+                }
+            }
+        }
+        return runs;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getProbeCount() {
+        return probes.size();
+    }
+
+    public static class Run {
+        private final int id;
+        private final String room, materials, layout;
+        private final RunConfig config;
+
+        Run(int id, String room, String materials, String layout, RunConfig config) {
+            this.id = id;
+            this.room = room;
+            this.materials = materials;
+            this.layout = layout;
+            this.config = config;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getRoom() {
+            return room;
+        }
+
+        public String getMaterials() {
+            return materials;
+        }
+
+        public String getLayout() {
+            return layout;
+        }
+
+        public RunConfig getConfig() {
+            return config;
+        }
+    }
+}
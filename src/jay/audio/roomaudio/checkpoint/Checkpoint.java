@@ -0,0 +1,302 @@
+package jay.audio.roomaudio.checkpoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.StepEngine;
+import jay.audio.roomaudio.model.MaterialTable;
+import jay.audio.roomaudio.source.SourceSet;
+import jay.audio.roomaudio.source.Waveform;
+
+// Everything needed to continue a run: both pressure fields, the step clock,
+// sources with their waveforms, room geometry, material table and mode.
+//
+// File layout, little-endian:
+//   header    magic "AXCP", version, width, height, step, realism flag
+//   materials count, then count x (reflection, damping)
+//   sources   count, then per source x, y, gain, start, loop, table length,
+//             then all tables
+//   room      one byte per cell, row-major: material ID, 0x80 if obstacle (CellProperties)
+//   fields    (8-byte aligned) pOld then pCurrent, width x height doubles each
+//
+// Files are written and read through memory-mapped channels: the fields go
+// between the engine's arrays and the page cache with bulk copies, so saving
+// and restoring are bound by memory and disk bandwidth. A mapping is limited
+// to 2 GB, so the fields are mapped a band of rows at a time.
+//
+// Restoring parses and checks the whole file before touching the scene, so a
+// truncated or corrupt checkpoint leaves the running simulation as it was.
+public class Checkpoint {
+    private static final int MAGIC = 0x50435841; // "AXCP" little-endian
+    private static final int VERSION = 2;
+    // Bytes of each field mapped at once
+    private static final long CHUNK_BYTES = 1L << 30;
+    // Fixed part of the header and of each source record
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 4;
+    private static final int SOURCE_BYTES = 4 + 4 + 8 + 8 + 4 + 4;
+
+    // Moves rows [j0, j1) of both fields between the engine, or a captured copy, and the file
+    private interface FieldRows {
+        void transfer(int j0, int j1, DoubleBuffer old, DoubleBuffer current);
+    }
+
+    private int width, height;
+    private long step;
+    private boolean realism;
+    private MaterialTable materials;
+    private int sourceCount;
+    private int[] sourceX = new int[0], sourceY = new int[0];
+    private double[] gain = new double[0];
+    private long[] start = new long[0];
+    private Waveform[] waveforms = new Waveform[0];
+    private byte[] room = new byte[0];
+    // Geometry version the room bytes were encoded from
+    private long roomVersion = -1;
+    private double[] old = new double[0], current = new double[0];
+
+    // Writes the current state straight from the engine; call on the simulation thread
+    public static void save(File file, Scene scene, StepEngine engine) throws IOException {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.captureScene(scene);
+        checkpoint.write(file, engine::saveFields);
+    }
+
+    // Copies the state into this object (reusing its arrays) so it can be
+    // written later on another thread
+    public void capture(Scene scene, StepEngine engine) {
+        captureScene(scene);
+        int cells = width * height;
+        if (old.length != cells) {
+            old = new double[cells];
+            current = new double[cells];
+        }
+        engine.saveFields(0, height, DoubleBuffer.wrap(old), DoubleBuffer.wrap(current));
+    }
+
+    public void write(File file) throws IOException {
+        write(file, (j0, j1, o, c) -> {
+            o.put(old, j0 * width, (j1 - j0) * width);
+            c.put(current, j0 * width, (j1 - j0) * width);
+        });
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    private void captureScene(Scene scene) {
+        width = scene.getWidth();
+        height = scene.getHeight();
+        realism = scene.isRealismMode();
+        materials = scene.getMaterialTable();
+
+        SourceSet sources = scene.getSources();
+        step = sources.getStep();
+        sourceCount = sources.size();
+        if (sourceX.length < sourceCount) {
+            sourceX = new int[sourceCount];
+            sourceY = new int[sourceCount];
+            gain = new double[sourceCount];
+            start = new long[sourceCount];
+            waveforms = new Waveform[sourceCount];
+        }
+        for (int s=0; s<sourceCount; s++) {
+            sourceX[s] = sources.getX(s);
+            sourceY[s] = sources.getY(s);
+            gain[s] = sources.getGain(s);
+            start[s] = sources.getStart(s);
+            waveforms[s] = sources.getWaveform(s);
+        }
+
+        // The room rarely changes between periodic checkpoints
+        if (room.length == width * height && roomVersion == scene.getGeometryVersion()) return;
+        // Copied because the writer thread encodes it while the simulation continues
+        roomVersion = scene.getGeometryVersion();
+        room = scene.getCells().getData().clone();
+    }
+
+    private long metadataSize() {
+        long size = HEADER_BYTES;
+        size += 4 + MaterialTable.SIZE * 16L;
+        size += 4;
+        for (int s=0; s<sourceCount; s++) {
+            size += SOURCE_BYTES + waveforms[s].getLength() * 8L;
+        }
+        size += (long) width * height;
+        return (size + 7) & ~7L;
+    }
+
+    private void write(File file, FieldRows fields) throws IOException {
+        long metadata = metadataSize();
+        long fieldBytes = (long) width * height * 8;
+        // The room bytes and waveforms are mapped in one piece
+        if (metadata > Integer.MAX_VALUE) {
+            throw new IOException("Room and sources too large for a checkpoint: " + width + "x" + height);
+        }
+
+        // Written beside the target and moved over it, so a crash never leaves a torn checkpoint
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(metadata + 2 * fieldBytes);
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, metadata);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            writeMetadata(header);
+
+            header.force();
+
+            int rowsPerChunk = rowsPerChunk(width);
+            for (int j0=0; j0<height; j0+=rowsPerChunk) {
+                int j1 = Math.min(height, j0 + rowsPerChunk);
+                long offset = (long) j0 * width * 8, size = (long) (j1 - j0) * width * 8;
+                MappedByteBuffer oldMap = channel.map(FileChannel.MapMode.READ_WRITE, metadata + offset, size);
+                MappedByteBuffer currentMap = channel.map(FileChannel.MapMode.READ_WRITE,
+                    metadata + fieldBytes + offset, size);
+                fields.transfer(j0, j1, oldMap.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer(),
+                    currentMap.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+                oldMap.force();
+                currentMap.force();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeMetadata(ByteBuffer out) {
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(width);
+        out.putInt(height);
+        out.putLong(step);
+        out.putInt(realism ? 1 : 0);
+        out.putInt(MaterialTable.SIZE);
+        for (int id=0; id<MaterialTable.SIZE; id++) {
+            out.putDouble(materials.getReflection(id));
+            out.putDouble(materials.getDamping(id));
+        }
+        out.putInt(sourceCount);
+        for (int s=0; s<sourceCount; s++) {
+            out.putInt(sourceX[s]);
+            out.putInt(sourceY[s]);
+            out.putDouble(gain[s]);
+            out.putLong(start[s]);
+            out.putInt(waveforms[s].isLooping() ? 1 : 0);
+            out.putInt(waveforms[s].getLength());
+        }
+        for (int s=0; s<sourceCount; s++) {
+            for (double v : waveforms[s].getValues()) out.putDouble(v);
+        }
+        out.put(room, 0, width * height);
+    }
+
+    private static int rowsPerChunk(int width) {
+        return (int) Math.max(1, CHUNK_BYTES / (width * 8L));
+    }
+
+    // Replaces the scene's room, mode, materials and sources and the engine's
+    // fields with the checkpoint's. The scene must have the same grid size.
+    // Call on the simulation thread; returns the restored step.
+    public static long restore(File file, Scene scene, StepEngine engine) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            // Everything up to the fields; write() keeps that under 2 GB
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(length, Integer.MAX_VALUE));
+            in.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.remaining() < HEADER_BYTES + 4 || in.getInt() != MAGIC) throw new IOException("Not a checkpoint file.");
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version + ".");
+            int width = in.getInt();
+            int height = in.getInt();
+            if (width != scene.getWidth() || height != scene.getHeight()) {
+                throw new IOException("Checkpoint is " + width + "x" + height + ", grid is "
+                    + scene.getWidth() + "x" + scene.getHeight() + ".");
+            }
+            long step = in.getLong();
+            boolean realism = in.getInt() != 0;
+
+            // Parsed into locals first; the scene is only touched once the whole file checks out
+            int materialCount = in.getInt();
+            if (materialCount < 0 || materialCount > (in.remaining() - 4) / 16) throw corrupt("material count");
+            MaterialTable materials = new MaterialTable();
+            for (int id=0; id<materialCount; id++) {
+                double reflection = in.getDouble();
+                double damping = in.getDouble();
+                if (id < MaterialTable.SIZE) materials.set(id, reflection, damping);
+            }
+
+            int count = in.getInt();
+            if (count < 0 || count > in.remaining() / SOURCE_BYTES) throw corrupt("source count");
+            int[] x = new int[count], y = new int[count], tableLength = new int[count];
+            double[] gain = new double[count];
+            long[] start = new long[count];
+            boolean[] loop = new boolean[count];
+            long tableBytes = 0;
+            for (int s=0; s<count; s++) {
+                x[s] = in.getInt();
+                y[s] = in.getInt();
+                gain[s] = in.getDouble();
+                start[s] = in.getLong();
+                loop[s] = in.getInt() != 0;
+                tableLength[s] = in.getInt();
+                if (tableLength[s] <= 0 || x[s] < 0 || x[s] >= width || y[s] < 0 || y[s] >= height) {
+                    throw corrupt("source " + s);
+                }
+                tableBytes += tableLength[s] * 8L;
+            }
+            if (tableBytes + (long) width * height > in.remaining()) throw new IOException("Checkpoint file is truncated.");
+            Waveform[] waveforms = new Waveform[count];
+            for (int s=0; s<count; s++) {
+                double[] table = new double[tableLength[s]];
+                in.asDoubleBuffer().get(table);
+                in.position(in.position() + table.length * 8);
+                waveforms[s] = Waveform.of(table, loop[s]);
+            }
+
+            // Stored in the scene's own packed layout
+            byte[] room = new byte[width * height];
+            in.get(room);
+            long metadata = (in.position() + 7) & ~7L;
+            long fieldBytes = (long) width * height * 8;
+            if (metadata + 2 * fieldBytes > length) throw new IOException("Checkpoint file is truncated.");
+
+            SourceSet sources = scene.getSources();
+            sources.clear();
+            for (int s=0; s<count; s++) {
+                sources.add(x[s], y[s], waveforms[s], gain[s]);
+                sources.setStart(s, start[s]);
+            }
+            sources.setStep(step);
+            System.arraycopy(room, 0, scene.getCells().getData(), 0, room.length);
+            scene.setRealismMode(realism);
+            // Also bumps the geometry version, so coefficients are rebuilt for the restored room
+            scene.setMaterialTable(materials);
+
+            engine.clear();
+            int rowsPerChunk = rowsPerChunk(width);
+            for (int j0=0; j0<height; j0+=rowsPerChunk) {
+                int j1 = Math.min(height, j0 + rowsPerChunk);
+                long offset = (long) j0 * width * 8, size = (long) (j1 - j0) * width * 8;
+                MappedByteBuffer oldMap = channel.map(FileChannel.MapMode.READ_ONLY, metadata + offset, size);
+                MappedByteBuffer currentMap = channel.map(FileChannel.MapMode.READ_ONLY,
+                    metadata + fieldBytes + offset, size);
+                engine.loadFields(j0, j1, oldMap.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer(),
+                    currentMap.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+            }
+            return step;
+        }
+    }
+
+    private static IOException corrupt(String what) {
+        return new IOException("Checkpoint file is corrupt (" + what + ").");
+    }
+}
@@ -0,0 +1,79 @@
+package jay.audio.roomaudio.checkpoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.StepEngine;
+
+// Periodic checkpoints that do not stall the solver. The simulation thread
+// only copies the state into a reused in-memory Checkpoint (two array copies
+// of the field); a background thread writes and flushes the file. If a write
+// is still in progress when the next checkpoint is due, that one is skipped.
+public class CheckpointWriter implements AutoCloseable {
+    private final File file;
+    private final long intervalNanos;
+    private final Checkpoint snapshot = new Checkpoint();
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private final ExecutorService writer;
+
+    private long nextDue;
+    private volatile long lastStep = -1;
+    private volatile IOException lastError;
+
+    public CheckpointWriter(File file, double intervalSeconds) {
+        this.file = file;
+        this.intervalNanos = (long) (intervalSeconds * 1e9);
+        this.nextDue = System.nanoTime() + intervalNanos;
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Called on the simulation thread between steps; cheap unless a checkpoint is due
+    public void maybeCheckpoint(Scene scene, StepEngine engine) {
+        if (System.nanoTime() - nextDue < 0) return;
+        nextDue = System.nanoTime() + intervalNanos;
+        if (!writing.compareAndSet(false, true)) return;
+
+        snapshot.capture(scene, engine);
+        writer.execute(() -> {
+            try {
+                snapshot.write(file);
+                lastStep = snapshot.getStep();
+                lastError = null;
+            } catch (IOException ex) {
+                lastError = ex;
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    // Step of the last checkpoint that reached disk, or -1
+    public long getLastStep() {
+        return lastStep;
+    }
+
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    // Waits for a write in progress
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (lastError != null) throw lastError;
+    }
+}
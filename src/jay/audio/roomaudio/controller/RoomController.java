@@ -1,236 +1,306 @@
 package jay.audio.roomaudio.controller;
 
-import javax.swing.*;
 import java.awt.event.ActionListener;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.RowBands;
+import jay.audio.roomaudio.engine.SimulationLoop;
+import jay.audio.roomaudio.engine.StepEngine;
+import jay.audio.roomaudio.geometric.GeometricRoom;
+import jay.audio.roomaudio.geometric.ImageSourceEngine;
+import jay.audio.roomaudio.geometric.ImpulseResponse;
+import jay.audio.roomaudio.hybrid.HybridEngine;
+import jay.audio.roomaudio.io.WavWriter;
+import jay.audio.roomaudio.metrics.SimulationMetrics;
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.RoomLayout;
+import jay.audio.roomaudio.probe.Probe;
+import jay.audio.roomaudio.probe.ProbeRecorder;
 import jay.audio.roomaudio.model.SoundSource;
 import jay.audio.roomaudio.model.Wave;
+import jay.audio.roomaudio.source.SourceSet;
+import jay.audio.roomaudio.source.Waveform;
+import jay.audio.roomaudio.source.WaveformType;
 import jay.audio.roomaudio.view.RoomPanel;
 
 public class RoomController {
     private RoomPanel roomPanel;
     private int width, height;
-    private double c = 343.0;
-    private double dx = 1.0;  
-    private double dt;
-    private double alpha;
 
-    private double[][] pOld;
-    private double[][] pCurrent;
-    private double[][] pNew;
+    private Scene scene;
+    private SimulationLoop loop;
+    // Only assigned once the engine of that type exists
+    private volatile EngineType engineType = EngineType.SERIAL;
+    // Bumped per engine change, so a slow distributed start cannot replace a later choice
+    private final AtomicInteger engineRequests = new AtomicInteger();
+    // Directory for memory-mapped off-heap grids; null uses direct memory
+    private File gridDirectory;
 
-    private Timer timer;
+    private ProbeRecorder recorder;
 
-    private boolean simulationRunning = true;
     private boolean dualMode;
-    private int sourceCount = 0;
-    private int sourceX1, sourceY1;
-    private int sourceX2, sourceY2;
-    private boolean source1Active = false;
-    private boolean source2Active = false;
-    private double sourceAmplitude = 50.0;
-
-    private boolean[][] obstacles;
-    private int[][] materials;
-
-    // Modes
-    private boolean realismMode = false;
-
-    // Global damping for realism mode
-    private double globalDamping = 0.999;
-
-    // Material properties: reflection coefficients and damping factors
-    // Index by material ID:
-    // 0: Air, 1: Concrete, 2: Drywall, 3: Carpet, 4: Furniture
-    private double[] materialReflection = {1.0, 0.95, 0.85, 0.7, 0.8};
-    private double[] materialDamping = {1.0, 0.995, 0.99, 0.98, 0.97}; 
-    // materialDamping < 1 means it slightly attenuates amplitude each step for non-obstacle cells.
+    // Sources placed by clicking, or restored from a checkpoint
+    private volatile int sourceCount = 0;
+    // Frequency and last position of the clicked sources
+    private SoundSource source;
+    private WaveformType waveformType = WaveformType.CONTINUOUS;
 
     public RoomController(int width, int height, boolean dualMode) {
         this.width = width;
         this.height = height;
         this.dualMode = dualMode;
 
-        dt = (dx / c) * 0.5;
-        alpha = (c * dt / dx);
-
-        pOld = new double[width][height];
-        pCurrent = new double[width][height];
-        pNew = new double[width][height];
-
-        obstacles = new boolean[width][height];
-        materials = new int[width][height]; // default 0 (Air)
-
-        clearWaves();
-
-        timer = new Timer(10, e -> update());
+        scene = new Scene(width, height);
+        source = new SoundSource(0, 0, scene.getSpeedOfSound(), 100.0);
+        loop = new SimulationLoop(scene, engineType.create(width, height));
+        // Visible in JConsole/VisualVM; a refused registration only loses the JMX view
+        loop.getMetrics().register("simulation");
     }
 
     public void setRoomPanel(RoomPanel panel) {
         this.roomPanel = panel;
+        panel.setFrames(loop.getFrames());
+        // repaint() only queues a request, so the simulation thread never waits on painting
+        loop.setFrameListener(panel::repaint);
     }
 
     public void start() {
-        timer.start();
+        loop.start();
     }
 
     public void stopSimulation() {
-        simulationRunning = false;
+        loop.setRunning(false);
     }
 
     public void startSimulation() {
-        simulationRunning = true;
+        loop.setRunning(true);
     }
 
-    private void update() {
-        if(!simulationRunning) return;
+    // 0 runs as many steps as fit between two frames
+    public void setStepsPerFrame(int steps) {
+        loop.setStepsPerFrame(steps);
+    }
 
-        if (!realismMode) {
-            // Ideal mode: No materials considered, no damping
-            idealModeUpdate();
-        } else {
-            realismModeUpdate();
-        }
+    public int getStepsPerFrame() {
+        return loop.getStepsPerFrame();
+    }
 
-        if (roomPanel != null) {
-            roomPanel.updatePressureField(pCurrent);
-            roomPanel.repaint();
+    // Completes with the engine type in use once the new engine runs (from rest).
+    // If creating it fails, the future fails and the current engine and type stay;
+    // if another change was asked for meanwhile, this one is dropped.
+    public CompletableFuture<EngineType> setEngineType(EngineType type) {
+        if (type == engineType) return CompletableFuture.completedFuture(type);
+        return replaceEngine(type, gridDirectory);
+    }
+
+    // Only the off-heap engine stores its grids in files; it is recreated from rest.
+    // Completes like setEngineType; the directory is kept only if that succeeds.
+    public CompletableFuture<EngineType> setGridDirectory(File dir) {
+        if (engineType != EngineType.OFF_HEAP) {
+            gridDirectory = dir;
+            return CompletableFuture.completedFuture(engineType);
         }
+        return replaceEngine(EngineType.OFF_HEAP, dir).thenApply(type -> {
+            gridDirectory = dir;
+            return type;
+        });
     }
 
-    // Ideal mode: original PDE, obstacles = p=0 at those cells, boundaries = p=0, no damping
-    private void idealModeUpdate() {
-        for (int i=1; i<width-1; i++) {
-            for (int j=1; j<height-1; j++) {
-                if (obstacles[i][j]) {
-                    pNew[i][j] = 0; // Perfect reflection (like a hard boundary)
-                } else {
-                    pNew[i][j] = 2*pCurrent[i][j] - pOld[i][j] 
-                        + alpha*alpha*(pCurrent[i+1][j] + pCurrent[i-1][j] + pCurrent[i][j+1] + pCurrent[i][j-1] - 4*pCurrent[i][j]);
-                }
+    private CompletableFuture<EngineType> replaceEngine(EngineType type, File dir) {
+        int request = engineRequests.incrementAndGet();
+        return createEngine(type, dir).thenApply(engine -> {
+            if (request != engineRequests.get()) {
+                engine.close();
+                return engineType;
             }
-        }
+            engineType = type;
+            loop.setEngine(engine);
+            return type;
+        });
+    }
 
-        // Boundaries in ideal mode: hard boundary p=0
-        for (int i=0; i<width; i++) {
-            pNew[i][0] = 0;
-            pNew[i][height-1] = 0;
+    // Distributed workers are separate JVMs that may take a while to connect,
+    // so they are started off the calling thread (usually the event thread)
+    private CompletableFuture<StepEngine> createEngine(EngineType type, File dir) {
+        if (type == EngineType.DISTRIBUTED) {
+            return CompletableFuture.supplyAsync(() -> type.create(width, height, dir));
         }
-        for (int j=0; j<height; j++) {
-            pNew[0][j] = 0;
-            pNew[width-1][j] = 0;
+        CompletableFuture<StepEngine> created = new CompletableFuture<>();
+        try {
+            created.complete(type.create(width, height, dir));
+        } catch (RuntimeException ex) {
+            created.completeExceptionally(ex);
         }
+        return created;
+    }
 
-        // Inject sources
-        injectSources();
+    public File getGridDirectory() {
+        return gridDirectory;
+    }
 
-        swapGrids();
+    public EngineType getEngineType() {
+        return engineType;
     }
 
-    // Realism mode: Use material properties
-    private void realismModeUpdate() {
-        // First do PDE for non-boundary, non-obstacle cells
-        for (int i=1; i<width-1; i++) {
-            for (int j=1; j<height-1; j++) {
-                if (obstacles[i][j]) {
-                    // Obstacle cell: reflect using material reflection
-                    int matID = materials[i][j];
-                    double refl = materialReflection[matID];
-                    pNew[i][j] = refl * pCurrent[i][j];
-                } else {
-                    // Normal PDE
-                    double val = 2*pCurrent[i][j] - pOld[i][j] 
-                        + alpha*alpha*(pCurrent[i+1][j] + pCurrent[i-1][j] + pCurrent[i][j+1] + pCurrent[i][j-1] - 4*pCurrent[i][j]);
-
-                    // Apply material damping if not obstacle
-                    int matID = materials[i][j];
-                    double damp = materialDamping[matID];
-                    pNew[i][j] = val * damp;
-                }
-            }
-        }
+    public SimulationMetrics getMetrics() {
+        return loop.getMetrics();
+    }
 
-        // Boundaries: treat them as obstacles with a chosen material or just use default reflection?
-        // For simplicity, let's say boundaries are like "Concrete" by default:
-        double boundaryReflection = materialReflection[1]; // Concrete
-        for (int i=0; i<width; i++) {
-            pNew[i][0] = boundaryReflection * pCurrent[i][0];
-            pNew[i][height-1] = boundaryReflection * pCurrent[i][height-1];
-        }
-        for (int j=0; j<height; j++) {
-            pNew[0][j] = boundaryReflection * pCurrent[0][j];
-            pNew[width-1][j] = boundaryReflection * pCurrent[width-1][j];
+    public void clearWaves() {
+        loop.clear();
+    }
+
+    public void setSourcePosition(int x, int y) {
+        if (!scene.isInside(x, y)) return;
+        source.setPosition(x, y);
+        Waveform waveform = createWaveform();
+        SourceSet sources = scene.getSources();
+        if(!dualMode || sourceCount == 0) {
+            loop.submit(() -> {
+                sources.clear();
+                sources.add(x, y, waveform, SourceSet.DEFAULT_GAIN);
+            });
+            sourceCount = 1;
+        } else if(sourceCount == 1) {
+            loop.submit(() -> sources.add(x, y, waveform, SourceSet.DEFAULT_GAIN));
+            sourceCount = 2;
         }
+    }
 
-        // Inject sources
-        injectSources();
+    // Applies to the placed sources too, restarting them
+    public void setWaveformType(WaveformType type) {
+        waveformType = type;
+        Waveform waveform = createWaveform();
+        loop.submit(() -> scene.getSources().setAll(waveform));
+    }
 
-        // Apply global damping
-        for (int i=0; i<width; i++) {
-            for (int j=0; j<height; j++) {
-                pNew[i][j] *= globalDamping;
-            }
-        }
+    public WaveformType getWaveformType() {
+        return waveformType;
+    }
 
-        swapGrids();
+    // Used by the Ricker and sine waveforms
+    public void setSourceFrequency(double frequency) {
+        source = new SoundSource(source.getX(), source.getY(), scene.getSpeedOfSound(), frequency);
+        setWaveformType(waveformType);
     }
 
-    private void injectSources() {
-        if(source1Active && isInside(sourceX1, sourceY1)) {
-            pNew[sourceX1][sourceY1] += sourceAmplitude;
-        }
-        if(source2Active && isInside(sourceX2, sourceY2)) {
-            pNew[sourceX2][sourceY2] += sourceAmplitude;
-        }
+    public double getSourceFrequency() {
+        return source.getFrequency();
     }
 
-    private void swapGrids() {
-        double[][] temp = pOld;
-        pOld = pCurrent;
-        pCurrent = pNew;
-        pNew = temp;
+    private Waveform createWaveform() {
+        return waveformType.create(source, scene.getDt());
     }
 
-    private boolean isInside(int x, int y) {
-        return x >=0 && x < width && y>=0 && y< height;
+    // Virtual microphone at a grid cell; null if outside the grid
+    public Probe addProbe(int x, int y) {
+        if (!scene.isInside(x, y)) return null;
+        return loop.getProbes().add(x, y);
     }
 
-    public void clearWaves() {
-        for(int i=0;i<width;i++){
-            for(int j=0;j<height;j++){
-                pOld[i][j] = 0;
-                pCurrent[i][j]=0;
-                pNew[i][j]=0;
+    public Probe[] getProbes() {
+        return loop.getProbes().getProbes();
+    }
+
+    public void clearProbes() {
+        loop.getProbes().clear();
+    }
+
+    // Streams every probe to its own WAV (or raw float32) file in dir until stopRecording
+    public void startRecording(File dir, boolean raw) throws IOException {
+        stopRecording();
+        int sampleRate = (int) Math.round(1.0 / scene.getDt());
+        recorder = new ProbeRecorder(loop.getProbes(), dir, sampleRate, raw);
+    }
+
+    // Returns the number of samples the files are missing because the writer fell behind
+    public long stopRecording() throws IOException {
+        if (recorder == null) return 0;
+        ProbeRecorder r = recorder;
+        recorder = null;
+        r.close();
+        return r.getDroppedSamples();
+    }
+
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    // Image-source impulse responses from the current sources to every probe, written as
+    // ir_X_Y.wav into dir. The room is captured between two steps and the computation
+    // runs off the simulation thread; completes with the number of files written.
+    public CompletableFuture<Integer> computeEarlyReflections(File dir, int order, double duration) {
+        List<int[]> positions = new ArrayList<>();
+        for (Probe probe : getProbes()) positions.add(new int[] {probe.getX(), probe.getY()});
+        CompletableFuture<GeometricRoom> captured = new CompletableFuture<>();
+        loop.submit(() -> {
+            try {
+                captured.complete(GeometricRoom.capture(scene));
+            } catch (RuntimeException ex) {
+                captured.completeExceptionally(ex);
             }
-        }
+        });
+        return captured.thenApplyAsync(room -> {
+            ImpulseResponse[] responses;
+            try (ImageSourceEngine engine = new ImageSourceEngine(RowBands.defaultThreads())) {
+                engine.setMaxOrder(order);
+                responses = engine.compute(room, positions, duration);
+            }
+            double[][] samples = new double[responses.length][];
+            for (int p=0; p<samples.length; p++) samples[p] = responses[p].getSamples();
+            writeResponses(dir, positions, samples, room.getDt());
+            return responses.length;
+        });
     }
 
-    public void setSourcePosition(int x, int y) {
-        if(!dualMode) {
-            sourceX1 = x; 
-            sourceY1 = y; 
-            source1Active = true;
-            source2Active = false;
-            sourceCount = 1;
-        } else {
-            if(sourceCount == 0) {
-                sourceX1 = x; 
-                sourceY1 = y; 
-                source1Active = true;
-                source2Active = false;
-                sourceCount = 1;
-            } else if(sourceCount == 1) {
-                sourceX2 = x; 
-                sourceY2 = y; 
-                source2Active = true;
-                sourceCount = 2;
+    // Full-band impulse responses from the hybrid engine: the wave solver on a grid
+    // factor times coarser below the crossover, image sources up to order above it.
+    // Written and completed like computeEarlyReflections.
+    public CompletableFuture<Integer> computeHybridResponses(File dir, int factor, int order, double duration) {
+        List<int[]> positions = new ArrayList<>();
+        for (Probe probe : getProbes()) positions.add(new int[] {probe.getX(), probe.getY()});
+        CompletableFuture<GeometricRoom> captured = new CompletableFuture<>();
+        // Written before captured completes, which publishes it to the computation
+        Scene[] coarse = new Scene[1];
+        loop.submit(() -> {
+            try {
+                coarse[0] = HybridEngine.coarsen(scene, factor);
+                captured.complete(GeometricRoom.capture(scene));
+            } catch (RuntimeException ex) {
+                captured.completeExceptionally(ex);
             }
+        });
+        return captured.thenApplyAsync(room -> {
+            HybridEngine engine = new HybridEngine(RowBands.defaultThreads());
+            engine.setOrder(order);
+            double[][] samples = engine.compute(room, coarse[0], positions, duration);
+            writeResponses(dir, positions, samples, room.getDt());
+            return samples.length;
+        });
+    }
+
+    // One mono ir_X_Y.wav per probe at the solver rate
+    private static void writeResponses(File dir, List<int[]> positions, double[][] samples, double dt) {
+        int sampleRate = (int) Math.round(1.0 / dt);
+        try {
+            for (int p=0; p<samples.length; p++) {
+                float[] data = new float[samples[p].length];
+                for (int i=0; i<data.length; i++) data[i] = (float) samples[p][i];
+                File file = new File(dir, "ir_" + positions.get(p)[0] + "_" + positions.get(p)[1] + ".wav");
+                try (WavWriter out = new WavWriter(file, sampleRate, 1, false)) {
+                    out.write(data, data.length);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
     }
 
@@ -240,11 +310,10 @@ public class RoomController {
             if(!dm) {
                 // single mode
                 if(sourceCount >= 1) {
-                    source2Active = false;
+                    loop.submit(() -> scene.getSources().truncate(1));
                     sourceCount = 1;
                 } else {
-                    source1Active = false;
-                    source2Active = false;
+                    loop.submit(() -> scene.getSources().clear());
                     sourceCount = 0;
                 }
             }
@@ -252,86 +321,49 @@ public class RoomController {
     }
 
     public void loadRoom(File file) throws IOException {
-        int loadedWidth, loadedHeight;
-        boolean[][] loadedObstacles;
-        int[][] loadedMaterials;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line = br.readLine();
-            if (line == null) return;
-            String[] parts = line.split(" ");
-            loadedWidth = Integer.parseInt(parts[0]);
-            loadedHeight = Integer.parseInt(parts[1]);
-
-            loadedObstacles = new boolean[loadedWidth][loadedHeight];
-            for (int j=0; j<loadedHeight; j++) {
-                line = br.readLine();
-                if(line == null || line.length()<loadedWidth) 
-                    throw new IOException("Invalid room file format (obstacles).");
-                for (int i=0; i<loadedWidth; i++) {
-                    loadedObstacles[i][j] = (line.charAt(i) == '1');
-                }
-            }
-
-            loadedMaterials = new int[loadedWidth][loadedHeight];
-            for (int j=0;j<loadedHeight;j++){
-                line = br.readLine();
-                if(line==null || line.length()<loadedWidth)
-                    throw new IOException("Invalid room file format (materials).");
-                for (int i=0;i<loadedWidth;i++) {
-                    char c = line.charAt(i);
-                    if(c < '0' || c>'9') throw new IOException("Invalid material digit.");
-                    loadedMaterials[i][j] = c - '0';
-                }
+        RoomLayout layout = RoomLayout.load(file);
+        // Geometry is read by the engine, so it is swapped in between steps
+        loop.submit(() -> {
+            scene.applyRoom(layout);
+            if (roomPanel != null) {
+                roomPanel.repaint();
             }
-        }
+        });
+    }
 
-        double scaleX = (double)width / (double)loadedWidth;
-        double scaleY = (double)height / (double)loadedHeight;
+    // Completes once the checkpoint is on disk
+    public CompletableFuture<Void> saveCheckpoint(File file) {
+        return loop.saveCheckpoint(file);
+    }
 
-        for (int ix=0; ix<width; ix++) {
-            for (int iy=0; iy<height; iy++) {
-                obstacles[ix][iy] = false;
-                materials[ix][iy] = 0;
-            }
-        }
+    // The checkpoint's room, sources and mode replace the current ones
+    public CompletableFuture<Void> restoreCheckpoint(File file) {
+        // Usually runs on the simulation thread that just restored the sources
+        return loop.restoreCheckpoint(file).thenRun(() -> sourceCount = scene.getSources().size());
+    }
 
-        for (int i=0; i<loadedWidth; i++) {
-            for (int j=0; j<loadedHeight; j++) {
-                if (loadedObstacles[i][j]) {
-                    int startX = (int)(i * scaleX);
-                    int endX = (int)((i+1)*scaleX); if(endX>=width) endX=width-1;
-                    int startY = (int)(j * scaleY);
-                    int endY = (int)((j+1)*scaleY); if(endY>=height) endY=height-1;
-
-                    for (int xx=startX; xx<=endX; xx++) {
-                        for (int yy=startY; yy<=endY; yy++) {
-                            obstacles[xx][yy] = true;
-                            materials[xx][yy] = loadedMaterials[i][j];
-                        }
-                    }
-                }
-            }
-        }
+    public void setRealismMode(boolean realism) {
+        loop.submit(() -> scene.setRealismMode(realism));
+    }
 
-        if (roomPanel != null) {
-            roomPanel.repaint();
-        }
+    public void setActiveRegionTracking(boolean enabled) {
+        scene.setActiveRegionTracking(enabled);
     }
 
-    public void setRealismMode(boolean realism) {
-        this.realismMode = realism;
+    public boolean isActiveRegionTracking() {
+        return scene.isActiveRegionTracking();
     }
 
     public boolean isRealismMode() {
-        return realismMode;
+        return scene.isRealismMode();
     }
 
-    public boolean[][] getObstacles() {
-        return obstacles;
+    // Changes whenever a room is applied, so views can cache geometry-derived images
+    public long getGeometryVersion() {
+        return scene.getGeometryVersion();
     }
 
-    public int[][] getMaterials() {
-        return materials;
+    public CellProperties getCells() {
+        return scene.getCells();
     }
 }
\ No newline at end of file
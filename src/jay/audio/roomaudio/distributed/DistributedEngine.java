@@ -0,0 +1,501 @@
+package jay.audio.roomaudio.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jay.audio.roomaudio.engine.Frame;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.StepEngine;
+import jay.audio.roomaudio.model.MaterialTable;
+import jay.audio.roomaudio.source.SourceSet;
+import jay.audio.roomaudio.source.Waveform;
+
+// Coordinator of a grid split across worker JVMs. The rows are cut into one
+// band per worker (a DomainWorker process started here, optionally under a
+// launcher such as numactl), so each process streams only its own part of
+// the field and the grid can outgrow one JVM's heap and memory bandwidth.
+// Workers swap one halo row with each neighbour per step, directly through a
+// shared memory-mapped file or over sockets; the coordinator only exchanges
+// small control messages with them.
+//
+// The coordinator keeps what lives in the Scene: when the room, mode or
+// materials change it sends each worker its rows of cells, and when the
+// sources change it sends each worker the sources in its band, waveforms
+// included. A probe cell is registered with its worker on the first
+// sample(); after that its value comes back with every step reply, so
+// recording probes costs no extra round trips. Snapshots and checkpoints
+// stream each worker's rows straight into the frame or file, so the
+// coordinator never holds the whole field. readRow asks the row's owner;
+// writeRow goes to the owner and to the neighbour keeping it as a halo row.
+public class DistributedEngine implements StepEngine {
+    private static final int CONNECT_TIMEOUT_MS = 60_000;
+    // Steps per command when nothing needs every step
+    private static final int TIME_BLOCK = 8;
+
+    private final int width, height;
+    private final DistributedOptions options;
+    private final ServerSocket server;
+    private final List<Process> processes = new ArrayList<>();
+    private final Worker[] workers;
+    private final Wire wire = new Wire();
+    private File sharedFile;
+
+    // What the workers were last sent
+    private long geometryVersion = -1;
+    private boolean realism;
+    private MaterialTable materialTable;
+    private long sourceVersion = -1;
+    private long sourceStep = -1;
+
+    // Probe cell (y * width + x) to its worker and slot
+    private final Map<Long, int[]> probeSlots = new HashMap<>();
+    // One row on its way from a worker into a snapshot
+    private final double[] snapshotRow;
+
+    private static class Worker {
+        final int index;
+        // Owned rows [j0, j1) and local rows [lo, hi)
+        final int j0, j1, lo, hi;
+        Socket socket;
+        DataInputStream in;
+        DataOutputStream out;
+        String host;
+        int haloPort;
+        int probeCount;
+        double[] probeValues = new double[0];
+
+        Worker(int index, int j0, int j1, int height) {
+            this.index = index;
+            this.j0 = j0;
+            this.j1 = j1;
+            this.lo = Math.max(0, j0 - 1);
+            this.hi = Math.min(height, j1 + 1);
+        }
+    }
+
+    public DistributedEngine(int width, int height, DistributedOptions options) {
+        int n = options.getWorkers();
+        if (height < 2 * n) throw new IllegalArgumentException(height + " rows are too few for " + n + " workers");
+        this.width = width;
+        this.height = height;
+        this.options = options;
+        snapshotRow = new double[width];
+        workers = new Worker[n];
+        for (int w=0; w<n; w++) {
+            workers[w] = new Worker(w, (int) ((long) w * height / n), (int) ((long) (w + 1) * height / n), height);
+        }
+        try {
+            server = new ServerSocket(0, n, InetAddress.getLoopbackAddress());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        try {
+            start();
+        } catch (IOException ex) {
+            close();
+            throw new UncheckedIOException("Starting workers: " + ex.getMessage(), ex);
+        } catch (RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    private void start() throws IOException {
+        if (options.getTransport() == DistributedOptions.Transport.MAPPED) {
+            sharedFile = File.createTempFile("acoustx-halo", ".bin", options.getSharedDirectory());
+            MappedHaloExchange.create(sharedFile, workers.length, width);
+        }
+        for (Worker worker : workers) processes.add(launch(worker.index).start());
+
+        // Workers say hello in whatever order they come up
+        server.setSoTimeout(1000);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MS);
+        for (int connected=0; connected<workers.length; ) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketTimeoutException ex) {
+                for (int w=0; w<processes.size(); w++) {
+                    if (!processes.get(w).isAlive()) {
+                        throw new IOException("Worker " + w + " exited with " + processes.get(w).exitValue());
+                    }
+                }
+                if (System.nanoTime() > deadline) throw new IOException("Workers did not connect in time");
+                continue;
+            }
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            expect(in, Wire.HELLO, -1);
+            Worker worker = workers[in.readInt()];
+            worker.socket = socket;
+            worker.in = in;
+            worker.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            worker.host = socket.getInetAddress().getHostAddress();
+            worker.haloPort = in.readInt();
+            connected++;
+        }
+
+        for (Worker worker : workers) {
+            DataOutputStream out = worker.out;
+            out.writeByte(Wire.INIT);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(worker.j0);
+            out.writeInt(worker.j1);
+            out.writeInt(options.getWorkerEngine().ordinal());
+            out.writeInt(workers.length);
+            out.writeInt(options.getTransport().ordinal());
+            out.writeUTF(sharedFile == null ? "" : sharedFile.getPath());
+            Worker up = worker.index > 0 ? workers[worker.index - 1] : null;
+            out.writeUTF(up == null ? "" : up.host);
+            out.writeInt(up == null ? 0 : up.haloPort);
+            out.flush();
+        }
+        for (Worker worker : workers) expect(worker.in, Wire.READY, worker.index);
+    }
+
+    private ProcessBuilder launch(int index) {
+        List<String> command = new ArrayList<>();
+        String launcher = options.getLauncher();
+        if (launcher != null && !launcher.trim().isEmpty()) {
+            for (String part : launcher.replace("{worker}", Integer.toString(index)).trim().split("\\s+")) {
+                command.add(part);
+            }
+        }
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // Every engine sizes its thread pool from the processor count
+        command.add("-XX:ActiveProcessorCount=" + options.getWorkerThreads());
+        // VECTOR workers get the SIMD kernel when this JVM has it
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            command.add("--add-modules");
+            command.add("jdk.incubator.vector");
+        }
+        for (String option : options.getJvmOptions().trim().split("\\s+")) {
+            if (!option.isEmpty()) command.add(option);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(DomainWorker.class.getName());
+        command.add(server.getInetAddress().getHostAddress());
+        command.add(Integer.toString(server.getLocalPort()));
+        command.add(Integer.toString(index));
+        return new ProcessBuilder(command).inheritIO();
+    }
+
+    private static void expect(DataInputStream in, byte reply, int worker) throws IOException {
+        byte got = in.readByte();
+        if (got != reply) throw new IOException("Worker " + worker + " sent " + got + " instead of " + reply);
+    }
+
+    @Override
+    public void step(Scene scene) {
+        advance(scene, 1);
+    }
+
+    @Override
+    public void advance(Scene scene, int steps) {
+        try {
+            sync(scene);
+            for (Worker worker : workers) {
+                worker.out.writeByte(Wire.STEP);
+                worker.out.writeInt(steps);
+                worker.out.flush();
+            }
+            for (Worker worker : workers) {
+                int count = worker.in.readInt();
+                for (int p=0; p<count; p++) worker.probeValues[p] = worker.in.readDouble();
+            }
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+        scene.getSources().advance(steps);
+        sourceStep = scene.getSources().getStep();
+    }
+
+    @Override
+    public int getTimeBlock() {
+        return TIME_BLOCK;
+    }
+
+    // Sends whatever changed in the scene since the last step
+    private void sync(Scene scene) throws IOException {
+        if (scene.getWidth() != width || scene.getHeight() != height) {
+            throw new IllegalArgumentException("Scene is " + scene.getWidth() + "x" + scene.getHeight()
+                + ", engine is " + width + "x" + height);
+        }
+        if (scene.getGeometryVersion() != geometryVersion || scene.isRealismMode() != realism
+                || scene.getMaterialTable() != materialTable) {
+            sendGeometry(scene);
+        }
+        SourceSet sources = scene.getSources();
+        if (sources.getVersion() != sourceVersion || sources.getStep() != sourceStep) sendSources(sources);
+    }
+
+    private void sendGeometry(Scene scene) throws IOException {
+        geometryVersion = scene.getGeometryVersion();
+        realism = scene.isRealismMode();
+        materialTable = scene.getMaterialTable();
+        byte[] cells = scene.getCells().getData();
+        for (Worker worker : workers) {
+            DataOutputStream out = worker.out;
+            out.writeByte(Wire.GEOMETRY);
+            out.writeBoolean(realism);
+            for (int id=0; id<MaterialTable.SIZE; id++) {
+                out.writeDouble(materialTable.getReflection(id));
+                out.writeDouble(materialTable.getDamping(id));
+            }
+            out.write(cells, worker.lo * width, (worker.hi - worker.lo) * width);
+            out.flush();
+        }
+        for (Worker worker : workers) expect(worker.in, Wire.ACK, worker.index);
+    }
+
+    private void sendSources(SourceSet sources) throws IOException {
+        sourceVersion = sources.getVersion();
+        sourceStep = sources.getStep();
+        for (Worker worker : workers) {
+            List<Integer> owned = new ArrayList<>();
+            for (int s=0; s<sources.size(); s++) {
+                if (sources.getY(s) >= worker.j0 && sources.getY(s) < worker.j1) owned.add(s);
+            }
+            DataOutputStream out = worker.out;
+            out.writeByte(Wire.SOURCES);
+            out.writeLong(sources.getStep());
+            out.writeInt(owned.size());
+            for (int s : owned) {
+                Waveform waveform = sources.getWaveform(s);
+                double[] table = waveform.getValues();
+                out.writeInt(sources.getX(s));
+                out.writeInt(sources.getY(s));
+                out.writeDouble(sources.getGain(s));
+                out.writeLong(sources.getStart(s));
+                out.writeBoolean(waveform.isLooping());
+                out.writeInt(table.length);
+                wire.writeDoubles(out, table, 0, table.length);
+            }
+            out.flush();
+        }
+        for (Worker worker : workers) expect(worker.in, Wire.ACK, worker.index);
+    }
+
+    @Override
+    public double sample(int x, int y) {
+        int[] slot = probeSlots.get((long) y * width + x);
+        if (slot != null) return workers[slot[0]].probeValues[slot[1]];
+        Worker worker = owner(y);
+        try {
+            worker.out.writeByte(Wire.PROBE);
+            worker.out.writeInt(x);
+            worker.out.writeInt(y);
+            worker.out.flush();
+            double value = worker.in.readDouble();
+            if (worker.probeCount == worker.probeValues.length) {
+                worker.probeValues = Arrays.copyOf(worker.probeValues, Math.max(4, worker.probeCount * 2));
+            }
+            worker.probeValues[worker.probeCount] = value;
+            probeSlots.put((long) y * width + x, new int[] {worker.index, worker.probeCount++});
+            return value;
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+    }
+
+    private Worker owner(int y) {
+        for (Worker worker : workers) {
+            if (y < worker.j1) return worker;
+        }
+        return workers[workers.length - 1];
+    }
+
+    @Override
+    public void readRow(int j, double[] row) {
+        Worker worker = owner(j);
+        try {
+            worker.out.writeByte(Wire.READ_ROW);
+            worker.out.writeInt(j);
+            worker.out.flush();
+            wire.readDoubles(worker.in, row, 0, width);
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+    }
+
+    // The owner steps the row and a neighbour reads it as its halo, so both get it
+    @Override
+    public void writeRow(int j, double[] row) {
+        try {
+            for (Worker worker : workers) {
+                if (j < worker.lo || j >= worker.hi) continue;
+                worker.out.writeByte(Wire.WRITE_ROW);
+                worker.out.writeInt(j);
+                wire.writeDoubles(worker.out, row, 0, width);
+                worker.out.flush();
+            }
+            for (Worker worker : workers) {
+                if (j >= worker.lo && j < worker.hi) expect(worker.in, Wire.ACK, worker.index);
+            }
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+        for (Map.Entry<Long, int[]> probe : probeSlots.entrySet()) {
+            if (probe.getKey() / width != j) continue;
+            int[] slot = probe.getValue();
+            workers[slot[0]].probeValues[slot[1]] = row[(int) (probe.getKey() % width)];
+        }
+    }
+
+    // Every worker's rows, one at a time, straight into the frame
+    @Override
+    public void snapshot(Frame frame) {
+        try {
+            for (Worker worker : workers) {
+                worker.out.writeByte(Wire.ROWS);
+                worker.out.flush();
+            }
+            frame.resetRange();
+            for (Worker worker : workers) {
+                for (int j=worker.j0; j<worker.j1; j++) {
+                    wire.readDoubles(worker.in, snapshotRow, 0, width);
+                    frame.fillRow(j, snapshotRow, 0);
+                }
+            }
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+    }
+
+    @Override
+    public void saveFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        try {
+            for (Worker worker : workers) {
+                int from = Math.max(j0, worker.j0), to = Math.min(j1, worker.j1);
+                if (from >= to) continue;
+                worker.out.writeByte(Wire.SAVE);
+                worker.out.writeInt(from);
+                worker.out.writeInt(to);
+                worker.out.flush();
+            }
+            // Bands are in row order, so each worker's rows follow the previous worker's
+            for (Worker worker : workers) {
+                int from = Math.max(j0, worker.j0), to = Math.min(j1, worker.j1);
+                if (from >= to) continue;
+                int length = (to - from) * width;
+                wire.readDoubles(worker.in, old, length);
+                wire.readDoubles(worker.in, current, length);
+            }
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+    }
+
+    // Each worker gets the rows it holds, halo rows included, so rows next to
+    // a band edge go to both neighbours
+    @Override
+    public void loadFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        int oldBase = old.position(), currentBase = current.position();
+        try {
+            for (Worker worker : workers) {
+                int from = Math.max(j0, worker.lo), to = Math.min(j1, worker.hi);
+                if (from >= to) continue;
+                int offset = (from - j0) * width, length = (to - from) * width;
+                worker.out.writeByte(Wire.LOAD);
+                worker.out.writeInt(from);
+                worker.out.writeInt(to);
+                wire.writeDoubles(worker.out, old.duplicate().position(oldBase + offset), length);
+                wire.writeDoubles(worker.out, current.duplicate().position(currentBase + offset), length);
+                worker.out.flush();
+            }
+            for (Worker worker : workers) {
+                if (Math.max(j0, worker.lo) < Math.min(j1, worker.hi)) expect(worker.in, Wire.ACK, worker.index);
+            }
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+        for (Map.Entry<Long, int[]> probe : probeSlots.entrySet()) {
+            int y = (int) (probe.getKey() / width), x = (int) (probe.getKey() % width);
+            if (y < j0 || y >= j1) continue;
+            int[] slot = probe.getValue();
+            workers[slot[0]].probeValues[slot[1]] = current.get(currentBase + (y - j0) * width + x);
+        }
+        old.position(oldBase + (j1 - j0) * width);
+        current.position(currentBase + (j1 - j0) * width);
+    }
+
+    @Override
+    public void clear() {
+        try {
+            for (Worker worker : workers) {
+                worker.out.writeByte(Wire.CLEAR);
+                worker.out.flush();
+            }
+            for (Worker worker : workers) expect(worker.in, Wire.ACK, worker.index);
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+        for (Worker worker : workers) Arrays.fill(worker.probeValues, 0.0);
+    }
+
+    private UncheckedIOException failed(IOException ex) {
+        return new UncheckedIOException("Distributed engine: " + ex.getMessage(), ex);
+    }
+
+    // Starting rows of the bands, for reports
+    public int[] getBandStarts() {
+        int[] starts = new int[workers.length];
+        for (int w=0; w<starts.length; w++) starts[w] = workers[w].j0;
+        return starts;
+    }
+
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            if (worker.out == null) continue;
+            try {
+                worker.out.writeByte(Wire.CLOSE);
+                worker.out.flush();
+                worker.socket.setSoTimeout(5000);
+                expect(worker.in, Wire.ACK, worker.index);
+            } catch (IOException ex) {
+                // Already gone
+            }
+        }
+        for (Worker worker : workers) {
+            try {
+                if (worker.socket != null) worker.socket.close();
+            } catch (IOException ex) {
+                // Closing anyway
+            }
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) process.destroyForcibly();
+            } catch (InterruptedException ex) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            server.close();
+        } catch (IOException ex) {
+            // Nothing to release
+        }
+        if (sharedFile != null) sharedFile.delete();
+    }
+}
@@ -0,0 +1,114 @@
+package jay.audio.roomaudio.distributed;
+
+import java.io.File;
+
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.engine.RowBands;
+
+// How a DistributedEngine splits the grid and starts its workers.
+public class DistributedOptions {
+    public enum Transport {
+        // Halo rows in a memory-mapped file shared by all workers on one machine
+        MAPPED,
+        // Halo rows over TCP between neighbouring workers
+        SOCKET
+    }
+
+    private int workers = 2;
+    private Transport transport = Transport.MAPPED;
+    private EngineType workerEngine = EngineType.PARALLEL;
+    // Threads per worker engine; 0 splits the machine's cores evenly
+    private int workerThreads = 0;
+    // Command each worker JVM is started under, e.g. "numactl --cpunodebind={worker} --membind={worker}";
+    // {worker} is replaced by the worker's index. Null starts the JVM directly.
+    private String launcher;
+    private String jvmOptions = "";
+    // Where the shared halo file goes (e.g. /dev/shm); null uses the temp directory
+    private File sharedDirectory;
+
+    // --workers N --transport mapped|socket --worker-engine TYPE --worker-threads N
+    // --launcher CMD --worker-jvm OPTIONS --shared-dir DIR; returns false for other flags
+    public boolean parse(String flag, String value) {
+        switch (flag) {
+            case "--workers": setWorkers(Integer.parseInt(value)); return true;
+            case "--transport": transport = Transport.valueOf(value.toUpperCase()); return true;
+            case "--worker-engine": setWorkerEngine(EngineType.valueOf(value.toUpperCase())); return true;
+            case "--worker-threads": workerThreads = Integer.parseInt(value); return true;
+            case "--launcher": launcher = value; return true;
+            case "--worker-jvm": jvmOptions = value; return true;
+            case "--shared-dir": sharedDirectory = new File(value); return true;
+            default: return false;
+        }
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public DistributedOptions setWorkers(int workers) {
+        if (workers < 1) throw new IllegalArgumentException("Need at least one worker: " + workers);
+        this.workers = workers;
+        return this;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public DistributedOptions setTransport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    public EngineType getWorkerEngine() {
+        return workerEngine;
+    }
+
+    public DistributedOptions setWorkerEngine(EngineType workerEngine) {
+        if (workerEngine == EngineType.DISTRIBUTED) {
+            throw new IllegalArgumentException("Workers cannot themselves be distributed");
+        }
+        // Halos are one row deep
+        if (workerEngine == EngineType.HIGH_ORDER) {
+            throw new IllegalArgumentException("Workers need a stencil one cell wide, not " + workerEngine);
+        }
+        this.workerEngine = workerEngine;
+        return this;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads > 0 ? workerThreads : Math.max(1, RowBands.defaultThreads() / workers);
+    }
+
+    public DistributedOptions setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+        return this;
+    }
+
+    public String getLauncher() {
+        return launcher;
+    }
+
+    public DistributedOptions setLauncher(String launcher) {
+        this.launcher = launcher;
+        return this;
+    }
+
+    public String getJvmOptions() {
+        return jvmOptions;
+    }
+
+    public DistributedOptions setJvmOptions(String jvmOptions) {
+        this.jvmOptions = jvmOptions == null ? "" : jvmOptions;
+        return this;
+    }
+
+    public File getSharedDirectory() {
+        return sharedDirectory;
+    }
+
+    public DistributedOptions setSharedDirectory(File sharedDirectory) {
+        this.sharedDirectory = sharedDirectory;
+        return this;
+    }
+}
@@ -0,0 +1,243 @@
+package jay.audio.roomaudio.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.StepEngine;
+import jay.audio.roomaudio.model.MaterialTable;
+import jay.audio.roomaudio.source.SourceSet;
+import jay.audio.roomaudio.source.Waveform;
+
+// One subdomain of a DistributedEngine, run in its own JVM:
+//   java -cp ... jay.audio.roomaudio.distributed.DomainWorker HOST PORT INDEX
+//
+// The worker owns global rows [j0, j1) and keeps them in a local Scene one
+// row taller at each inner edge. Those halo rows fall on the local grid's
+// boundary ring, so the local engine (any EngineType) treats them as walls;
+// whatever it computes there is overwritten after every step with the
+// neighbours' rows, which is all the owned rows' stencil reads from them.
+// At the outer edges of the whole grid the local ring is the real boundary.
+public class DomainWorker {
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Wire wire = new Wire();
+    private final ServerSocket haloServer;
+    private final int index;
+
+    private int width, j0, j1;
+    // First global row of the local grid, and local rows
+    private int lo, rows;
+    private Scene scene;
+    private StepEngine engine;
+    private HaloExchange halo;
+    private long step;
+    private double[] top, bottom, above, below;
+    // Rows read or written by the coordinator
+    private double[] row;
+    // Registered probe cells in local coordinates
+    private final List<int[]> probes = new ArrayList<>();
+
+    private DomainWorker(Socket control, int index) throws IOException {
+        this.index = index;
+        control.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(control.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(control.getOutputStream()));
+        haloServer = new ServerSocket(0);
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length != 3) {
+            System.err.println("Usage: DomainWorker HOST PORT INDEX");
+            System.exit(1);
+        }
+        try (Socket control = new Socket(args[0], Integer.parseInt(args[1]))) {
+            new DomainWorker(control, Integer.parseInt(args[2])).run();
+        } catch (EOFException ex) {
+            // Coordinator went away
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Worker " + args[2] + ": " + ex);
+            System.exit(1);
+        }
+    }
+
+    private void run() throws IOException {
+        out.writeByte(Wire.HELLO);
+        out.writeInt(index);
+        out.writeInt(haloServer.getLocalPort());
+        out.flush();
+        try {
+            while (true) {
+                byte command = in.readByte();
+                switch (command) {
+                    case Wire.INIT: init(); break;
+                    case Wire.GEOMETRY: geometry(); break;
+                    case Wire.SOURCES: sources(); break;
+                    case Wire.STEP: step(in.readInt()); break;
+                    case Wire.PROBE: probe(in.readInt(), in.readInt()); break;
+                    case Wire.ROWS: sendRows(); break;
+                    case Wire.READ_ROW: readRow(in.readInt()); break;
+                    case Wire.WRITE_ROW: writeRow(in.readInt()); break;
+                    case Wire.SAVE: save(in.readInt(), in.readInt()); break;
+                    case Wire.LOAD: load(in.readInt(), in.readInt()); break;
+                    case Wire.CLEAR: engine.clear(); ack(); break;
+                    case Wire.CLOSE: ack(); out.flush(); return;
+                    default: throw new IOException("Unknown command " + command);
+                }
+                out.flush();
+            }
+        } finally {
+            if (engine != null) engine.close();
+            if (halo != null) halo.close();
+            haloServer.close();
+        }
+    }
+
+    private void ack() throws IOException {
+        out.writeByte(Wire.ACK);
+    }
+
+    private void init() throws IOException {
+        width = in.readInt();
+        int height = in.readInt();
+        j0 = in.readInt();
+        j1 = in.readInt();
+        EngineType type = EngineType.values()[in.readInt()];
+        int workers = in.readInt();
+        DistributedOptions.Transport transport = DistributedOptions.Transport.values()[in.readInt()];
+        String sharedFile = in.readUTF();
+        String upHost = in.readUTF();
+        int upPort = in.readInt();
+
+        lo = Math.max(0, j0 - 1);
+        rows = Math.min(height, j1 + 1) - lo;
+        // Waveforms arrive precomputed and alpha does not depend on the cell size
+        scene = new Scene(width, rows);
+        // Activity next to a halo row comes from the neighbour, which the region cannot see
+        scene.setActiveRegionTracking(false);
+        // Sized by the JVM's processor count, which the coordinator sets per worker
+        engine = type.create(width, rows);
+        top = new double[width];
+        bottom = new double[width];
+        above = new double[width];
+        below = new double[width];
+        row = new double[width];
+
+        if (transport == DistributedOptions.Transport.MAPPED) {
+            halo = new MappedHaloExchange(new File(sharedFile), workers, index, width);
+        } else {
+            // Connect upwards first; the connection below waits in this worker's backlog meanwhile
+            Socket up = null, down = null;
+            if (index > 0) {
+                up = new Socket(upHost, upPort);
+                up.setTcpNoDelay(true);
+            }
+            if (index < workers - 1) {
+                down = haloServer.accept();
+                down.setTcpNoDelay(true);
+            }
+            halo = new SocketHaloExchange(index, up, down);
+        }
+        out.writeByte(Wire.READY);
+    }
+
+    private void geometry() throws IOException {
+        boolean realism = in.readBoolean();
+        MaterialTable table = new MaterialTable();
+        for (int id=0; id<MaterialTable.SIZE; id++) table.set(id, in.readDouble(), in.readDouble());
+        in.readFully(scene.getCells().getData(), 0, width * rows);
+        scene.setMaterialTable(table);
+        scene.setRealismMode(realism);
+        scene.geometryChanged();
+        ack();
+    }
+
+    private void sources() throws IOException {
+        SourceSet sources = scene.getSources();
+        sources.clear();
+        long sourceStep = in.readLong();
+        int count = in.readInt();
+        for (int s=0; s<count; s++) {
+            int x = in.readInt(), y = in.readInt();
+            double gain = in.readDouble();
+            long start = in.readLong();
+            boolean loop = in.readBoolean();
+            double[] table = new double[in.readInt()];
+            wire.readDoubles(in, table, 0, table.length);
+            int added = sources.add(x, y - lo, Waveform.of(table, loop), gain);
+            sources.setStart(added, start);
+        }
+        sources.setStep(sourceStep);
+        ack();
+    }
+
+    private void step(int steps) throws IOException {
+        int first = j0 - lo, last = j1 - 1 - lo;
+        for (int n=0; n<steps; n++) {
+            engine.step(scene);
+            engine.readRow(first, top);
+            engine.readRow(last, bottom);
+            halo.exchange(++step, top, bottom, above, below);
+            if (first > 0) engine.writeRow(first - 1, above);
+            if (last < rows - 1) engine.writeRow(last + 1, below);
+        }
+        out.writeInt(probes.size());
+        for (int[] xy : probes) out.writeDouble(engine.sample(xy[0], xy[1]));
+    }
+
+    private void probe(int x, int y) throws IOException {
+        probes.add(new int[] {x, y - lo});
+        out.writeDouble(engine.sample(x, y - lo));
+    }
+
+    private void sendRows() throws IOException {
+        for (int j=j0; j<j1; j++) {
+            engine.readRow(j - lo, row);
+            wire.writeDoubles(out, row, 0, width);
+        }
+    }
+
+    private void readRow(int j) throws IOException {
+        engine.readRow(j - lo, row);
+        wire.writeDoubles(out, row, 0, width);
+    }
+
+    private void writeRow(int j) throws IOException {
+        wire.readDoubles(in, row, 0, width);
+        engine.writeRow(j - lo, row);
+        ack();
+    }
+
+    private void save(int from, int to) throws IOException {
+        int length = (to - from) * width;
+        DoubleBuffer old = DoubleBuffer.allocate(length);
+        DoubleBuffer current = DoubleBuffer.allocate(length);
+        engine.saveFields(from - lo, to - lo, old, current);
+        wire.writeDoubles(out, old.array(), 0, length);
+        wire.writeDoubles(out, current.array(), 0, length);
+    }
+
+    private void load(int from, int to) throws IOException {
+        int length = (to - from) * width;
+        DoubleBuffer old = DoubleBuffer.allocate(length);
+        DoubleBuffer current = DoubleBuffer.allocate(length);
+        wire.readDoubles(in, old, length);
+        wire.readDoubles(in, current, length);
+        old.flip();
+        current.flip();
+        engine.loadFields(from - lo, to - lo, old, current);
+        ack();
+    }
+}
@@ -0,0 +1,12 @@
+package jay.audio.roomaudio.distributed;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Swaps boundary rows between neighbouring subdomains after every step. A
+// worker publishes its first and last owned rows and receives the row just
+// above and just below its band from the workers that own them.
+interface HaloExchange extends Closeable {
+    // above is left alone for the first worker, below for the last; step numbers increase by one per call
+    void exchange(long step, double[] top, double[] bottom, double[] above, double[] below) throws IOException;
+}
@@ -0,0 +1,102 @@
+package jay.audio.roomaudio.distributed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Halo rows through one memory-mapped file that every worker maps. Each
+// worker has a step counter on its own cache line and two slots (by step
+// parity) holding its top and bottom rows. A worker writes its rows, then
+// publishes the step with a release store; neighbours wait for that step
+// with acquire loads and copy the rows out. Two slots are enough: a worker
+// cannot write step n + 2 before its neighbour has published step n + 1,
+// which happens only after the neighbour finished reading step n.
+//
+// Put the file on a RAM-backed file system (e.g. /dev/shm) so the pages are
+// never written back to disk.
+class MappedHaloExchange implements HaloExchange {
+    private static final VarHandle COUNTER =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int LINE = 64;
+    // Spin this many times before yielding, then parking
+    private static final int SPINS = 1000;
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final MappedByteBuffer map;
+    private final DoubleBuffer rows;
+    private final int workers, index, width;
+
+    MappedHaloExchange(File file, int workers, int index, int width) throws IOException {
+        this.workers = workers;
+        this.index = index;
+        this.width = width;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size(workers, width));
+        }
+        rows = map.asDoubleBuffer();
+    }
+
+    // Creates the zeroed file for all workers
+    static void create(File file, int workers, int width) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(size(workers, width));
+        }
+    }
+
+    private static long size(int workers, int width) {
+        return (long) workers * LINE + (long) workers * 2 * 2 * width * Double.BYTES;
+    }
+
+    // First double of worker w's slot for the given parity; its bottom row follows the top row
+    private int slot(int w, int parity) {
+        return workers * LINE / Double.BYTES + (w * 2 + parity) * 2 * width;
+    }
+
+    @Override
+    public void exchange(long step, double[] top, double[] bottom, double[] above, double[] below) throws IOException {
+        int parity = (int) (step & 1);
+        int mine = slot(index, parity);
+        rows.put(mine, top);
+        rows.put(mine + width, bottom);
+        COUNTER.setRelease(map, index * LINE, step);
+
+        if (index > 0) {
+            await(index - 1, step);
+            rows.get(slot(index - 1, parity) + width, above);
+        }
+        if (index < workers - 1) {
+            await(index + 1, step);
+            rows.get(slot(index + 1, parity), below);
+        }
+    }
+
+    private void await(int w, long step) throws IOException {
+        long deadline = 0;
+        for (int spins=0; (long) COUNTER.getAcquire(map, w * LINE) < step; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else if (spins < 2 * SPINS) {
+                Thread.yield();
+            } else {
+                // More workers than cores, or a neighbour that is still busy
+                LockSupport.parkNanos(20_000);
+                if (deadline == 0) deadline = System.nanoTime() + TIMEOUT_NANOS;
+                if (System.nanoTime() > deadline) throw new IOException("Worker " + w + " stopped exchanging rows");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // The mapping goes away with the buffer
+    }
+}
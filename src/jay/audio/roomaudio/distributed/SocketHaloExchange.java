@@ -0,0 +1,59 @@
+package jay.audio.roomaudio.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+// Halo rows over TCP connections to the neighbouring workers, so workers can
+// later run on different machines. Rows go in two phases, first across the
+// links whose upper worker has an even index, then the odd ones; on each
+// link the upper worker sends before it receives and the lower one the other
+// way round. No two workers ever both wait to send, so rows larger than the
+// socket buffers cannot deadlock.
+class SocketHaloExchange implements HaloExchange {
+    private final int index;
+    // Null at the ends of the chain
+    private final Socket up, down;
+    private final DataInputStream upIn, downIn;
+    private final DataOutputStream upOut, downOut;
+    private final Wire wire = new Wire();
+
+    SocketHaloExchange(int index, Socket up, Socket down) throws IOException {
+        this.index = index;
+        this.up = up;
+        this.down = down;
+        upIn = up == null ? null : new DataInputStream(new BufferedInputStream(up.getInputStream()));
+        upOut = up == null ? null : new DataOutputStream(new BufferedOutputStream(up.getOutputStream()));
+        downIn = down == null ? null : new DataInputStream(new BufferedInputStream(down.getInputStream()));
+        downOut = down == null ? null : new DataOutputStream(new BufferedOutputStream(down.getOutputStream()));
+    }
+
+    @Override
+    public void exchange(long step, double[] top, double[] bottom, double[] above, double[] below) throws IOException {
+        for (int phase=0; phase<2; phase++) {
+            // The link below has this worker as its upper end
+            if (down != null && index % 2 == phase) {
+                send(downOut, bottom);
+                wire.readDoubles(downIn, below, 0, below.length);
+            }
+            if (up != null && (index - 1) % 2 == phase) {
+                wire.readDoubles(upIn, above, 0, above.length);
+                send(upOut, top);
+            }
+        }
+    }
+
+    private void send(DataOutputStream out, double[] row) throws IOException {
+        wire.writeDoubles(out, row, 0, row.length);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (up != null) up.close();
+        if (down != null) down.close();
+    }
+}
@@ -0,0 +1,77 @@
+package jay.audio.roomaudio.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+// Messages between the coordinator and its workers, and bulk double arrays
+// on the wire. Arrays go through one reusable byte buffer per stream, so
+// sending a row costs one copy instead of a call per value.
+final class Wire {
+    // Worker to coordinator, once on connect: index, halo port
+    static final byte HELLO = 1;
+    // Subdomain, engine and transport; answered with READY
+    static final byte INIT = 2;
+    static final byte READY = 3;
+    // Mode, material table and the cell bytes of the local rows
+    static final byte GEOMETRY = 4;
+    // Step counter and every source in the owned rows
+    static final byte SOURCES = 5;
+    // Advance N steps; answered with the value of every registered probe cell
+    static final byte STEP = 6;
+    // Register a probe cell; answered with its current value
+    static final byte PROBE = 7;
+    // Owned rows of the current field
+    static final byte ROWS = 8;
+    // Global rows [from, to) of the previous and current fields, within the owned rows
+    static final byte SAVE = 9;
+    // Global rows [from, to) of the previous and current fields, within the local rows
+    static final byte LOAD = 10;
+    static final byte CLEAR = 11;
+    static final byte CLOSE = 12;
+    static final byte ACK = 13;
+    // One global row of the current field, from its owner
+    static final byte READ_ROW = 14;
+    // Overwrite one global row of the current field, owned or halo; answered with ACK
+    static final byte WRITE_ROW = 15;
+
+    private byte[] scratch = new byte[0];
+
+    void writeDoubles(DataOutputStream out, double[] values, int offset, int length) throws IOException {
+        ByteBuffer bytes = buffer(length);
+        bytes.asDoubleBuffer().put(values, offset, length);
+        out.write(bytes.array(), 0, length * Double.BYTES);
+    }
+
+    void readDoubles(DataInputStream in, double[] values, int offset, int length) throws IOException {
+        ByteBuffer bytes = buffer(length);
+        in.readFully(bytes.array(), 0, length * Double.BYTES);
+        bytes.asDoubleBuffer().get(values, offset, length);
+    }
+
+    // Sends length values from a buffer's position on, leaving the buffer where it was
+    void writeDoubles(DataOutputStream out, DoubleBuffer values, int length) throws IOException {
+        ByteBuffer bytes = buffer(length);
+        DoubleBuffer view = values.duplicate();
+        view.limit(view.position() + length);
+        bytes.asDoubleBuffer().put(view);
+        out.write(bytes.array(), 0, length * Double.BYTES);
+    }
+
+    // Moves length values from the stream straight into a buffer
+    void readDoubles(DataInputStream in, DoubleBuffer values, int length) throws IOException {
+        ByteBuffer bytes = buffer(length);
+        in.readFully(bytes.array(), 0, length * Double.BYTES);
+        DoubleBuffer view = bytes.asDoubleBuffer();
+        view.limit(length);
+        values.put(view);
+    }
+
+    private ByteBuffer buffer(int doubles) {
+        int size = doubles * Double.BYTES;
+        if (scratch.length < size) scratch = new byte[size];
+        return ByteBuffer.wrap(scratch, 0, size);
+    }
+}
@@ -0,0 +1,148 @@
+package jay.audio.roomaudio.engine;
+
+import jay.audio.roomaudio.model.PressureGrid;
+import jay.audio.roomaudio.source.SourceSet;
+
+// Conservative bounding box of the cells that can be non-zero. Every step it
+// grows by the stencil radius and always covers the active sources,
+// so the field outside it is exactly 0 and need not be computed. Every
+// SHRINK_INTERVAL steps the box is re-fitted to the TILE x TILE tiles whose
+// pressure is still above the threshold; quiet cells left outside are zeroed.
+public class ActiveRegion {
+    public static final int TILE = 32;
+    private static final int SHRINK_INTERVAL = 32;
+
+    private final int width, height;
+    // Cells the field can spread per step
+    private final int radius;
+    private double threshold = 1e-9;
+
+    // Inclusive bounds; empty when x0 > x1
+    private int x0, y0, x1, y1;
+    private int stepsSinceShrink = 0;
+
+    public ActiveRegion(int width, int height) {
+        this(width, height, 1);
+    }
+
+    public ActiveRegion(int width, int height, int radius) {
+        this.width = width;
+        this.height = height;
+        this.radius = radius;
+        clear();
+    }
+
+    public void clear() {
+        x0 = y0 = 0;
+        x1 = y1 = -1;
+    }
+
+    public void fill() {
+        x0 = y0 = 0;
+        x1 = width - 1;
+        y1 = height - 1;
+    }
+
+    public boolean isEmpty() {
+        return x0 > x1;
+    }
+
+    // Cells quieter than this (in |p|) may be dropped when the region shrinks
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    // Called before computing a step
+    public void grow(Scene scene) {
+        if (!isEmpty()) {
+            x0 = Math.max(0, x0 - radius);
+            y0 = Math.max(0, y0 - radius);
+            x1 = Math.min(width - 1, x1 + radius);
+            y1 = Math.min(height - 1, y1 + radius);
+        }
+        // Sources whose waveform has finished no longer add energy
+        SourceSet sources = scene.getSources();
+        for (int s=0; s<sources.size(); s++) {
+            if (sources.isSounding(s)) {
+                include(sources.getX(s), sources.getY(s));
+            }
+        }
+    }
+
+    private void include(int x, int y) {
+        if (isEmpty()) {
+            x0 = x1 = x;
+            y0 = y1 = y;
+        } else {
+            x0 = Math.min(x0, x);
+            y0 = Math.min(y0, y);
+            x1 = Math.max(x1, x);
+            y1 = Math.max(y1, y);
+        }
+    }
+
+    // Called after the grids are swapped. pCurrent and pOld decide activity; all
+    // three grids are zeroed outside the new box.
+    public void maybeShrink(Scene scene, PressureGrid pCurrent, PressureGrid pOld, PressureGrid pNew) {
+        if (isEmpty() || ++stepsSinceShrink < SHRINK_INTERVAL) return;
+        stepsSinceShrink = 0;
+
+        int ox0 = x0, oy0 = y0, ox1 = x1, oy1 = y1;
+        double[] cur = pCurrent.getData();
+        double[] old = pOld.getData();
+
+        clear();
+        for (int ty=oy0; ty<=oy1; ty+=TILE) {
+            int tyEnd = Math.min(oy1, ty + TILE - 1);
+            for (int tx=ox0; tx<=ox1; tx+=TILE) {
+                int txEnd = Math.min(ox1, tx + TILE - 1);
+                if (tileActive(cur, old, pCurrent, tx, ty, txEnd, tyEnd)) {
+                    include(tx, ty);
+                    include(txEnd, tyEnd);
+                }
+            }
+        }
+        // Pads the fitted box by the stencil radius and re-adds the sources
+        grow(scene);
+
+        double[] next = pNew.getData();
+        for (int j=oy0; j<=oy1; j++) {
+            int k = pCurrent.index(ox0, j);
+            for (int i=ox0; i<=ox1; i++, k++) {
+                if (isEmpty() || i < x0 || i > x1 || j < y0 || j > y1) {
+                    cur[k] = 0;
+                    old[k] = 0;
+                    next[k] = 0;
+                }
+            }
+        }
+    }
+
+    private boolean tileActive(double[] cur, double[] old, PressureGrid layout, int tx0, int ty0, int tx1, int ty1) {
+        for (int j=ty0; j<=ty1; j++) {
+            int k = layout.index(tx0, j);
+            for (int i=tx0; i<=tx1; i++, k++) {
+                if (Math.abs(cur[k]) > threshold || Math.abs(old[k]) > threshold) return true;
+            }
+        }
+        return false;
+    }
+
+    public int getColStart() {
+        return x0;
+    }
+
+    // Exclusive
+    public int getColEnd() {
+        return x1 + 1;
+    }
+
+    public int getRowStart() {
+        return y0;
+    }
+
+    // Exclusive
+    public int getRowEnd() {
+        return y1 + 1;
+    }
+}
@@ -0,0 +1,94 @@
+package jay.audio.roomaudio.engine;
+
+import java.util.Arrays;
+
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.Material;
+import jay.audio.roomaudio.model.MaterialTable;
+
+// Per-cell multipliers that turn both update modes into one branch-free formula,
+// with material reflection/damping and global damping already multiplied in:
+//
+//   pNew = stencil[k] * (2*p - pOld + alpha^2 * laplacian) + reflect[k] * p
+//
+// Air cells use (damping, 0), obstacle and boundary cells use (0, reflection)
+// and ghost cells use (0, 0). The arrays share PressureGrid's strided layout,
+// so they act as lane masks over the same contiguous index range.
+public class CellCoefficients {
+    private final int width, height;
+    private final int stride;
+    // Allocated on first use, so engines that keep their own cell data never pay for them
+    private double[] stencil;
+    private double[] reflect;
+
+    private long builtVersion = -1;
+    private boolean builtRealism;
+    private int buildCount = 0;
+
+    public CellCoefficients(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+    }
+
+    // Rebuilds only when the room geometry or the mode changed since the last call.
+    // Returns true if it rebuilt.
+    public boolean update(Scene scene) {
+        if (builtVersion == scene.getGeometryVersion() && builtRealism == scene.isRealismMode()) return false;
+        build(scene);
+        builtVersion = scene.getGeometryVersion();
+        builtRealism = scene.isRealismMode();
+        buildCount++;
+        return true;
+    }
+
+    // Changes every time the multipliers are rebuilt, for engines that keep derived copies
+    public int getBuildCount() {
+        return buildCount;
+    }
+
+    private void build(Scene scene) {
+        if (stencil == null) {
+            stencil = new double[stride * (height + 2)];
+            reflect = new double[stride * (height + 2)];
+        }
+        Arrays.fill(stencil, 0.0);
+        Arrays.fill(reflect, 0.0);
+        byte[] cells = scene.getCells().getData();
+        MaterialTable table = scene.getMaterialTable();
+        boolean realism = scene.isRealismMode();
+        double g = realism ? scene.getGlobalDamping() : 1.0;
+        // Boundaries: p=0 in ideal mode, "Concrete" in realism mode
+        double boundary = realism ? table.getReflection(Material.CONCRETE.getId()) * g : 0.0;
+
+        // Indexed by the packed cell byte, so each cell is a single lookup
+        double[] stencilOf = new double[256];
+        double[] reflectOf = new double[256];
+        for (int id=0; id<MaterialTable.SIZE; id++) {
+            stencilOf[id] = realism ? table.getDamping(id) * g : 1.0;
+            reflectOf[id | CellProperties.OBSTACLE] = realism ? table.getReflection(id) * g : 0.0;
+        }
+
+        for (int j=0; j<height; j++) {
+            int row = j * width;
+            for (int i=0; i<width; i++) {
+                int k = (j + 1) * stride + (i + 1);
+                if (i == 0 || j == 0 || i == width-1 || j == height-1) {
+                    reflect[k] = boundary;
+                } else {
+                    int cell = cells[row + i] & 0xff;
+                    stencil[k] = stencilOf[cell];
+                    reflect[k] = reflectOf[cell];
+                }
+            }
+        }
+    }
+
+    public double[] getStencil() {
+        return stencil;
+    }
+
+    public double[] getReflect() {
+        return reflect;
+    }
+}
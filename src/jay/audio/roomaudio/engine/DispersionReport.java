@@ -0,0 +1,124 @@
+package jay.audio.roomaudio.engine;
+
+import java.util.function.DoubleFunction;
+
+// Numerical dispersion of the 5-point kernel and HighOrderEngine's 13-point
+// kernel at the scene's alpha. A plane wave of wavenumber k is an exact
+// solution of either update when
+//
+//   2 cos(omega dt) = w0 + 2 w1 (cos kx + cos ky) + 4 wd cos kx cos ky + 2 w2 (cos 2kx + cos 2ky)
+//
+// (k in radians per cell), so the phase velocity error follows from the
+// weights directly; it is worst along the axes or the diagonals. Also finds
+// the cells per wavelength each kernel needs for a given error and times
+// both engines, which together give the cost of equal accuracy.
+//
+// Usage: DispersionReport [width] [height] [steps]
+public class DispersionReport {
+    private static final double[] CELLS_PER_WAVELENGTH = {3, 4, 5, 6, 8, 10, 12, 16, 20, 32};
+    private static final double[] TOLERANCES = {0.01, 0.001};
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        double alpha = new Scene(1, 1).getAlpha();
+        DoubleFunction<double[]> second = DispersionReport::fivePointWeights;
+        DoubleFunction<double[]> fourth = HighOrderEngine::weights;
+        double[] w2 = second.apply(alpha), w4 = fourth.apply(alpha);
+
+        System.out.printf("alpha (c dt / dx) = %.3f; stability limits: 5-point %.4f, 13-point %.4f%n",
+            alpha, stabilityLimit(second), stabilityLimit(fourth));
+        System.out.println();
+        System.out.println("Phase velocity error (%)");
+        System.out.printf("%-10s %12s %12s %12s %12s%n", "cells/wl", "5pt axis", "5pt diag", "13pt axis", "13pt diag");
+        for (double n : CELLS_PER_WAVELENGTH) {
+            System.out.printf("%-10.0f %12.4f %12.4f %12.5f %12.5f%n", n,
+                100 * phaseError(w2, alpha, n, 0), 100 * phaseError(w2, alpha, n, Math.PI / 4),
+                100 * phaseError(w4, alpha, n, 0), 100 * phaseError(w4, alpha, n, Math.PI / 4));
+        }
+
+        double rate2 = cellRate(EngineType.VECTOR, width, height, steps);
+        double rate4 = cellRate(EngineType.HIGH_ORDER, width, height, steps);
+        System.out.println();
+        System.out.printf("Throughput on %dx%d: 5-point (VECTOR) %.3g cells/s, 13-point (HIGH_ORDER) %.3g cells/s%n",
+            width, height, rate2, rate4);
+        System.out.println();
+        System.out.println("For equal accuracy (worst direction); dx and dt both scale with cells/wl,");
+        System.out.println("so cells grow with its square and cell-steps with its cube. Ratios are 5-point / 13-point");
+        System.out.printf("%-10s %12s %12s %12s %12s %12s%n",
+            "error", "5pt cells/wl", "13pt cells/wl", "cells ratio", "steps ratio", "time ratio");
+        for (double tolerance : TOLERANCES) {
+            double n2 = cellsForError(w2, alpha, tolerance);
+            double n4 = cellsForError(w4, alpha, tolerance);
+            double cells = (n2 * n2) / (n4 * n4);
+            double cellSteps = cells * n2 / n4;
+            System.out.printf("%-10s %12.1f %12.1f %11.1fx %11.1fx %11.1fx%n",
+                tolerance * 100 + "%", n2, n4, cells, cellSteps, cellSteps * rate4 / rate2);
+        }
+    }
+
+    // The 5-point update's weights in the same order as HighOrderEngine.weights
+    private static double[] fivePointWeights(double alpha) {
+        return new double[] {2 - 4 * alpha * alpha, alpha * alpha, 0, 0};
+    }
+
+    // Relative phase velocity error of a plane wave with the given cells per
+    // wavelength travelling at the given angle to the x axis
+    private static double phaseError(double[] w, double alpha, double cellsPerWavelength, double angle) {
+        double k = 2 * Math.PI / cellsPerWavelength;
+        double half = symbol(w, k * Math.cos(angle), k * Math.sin(angle)) / 2;
+        return Math.acos(half) / (alpha * k) - 1;
+    }
+
+    private static double symbol(double[] w, double kx, double ky) {
+        return w[0] + 2 * w[1] * (Math.cos(kx) + Math.cos(ky)) + 4 * w[2] * Math.cos(kx) * Math.cos(ky)
+            + 2 * w[3] * (Math.cos(2 * kx) + Math.cos(2 * ky));
+    }
+
+    // Fewest cells per wavelength (to 0.1) at which neither axis nor diagonal exceeds the error
+    private static double cellsForError(double[] w, double alpha, double tolerance) {
+        double n = 2;
+        while (Math.abs(phaseError(w, alpha, n, 0)) > tolerance
+               || Math.abs(phaseError(w, alpha, n, Math.PI / 4)) > tolerance) {
+            n += 0.1;
+        }
+        return n;
+    }
+
+    // Largest alpha for which every wavenumber has |cos(omega dt)| <= 1
+    private static double stabilityLimit(DoubleFunction<double[]> weights) {
+        double lo = 0, hi = 2;
+        for (int iteration=0; iteration<40; iteration++) {
+            double alpha = (lo + hi) / 2;
+            if (stable(weights.apply(alpha))) lo = alpha; else hi = alpha;
+        }
+        return lo;
+    }
+
+    private static boolean stable(double[] w) {
+        int samples = 64;
+        for (int y=0; y<=samples; y++) {
+            for (int x=0; x<=samples; x++) {
+                double s = symbol(w, Math.PI * x / samples, Math.PI * y / samples);
+                if (Math.abs(s) > 2 + 1e-12) return false;
+            }
+        }
+        return true;
+    }
+
+    // Cells per second on an empty room with every cell swept
+    private static double cellRate(EngineType type, int width, int height, int steps) {
+        Scene scene = new Scene(width, height);
+        scene.setActiveRegionTracking(false);
+        scene.getSources().add(width / 2, height / 2);
+        try (StepEngine engine = type.create(width, height)) {
+            // Warm up before timing
+            for (int n=0; n<steps / 4; n++) engine.step(scene);
+            long start = System.nanoTime();
+            for (int n=0; n<steps; n++) engine.step(scene);
+            return (double) width * height * steps / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package jay.audio.roomaudio.engine;
+
+import java.io.File;
+
+import jay.audio.roomaudio.distributed.DistributedEngine;
+import jay.audio.roomaudio.distributed.DistributedOptions;
+
+public enum EngineType {
+    SERIAL("Serial"),
+    PARALLEL("Parallel"),
+    VECTOR("Vectorized"),
+    FLOAT("Single precision"),
+    TILED("Cache-blocked"),
+    OFF_HEAP("Off-heap"),
+    HIGH_ORDER("4th-order stencil"),
+    DISTRIBUTED("Distributed");
+
+    private final String name;
+
+    EngineType(String name) {
+        this.name = name;
+    }
+
+    public String getDisplayName() {
+        return name;
+    }
+
+    public StepEngine create(int width, int height) {
+        return create(width, height, null);
+    }
+
+    // backingDir: where OFF_HEAP maps its grid files and DISTRIBUTED its shared halo file;
+    // null keeps them in direct memory or the temp directory
+    public StepEngine create(int width, int height, File backingDir) {
+        return create(width, height, backingDir, new DistributedOptions().setSharedDirectory(backingDir));
+    }
+
+    // distributed: worker count, transport and launcher for DISTRIBUTED
+    public StepEngine create(int width, int height, File backingDir, DistributedOptions distributed) {
+        return create(width, height, backingDir, distributed, RowBands.defaultThreads());
+    }
+
+    // threads: pool size of the multi-core engines, e.g. fewer than the cores when several
+    // runs share the machine. DISTRIBUTED sizes its workers from its own options.
+    public StepEngine create(int width, int height, File backingDir, DistributedOptions distributed, int threads) {
+        switch (this) {
+            case PARALLEL: return new ParallelEngine(width, height, threads);
+            case VECTOR: return new VectorEngine(width, height, threads);
+            case FLOAT: return new FloatEngine(width, height, threads);
+            case TILED: return new TiledEngine(width, height, threads);
+            case OFF_HEAP: return new OffHeapEngine(width, height, backingDir, threads);
+            case HIGH_ORDER: return new HighOrderEngine(width, height, threads);
+            case DISTRIBUTED: return new DistributedEngine(width, height, distributed);
+            default: return new SerialEngine(width, height);
+        }
+    }
+}
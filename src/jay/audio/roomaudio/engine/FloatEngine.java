@@ -0,0 +1,142 @@
+package jay.audio.roomaudio.engine;
+
+import java.nio.DoubleBuffer;
+
+import jay.audio.roomaudio.model.FloatPressureGrid;
+
+// Single-precision engine: float grids, alpha and coefficients. The stencil is
+// bandwidth bound, so halving the bytes per cell roughly doubles steps/sec and
+// halves memory. Uses the same branch-free band kernel as VectorEngine, on
+// float copies of the scene's coefficients.
+public class FloatEngine implements StepEngine {
+    private final int width, height;
+
+    private FloatPressureGrid pOld;
+    private FloatPressureGrid pCurrent;
+    private FloatPressureGrid pNew;
+
+    private int coefficientBuild = -1;
+    private final float[] stencil;
+    private final float[] reflect;
+    private final RowBands bands;
+
+    public FloatEngine(int width, int height) {
+        this(width, height, RowBands.defaultThreads());
+    }
+
+    public FloatEngine(int width, int height, int threads) {
+        this.width = width;
+        this.height = height;
+        pOld = new FloatPressureGrid(width, height);
+        pCurrent = new FloatPressureGrid(width, height);
+        pNew = new FloatPressureGrid(width, height);
+        stencil = new float[pCurrent.getData().length];
+        reflect = new float[pCurrent.getData().length];
+        bands = new RowBands(height, threads);
+    }
+
+    @Override
+    public void step(Scene scene) {
+        CellCoefficients coefficients = scene.getCoefficients();
+        if (coefficients.getBuildCount() != coefficientBuild) {
+            coefficientBuild = coefficients.getBuildCount();
+            double[] a = coefficients.getStencil();
+            double[] b = coefficients.getReflect();
+            for (int k=0; k<a.length; k++) {
+                stencil[k] = (float) a[k];
+                reflect[k] = (float) b[k];
+            }
+        }
+        float a2 = (float) (scene.getAlpha()*scene.getAlpha());
+        bands.run((j0, j1) -> computeRows(a2, j0, j1));
+        injectSources(scene);
+
+        FloatPressureGrid temp = pOld;
+        pOld = pCurrent;
+        pCurrent = pNew;
+        pNew = temp;
+        scene.getSources().advance(1);
+    }
+
+    private void computeRows(float a2, int j0, int j1) {
+        float[] next = pNew.getData();
+        float[] cur = pCurrent.getData();
+        float[] old = pOld.getData();
+        float[] a = stencil;
+        float[] b = reflect;
+        int stride = pCurrent.getStride();
+
+        int k0 = pCurrent.index(0, j0);
+        int k1 = pCurrent.index(width-1, j1-1) + 1;
+        for (int k=k0; k<k1; k++) {
+            float p = cur[k];
+            float lap = cur[k+1] + cur[k-1] + cur[k+stride] + cur[k-stride] - 4*p;
+            next[k] = a[k]*(2*p - old[k] + a2*lap) + b[k]*p;
+        }
+    }
+
+    private void injectSources(Scene scene) {
+        // Realism mode damps the whole new field, injected pressure included
+        double scale = scene.isRealismMode() ? scene.getGlobalDamping() : 1.0;
+        scene.getSources().inject(pNew.getData(), scale);
+    }
+
+    @Override
+    public void clear() {
+        pOld.clear();
+        pCurrent.clear();
+        pNew.clear();
+    }
+
+    // Fields are saved in double precision so checkpoints are interchangeable between engines
+    @Override
+    public void saveFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            int k = pCurrent.index(0, j);
+            for (int i=0; i<width; i++, k++) {
+                old.put(pOld.getData()[k]);
+                current.put(pCurrent.getData()[k]);
+            }
+        }
+    }
+
+    @Override
+    public void loadFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            int k = pCurrent.index(0, j);
+            for (int i=0; i<width; i++, k++) {
+                pOld.getData()[k] = (float) old.get();
+                pCurrent.getData()[k] = (float) current.get();
+            }
+        }
+    }
+
+    @Override
+    public double sample(int x, int y) {
+        return pCurrent.get(x, y);
+    }
+
+    @Override
+    public void readRow(int j, double[] row) {
+        float[] data = pCurrent.getData();
+        int k = pCurrent.index(0, j);
+        for (int i=0; i<width; i++, k++) row[i] = data[k];
+    }
+
+    @Override
+    public void writeRow(int j, double[] row) {
+        float[] data = pCurrent.getData();
+        int k = pCurrent.index(0, j);
+        for (int i=0; i<width; i++, k++) data[k] = (float) row[i];
+    }
+
+    @Override
+    public void snapshot(Frame frame) {
+        frame.fill(pCurrent.getData(), pCurrent.index(0, 0), pCurrent.getStride());
+    }
+
+    @Override
+    public void close() {
+        bands.close();
+    }
+}
@@ -0,0 +1,105 @@
+package jay.audio.roomaudio.engine;
+
+// A published copy of the pressure field, row-major without the ghost border.
+// Single precision is plenty for display.
+public class Frame {
+    private final int width, height;
+    private final float[] values;
+    private long step;
+    private float min, max;
+
+    public Frame(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.values = new float[width * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float[] getValues() {
+        return values;
+    }
+
+    // Copies a strided double field (e.g. a PressureGrid's data starting at index(0, 0))
+    // and records its range in the same pass
+    public void fill(double[] data, int start, int stride) {
+        float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+        int o = 0;
+        for (int j=0; j<height; j++) {
+            int k = start + j * stride;
+            for (int i=0; i<width; i++, k++, o++) {
+                float v = (float) data[k];
+                values[o] = v;
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+        }
+        min = lo;
+        max = hi;
+    }
+
+    public void fill(float[] data, int start, int stride) {
+        float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+        int o = 0;
+        for (int j=0; j<height; j++) {
+            int k = start + j * stride;
+            for (int i=0; i<width; i++, k++, o++) {
+                float v = data[k];
+                values[o] = v;
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+        }
+        min = lo;
+        max = hi;
+    }
+
+    // For engines that fill the frame a row at a time, e.g. as rows arrive from
+    // other processes: resetRange(), then fillRow for every row
+    public void resetRange() {
+        min = Float.POSITIVE_INFINITY;
+        max = Float.NEGATIVE_INFINITY;
+    }
+
+    // Copies width values from data[start] as row j and widens the range to them
+    public void fillRow(int j, double[] data, int start) {
+        float lo = min, hi = max;
+        int o = j * width;
+        for (int i=0; i<width; i++, o++) {
+            float v = (float) data[start + i];
+            values[o] = v;
+            if (v < lo) lo = v;
+            if (v > hi) hi = v;
+        }
+        min = lo;
+        max = hi;
+    }
+
+    // For engines that fill the values themselves
+    void setRange(float min, float max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+}
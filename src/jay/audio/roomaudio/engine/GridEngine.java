@@ -0,0 +1,215 @@
+package jay.audio.roomaudio.engine;
+
+import java.nio.DoubleBuffer;
+
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.PressureGrid;
+
+// Shared state and kernels for the double-precision engines. Each row is
+// self-contained (boundary cells, stencil and global damping are all applied
+// per row), so subclasses only decide how rows are split across threads.
+//
+// When the scene enables active-region tracking, only the rows and columns of
+// the ActiveRegion are computed; everything outside it is known to be 0.
+public abstract class GridEngine implements StepEngine {
+    protected final int width, height;
+
+    protected PressureGrid pOld;
+    protected PressureGrid pCurrent;
+    protected PressureGrid pNew;
+
+    // The scene's coefficient field, fetched once per step before work is split up
+    protected CellCoefficients coefficients;
+
+    private final ActiveRegion region;
+    private boolean tracking = false;
+
+    // Part of the grid computed this step: rows [rowStart, rowEnd), columns [colStart, colEnd)
+    protected int rowStart, rowEnd, colStart, colEnd;
+
+    protected GridEngine(int width, int height) {
+        this(width, height, 1);
+    }
+
+    // radius: how far the kernel reads from each cell, which is how far the active region grows per step
+    protected GridEngine(int width, int height, int radius) {
+        this.width = width;
+        this.height = height;
+        pOld = new PressureGrid(width, height);
+        pCurrent = new PressureGrid(width, height);
+        pNew = new PressureGrid(width, height);
+        region = new ActiveRegion(width, height, radius);
+    }
+
+    // Computes pNew for rows [rowStart, rowEnd), e.g. by calling computeRows on disjoint bands
+    protected abstract void computeAllRows(Scene scene);
+
+    @Override
+    public void step(Scene scene) {
+        coefficients = scene.getCoefficients();
+
+        if (scene.isActiveRegionTracking() != tracking) {
+            tracking = scene.isActiveRegionTracking();
+            // Nothing is known about the field yet, so start from the whole grid
+            region.fill();
+        }
+        if (tracking) {
+            region.grow(scene);
+            rowStart = region.getRowStart();
+            rowEnd = region.getRowEnd();
+            colStart = region.getColStart();
+            colEnd = region.getColEnd();
+        } else {
+            rowStart = 0;
+            rowEnd = height;
+            colStart = 0;
+            colEnd = width;
+        }
+
+        if (rowStart < rowEnd) {
+            computeAllRows(scene);
+            injectSources(scene);
+        }
+        swapGrids();
+        scene.getSources().advance(1);
+
+        if (tracking) {
+            region.setThreshold(scene.getActivityThreshold());
+            region.maybeShrink(scene, pCurrent, pOld, pNew);
+        }
+    }
+
+    // Computes pNew for rows [j0, j1); safe to call concurrently on disjoint ranges
+    protected void computeRows(Scene scene, int j0, int j1) {
+        if (!scene.isRealismMode()) {
+            idealRows(scene, j0, j1);
+        } else {
+            realismRows(scene, j0, j1);
+        }
+    }
+
+    // Ideal mode: original PDE, obstacles = p=0 at those cells, boundaries = p=0, no damping
+    private void idealRows(Scene scene, int j0, int j1) {
+        double[] next = pNew.getData();
+        double[] cur = pCurrent.getData();
+        double[] old = pOld.getData();
+        int stride = pCurrent.getStride();
+        double a2 = scene.getAlpha()*scene.getAlpha();
+        byte[] cells = scene.getCells().getData();
+        // Interior columns; the edge columns are boundary cells
+        int i0 = Math.max(colStart, 1);
+        int i1 = Math.min(colEnd, width-1);
+
+        for (int j=j0; j<j1; j++) {
+            if (j == 0 || j == height-1) {
+                // Boundaries in ideal mode: hard boundary p=0
+                int k = pCurrent.index(colStart, j);
+                for (int i=colStart; i<colEnd; i++, k++) {
+                    next[k] = 0;
+                }
+                continue;
+            }
+            if (colStart == 0) next[pCurrent.index(0, j)] = 0;
+            if (colEnd == width) next[pCurrent.index(width-1, j)] = 0;
+
+            int k = pCurrent.index(i0, j);
+            int c = j * width;
+            for (int i=i0; i<i1; i++, k++) {
+                if (CellProperties.isObstacle(cells[c + i])) {
+                    next[k] = 0; // Perfect reflection (like a hard boundary)
+                } else {
+                    next[k] = 2*cur[k] - old[k]
+                        + a2*(cur[k+1] + cur[k-1] + cur[k+stride] + cur[k-stride] - 4*cur[k]);
+                }
+            }
+        }
+    }
+
+    // Realism mode: one fused, branch-free pass. Reflection, material damping and
+    // global damping all come from the scene's precomputed coefficient field.
+    private void realismRows(Scene scene, int j0, int j1) {
+        fusedRows(scene, j0, j1);
+    }
+
+    // pNew = stencil*(2p - pOld + alpha^2*laplacian) + reflect*p over rows [j0, j1).
+    // Boundary and obstacle cells are handled by their coefficients, so each row
+    // is one straight-line loop.
+    protected void fusedRows(Scene scene, int j0, int j1) {
+        double[] next = pNew.getData();
+        double[] cur = pCurrent.getData();
+        double[] old = pOld.getData();
+        double[] a = coefficients.getStencil();
+        double[] b = coefficients.getReflect();
+        int stride = pCurrent.getStride();
+        double a2 = scene.getAlpha()*scene.getAlpha();
+
+        for (int j=j0; j<j1; j++) {
+            int k0 = pCurrent.index(colStart, j);
+            int k1 = k0 + (colEnd - colStart);
+            for (int k=k0; k<k1; k++) {
+                double p = cur[k];
+                double lap = cur[k+1] + cur[k-1] + cur[k+stride] + cur[k-stride] - 4*p;
+                next[k] = a[k]*(2*p - old[k] + a2*lap) + b[k]*p;
+            }
+        }
+    }
+
+    protected void injectSources(Scene scene) {
+        // Realism mode damps the whole new field, injected pressure included
+        double scale = scene.isRealismMode() ? scene.getGlobalDamping() : 1.0;
+        scene.getSources().inject(pNew.getData(), scale);
+    }
+
+    protected void swapGrids() {
+        PressureGrid temp = pOld;
+        pOld = pCurrent;
+        pCurrent = pNew;
+        pNew = temp;
+    }
+
+    @Override
+    public void clear() {
+        pOld.clear();
+        pCurrent.clear();
+        pNew.clear();
+        region.clear();
+    }
+
+    @Override
+    public void saveFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            old.put(pOld.getData(), pOld.index(0, j), width);
+            current.put(pCurrent.getData(), pCurrent.index(0, j), width);
+        }
+    }
+
+    @Override
+    public void loadFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            old.get(pOld.getData(), pOld.index(0, j), width);
+            current.get(pCurrent.getData(), pCurrent.index(0, j), width);
+        }
+        // Nothing is known about where the restored field is quiet
+        region.fill();
+    }
+
+    @Override
+    public double sample(int x, int y) {
+        return pCurrent.get(x, y);
+    }
+
+    @Override
+    public void readRow(int j, double[] row) {
+        System.arraycopy(pCurrent.getData(), pCurrent.index(0, j), row, 0, width);
+    }
+
+    @Override
+    public void writeRow(int j, double[] row) {
+        System.arraycopy(row, 0, pCurrent.getData(), pCurrent.index(0, j), width);
+    }
+
+    @Override
+    public void snapshot(Frame frame) {
+        frame.fill(pCurrent.getData(), pCurrent.index(0, 0), pCurrent.getStride());
+    }
+}
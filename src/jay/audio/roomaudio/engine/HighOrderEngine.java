@@ -0,0 +1,120 @@
+package jay.audio.roomaudio.engine;
+
+import java.util.Arrays;
+
+import jay.audio.roomaudio.model.CellProperties;
+
+// Fourth-order engine: a 13-point stencil that is fourth-order accurate in
+// space and time, so the same phase error needs far fewer cells per
+// wavelength than the 5-point kernel (see DispersionReport). The update is
+//
+//   pNew = 2p - pOld + alpha^2 * L4(p) + alpha^4/12 * L2(L2(p))
+//
+// where L4 is the fourth-order Laplacian (-1/12, 4/3, -5/2 along each axis)
+// and L2(L2(p)) the biharmonic of the 5-point Laplacian, which cancels the
+// leading time-stepping error. Together they read the 4 axial neighbours,
+// the 4 diagonals and the 4 cells two away along the axes.
+//
+// Read through a one-cell wall, that footprint would leak sound to the
+// other side, so air cells with any obstacle or boundary cell in it fall
+// back to the 5-point update. Both go through the scene's coefficient field,
+// so walls, materials and damping behave as in the other engines.
+//
+// Stable up to alpha = 1/sqrt(2), the same limit as the 5-point kernel, so
+// the scene's dt (alpha 0.5) serves both.
+public class HighOrderEngine extends ParallelEngine {
+    // Largest alpha at which the scheme is stable: the checkerboard mode gives
+    // 2 - 32/3 alpha^2 + 16/3 alpha^4 >= -2, i.e. alpha^2 <= 1/2
+    public static final double COURANT_LIMIT = Math.sqrt(0.5);
+    // Cells the stencil reads on each side
+    private static final int RADIUS = 2;
+
+    // 1 where the 13-point stencil applies, 0 elsewhere, in PressureGrid's layout
+    private double[] highOrder;
+    private int coefficientBuild = -1;
+
+    public HighOrderEngine(int width, int height) {
+        this(width, height, RowBands.defaultThreads());
+    }
+
+    public HighOrderEngine(int width, int height, int threads) {
+        super(width, height, threads, RADIUS);
+    }
+
+    // Weights of the 13-point update at the given alpha: centre, axial neighbours,
+    // diagonals and cells two away, with pNew = sum(weight * p) - pOld
+    public static double[] weights(double alpha) {
+        double a2 = alpha * alpha, a4 = a2 * a2;
+        return new double[] {2 - 5*a2 + 5*a4/3, 4*a2/3 - 2*a4/3, a4/6, -a2/12 + a4/12};
+    }
+
+    @Override
+    public void step(Scene scene) {
+        if (scene.getAlpha() > COURANT_LIMIT) {
+            throw new IllegalStateException(String.format(
+                "alpha %.3f exceeds the 13-point stencil's stability limit %.3f", scene.getAlpha(), COURANT_LIMIT));
+        }
+        CellCoefficients coefficients = scene.getCoefficients();
+        if (coefficients.getBuildCount() != coefficientBuild) {
+            coefficientBuild = coefficients.getBuildCount();
+            buildMask(scene);
+        }
+        super.step(scene);
+    }
+
+    // An air cell takes the 13-point update only if its whole footprint is air
+    private void buildMask(Scene scene) {
+        if (highOrder == null) highOrder = new double[pCurrent.getData().length];
+        Arrays.fill(highOrder, 0.0);
+        byte[] cells = scene.getCells().getData();
+        int[][] footprint = {{0, 0}, {1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1},
+                             {2, 0}, {-2, 0}, {0, 2}, {0, -2}};
+        // Cells within RADIUS + 1 of the edge reach the boundary ring
+        for (int j=RADIUS+1; j<height-RADIUS-1; j++) {
+            for (int i=RADIUS+1; i<width-RADIUS-1; i++) {
+                boolean open = true;
+                for (int[] d : footprint) {
+                    if (CellProperties.isObstacle(cells[(j + d[1]) * width + i + d[0]])) {
+                        open = false;
+                        break;
+                    }
+                }
+                if (open) highOrder[pCurrent.index(i, j)] = 1.0;
+            }
+        }
+    }
+
+    @Override
+    protected void computeRows(Scene scene, int j0, int j1) {
+        double[] next = pNew.getData();
+        double[] cur = pCurrent.getData();
+        double[] old = pOld.getData();
+        double[] a = coefficients.getStencil();
+        double[] b = coefficients.getReflect();
+        double[] h = highOrder;
+        int stride = pCurrent.getStride();
+        double a2 = scene.getAlpha()*scene.getAlpha();
+        // Differences between the 13-point and 5-point weights
+        double[] w = weights(scene.getAlpha());
+        double e0 = w[0] - (2 - 4*a2), e1 = w[1] - a2, ed = w[2], e2 = w[3];
+
+        for (int j=j0; j<j1; j++) {
+            int k0 = pCurrent.index(colStart, j);
+            int k1 = k0 + (colEnd - colStart);
+            if (j == 0 || j == height-1) {
+                // Boundary rows are all wall; two rows out would be past the ghost border
+                for (int k=k0; k<k1; k++) {
+                    next[k] = b[k]*cur[k];
+                }
+                continue;
+            }
+            for (int k=k0; k<k1; k++) {
+                double p = cur[k];
+                double s1 = cur[k+1] + cur[k-1] + cur[k+stride] + cur[k-stride];
+                double sd = cur[k+stride+1] + cur[k+stride-1] + cur[k-stride+1] + cur[k-stride-1];
+                double s2 = cur[k+2] + cur[k-2] + cur[k+2*stride] + cur[k-2*stride];
+                next[k] = a[k]*(2*p - old[k] + a2*(s1 - 4*p) + h[k]*(e0*p + e1*s1 + ed*sd + e2*s2)) + b[k]*p;
+            }
+        }
+    }
+}
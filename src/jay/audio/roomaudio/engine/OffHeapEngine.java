@@ -0,0 +1,253 @@
+package jay.audio.roomaudio.engine;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.Material;
+import jay.audio.roomaudio.model.MaterialTable;
+import jay.audio.roomaudio.model.OffHeapGrid;
+import jay.audio.roomaudio.model.OffHeapStore;
+import jay.audio.roomaudio.source.SourceSet;
+
+// Engine for grids larger than the heap. The three pressure fields and one
+// byte of cell properties per cell (the scene's packed CellProperties) live
+// in off-heap memory, optionally backed by memory-mapped files, so the GC
+// never scans or copies them. Instead of per-cell coefficient arrays, the
+// property byte indexes two 256-entry tables, which cuts the coefficient
+// memory from 16 bytes to 1 byte per cell.
+//
+// Same branch-free update as the other engines; the whole grid is swept.
+public class OffHeapEngine implements StepEngine {
+    private final int width, height;
+    private OffHeapGrid pOld, pCurrent, pNew;
+    private final OffHeapStore cells;
+    private final RowBands bands;
+
+    // Coefficients per property byte, and for the grid's edge cells
+    private final double[] stencil = new double[256];
+    private final double[] reflect = new double[256];
+    private double boundary;
+    private long cellsVersion = -1;
+    private long tablesVersion = -1;
+    private boolean tablesRealism;
+
+    public OffHeapEngine(int width, int height) {
+        this(width, height, null, RowBands.defaultThreads());
+    }
+
+    // backingDir: directory for memory-mapped grid files, or null for direct memory
+    public OffHeapEngine(int width, int height, File backingDir, int threads) {
+        this.width = width;
+        this.height = height;
+        if (backingDir == null) {
+            // Fail before allocating anything rather than on the third grid
+            long bytes = 3L * (height + 2) * (width + 2) * 8 + (long) width * height;
+            if (bytes > OffHeapStore.directMemoryLimit() - OffHeapStore.directMemoryUsed()) {
+                throw new IllegalStateException(OffHeapStore.directMemoryMessage(bytes));
+            }
+        }
+        pOld = new OffHeapGrid(width, height, backingDir);
+        pCurrent = new OffHeapGrid(width, height, backingDir);
+        pNew = new OffHeapGrid(width, height, backingDir);
+        cells = new OffHeapStore(height, width, backingDir);
+        bands = new RowBands(height, threads);
+    }
+
+    @Override
+    public void step(Scene scene) {
+        updateCells(scene);
+        double a2 = scene.getAlpha()*scene.getAlpha();
+        bands.run((j0, j1) -> computeRows(j0, j1, a2));
+        injectSources(scene);
+
+        OffHeapGrid temp = pOld;
+        pOld = pCurrent;
+        pCurrent = pNew;
+        pNew = temp;
+        scene.getSources().advance(1);
+    }
+
+    // Rows are bulk-copied into heap scratch, computed there and copied back:
+    // element-wise buffer access costs about twice as much as the copies
+    private void computeRows(int j0, int j1, double a2) {
+        Rows r = scratch.get();
+        // Current rows j-1, j, j+1 slide down the band; the ghost rows read as 0
+        read(pCurrent, j0 - 1, r.up);
+        read(pCurrent, j0, r.mid);
+        for (int j=j0; j<j1; j++) {
+            read(pCurrent, j + 1, r.down);
+            read(pOld, j, r.old);
+            double[] next = r.next, up = r.up, cur = r.mid, down = r.down, old = r.old;
+
+            if (j == 0 || j == height-1) {
+                for (int i=1; i<=width; i++) next[i] = boundary * cur[i];
+            } else {
+                ByteBuffer props = cells.chunk(j).duplicate();
+                props.position(cells.rowOffset(j));
+                props.get(r.props, 1, width);
+                byte[] prop = r.props;
+                double[] a = stencil, b = reflect;
+                next[1] = boundary * cur[1];
+                for (int i=2; i<width; i++) {
+                    double p = cur[i];
+                    double lap = cur[i+1] + cur[i-1] + up[i] + down[i] - 4*p;
+                    int c = prop[i] & 0xff;
+                    next[i] = a[c]*(2*p - old[i] + a2*lap) + b[c]*p;
+                }
+                next[width] = boundary * cur[width];
+            }
+            write(pNew, j, next);
+
+            double[] temp = r.up;
+            r.up = r.mid;
+            r.mid = r.down;
+            r.down = temp;
+        }
+    }
+
+    // Row j including its two ghost cells, into row[0..width+1]
+    private void read(OffHeapGrid grid, int j, double[] row) {
+        DoubleBuffer view = grid.row(j).duplicate();
+        view.position(grid.rowOffset(j) - 1);
+        view.get(row, 0, width + 2);
+    }
+
+    private void write(OffHeapGrid grid, int j, double[] row) {
+        DoubleBuffer view = grid.row(j).duplicate();
+        view.position(grid.rowOffset(j));
+        view.put(row, 1, width);
+    }
+
+    private final ThreadLocal<Rows> scratch = ThreadLocal.withInitial(Rows::new);
+
+    // Per-thread heap copies of the rows around the one being computed
+    private class Rows {
+        double[] up = new double[width + 2], mid = new double[width + 2], down = new double[width + 2];
+        final double[] old = new double[width + 2], next = new double[width + 2];
+        final byte[] props = new byte[width + 2];
+    }
+
+    private void injectSources(Scene scene) {
+        // Realism mode damps the whole new field, injected pressure included
+        double scale = scene.isRealismMode() ? scene.getGlobalDamping() : 1.0;
+        SourceSet sources = scene.getSources();
+        for (int s=0; s<sources.size(); s++) {
+            int x = sources.getX(s), y = sources.getY(s);
+            DoubleBuffer row = pNew.row(y);
+            int k = pNew.rowOffset(y) + x;
+            row.put(k, row.get(k) + scale * sources.signal(s, 0));
+        }
+    }
+
+    // Copies the scene's geometry into the property plane and rebuilds the tables when needed
+    private void updateCells(Scene scene) {
+        long version = scene.getGeometryVersion();
+        if (version != cellsVersion) {
+            // Same byte layout, so each row is one bulk copy
+            byte[] data = scene.getCells().getData();
+            for (int j=0; j<height; j++) {
+                ByteBuffer props = cells.chunk(j);
+                props.put(cells.rowOffset(j), data, j * width, width);
+            }
+            cellsVersion = version;
+        }
+        if (version != tablesVersion || scene.isRealismMode() != tablesRealism) {
+            MaterialTable table = scene.getMaterialTable();
+            boolean realism = scene.isRealismMode();
+            double g = realism ? scene.getGlobalDamping() : 1.0;
+            for (int id=0; id<MaterialTable.SIZE; id++) {
+                stencil[id] = realism ? table.getDamping(id) * g : 1.0;
+                reflect[id] = 0.0;
+                stencil[id | CellProperties.OBSTACLE] = 0.0;
+                reflect[id | CellProperties.OBSTACLE] = realism ? table.getReflection(id) * g : 0.0;
+            }
+            // Boundaries: p=0 in ideal mode, "Concrete" in realism mode
+            boundary = realism ? table.getReflection(Material.CONCRETE.getId()) * g : 0.0;
+            tablesVersion = version;
+            tablesRealism = realism;
+        }
+    }
+
+    @Override
+    public void clear() {
+        pOld.clear();
+        pCurrent.clear();
+        pNew.clear();
+    }
+
+    @Override
+    public double sample(int x, int y) {
+        return pCurrent.get(x, y);
+    }
+
+    @Override
+    public void readRow(int j, double[] row) {
+        rowView(pCurrent, j).get(row, 0, width);
+    }
+
+    @Override
+    public void writeRow(int j, double[] row) {
+        rowView(pCurrent, j).put(row, 0, width);
+    }
+
+    @Override
+    public void snapshot(Frame frame) {
+        float[] values = frame.getValues();
+        float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+        int o = 0;
+        for (int j=0; j<height; j++) {
+            DoubleBuffer row = pCurrent.row(j);
+            int k = pCurrent.rowOffset(j);
+            for (int i=0; i<width; i++, o++) {
+                float v = (float) row.get(k + i);
+                values[o] = v;
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+        }
+        frame.setRange(lo, hi);
+    }
+
+    @Override
+    public void saveFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            old.put(rowView(pOld, j));
+            current.put(rowView(pCurrent, j));
+        }
+    }
+
+    @Override
+    public void loadFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            rowView(pOld, j).put(slice(old));
+            rowView(pCurrent, j).put(slice(current));
+        }
+    }
+
+    // The width cells of row j as their own buffer
+    private DoubleBuffer rowView(OffHeapGrid grid, int j) {
+        DoubleBuffer view = grid.row(j).duplicate();
+        int k = grid.rowOffset(j);
+        view.limit(k + width).position(k);
+        return view;
+    }
+
+    // The next width values of a buffer, advancing it
+    private DoubleBuffer slice(DoubleBuffer in) {
+        DoubleBuffer row = in.duplicate();
+        row.limit(in.position() + width);
+        in.position(in.position() + width);
+        return row;
+    }
+
+    @Override
+    public void close() {
+        bands.close();
+        pOld.close();
+        pCurrent.close();
+        pNew.close();
+        cells.close();
+    }
+}
@@ -0,0 +1,30 @@
+package jay.audio.roomaudio.engine;
+
+// Multi-core engine: rows are split into bands that run on a ForkJoin pool.
+// The bands all finish before sources are injected and the grids are swapped.
+public class ParallelEngine extends GridEngine {
+    private final RowBands bands;
+
+    public ParallelEngine(int width, int height) {
+        this(width, height, RowBands.defaultThreads());
+    }
+
+    public ParallelEngine(int width, int height, int threads) {
+        this(width, height, threads, 1);
+    }
+
+    protected ParallelEngine(int width, int height, int threads, int radius) {
+        super(width, height, radius);
+        this.bands = new RowBands(height, threads);
+    }
+
+    @Override
+    protected void computeAllRows(Scene scene) {
+        bands.run(rowStart, rowEnd, (j0, j1) -> computeRows(scene, j0, j1));
+    }
+
+    @Override
+    public void close() {
+        bands.close();
+    }
+}
@@ -0,0 +1,82 @@
+package jay.audio.roomaudio.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import jay.audio.roomaudio.model.RoomLayout;
+
+// Compares the single-precision engine against the double-precision one over
+// every room file in a directory, in both modes.
+//
+// Usage: PrecisionReport [roomsDir] [width] [height] [steps]
+public class PrecisionReport {
+    public static void main(String[] args) {
+        File dir = new File(args.length > 0 ? args[0] : "rooms");
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        int steps = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+
+        File[] rooms = dir.listFiles((d, name) -> name.endsWith(".txt"));
+        if (rooms == null || rooms.length == 0) {
+            System.err.println("No room files in " + dir.getPath());
+            return;
+        }
+        Arrays.sort(rooms);
+
+        System.out.printf("%dx%d grid, %d steps, source at the centre%n", width, height, steps);
+        System.out.printf("%-14s %-8s %12s %12s %12s %12s%n",
+            "room", "mode", "max |err|", "rel. RMS", "double st/s", "float st/s");
+        for (File file : rooms) {
+            RoomLayout layout;
+            try {
+                layout = RoomLayout.load(file);
+            } catch (IOException | RuntimeException ex) {
+                System.out.printf("%-14s skipped: %s%n", file.getName(), ex.getMessage());
+                continue;
+            }
+            for (boolean realism : new boolean[] {false, true}) {
+                Scene scene = new Scene(width, height);
+                scene.applyRoom(layout);
+                scene.setRealismMode(realism);
+                // Both engines sweep every cell, so the rates compare the kernels alone
+                scene.setActiveRegionTracking(false);
+                scene.getSources().add(width / 2, height / 2);
+
+                Frame referenceFrame = new Frame(width, height);
+                Frame singleFrame = new Frame(width, height);
+                double doubleRate = run(new VectorEngine(width, height), scene, steps, referenceFrame);
+                double floatRate = run(new FloatEngine(width, height), scene, steps, singleFrame);
+                float[] reference = referenceFrame.getValues();
+                float[] single = singleFrame.getValues();
+
+                double maxErr = 0, errSq = 0, refSq = 0;
+                for (int k=0; k<reference.length; k++) {
+                    double err = Math.abs(single[k] - reference[k]);
+                    maxErr = Math.max(maxErr, err);
+                    errSq += err * err;
+                    refSq += (double) reference[k] * reference[k];
+                }
+                double relRms = refSq > 0 ? Math.sqrt(errSq / refSq) : 0;
+
+                System.out.printf("%-14s %-8s %12.3e %12.3e %12.0f %12.0f%n",
+                    file.getName(), realism ? "realism" : "ideal", maxErr, relRms, doubleRate, floatRate);
+            }
+        }
+    }
+
+    // Runs the engine and returns steps per second; the final field is copied into out
+    private static double run(StepEngine engine, Scene scene, int steps, Frame out) {
+        // Both engines replay the sources from step 0
+        scene.getSources().rewind();
+        try (engine) {
+            long start = System.nanoTime();
+            for (int n=0; n<steps; n++) {
+                engine.step(scene);
+            }
+            long elapsed = System.nanoTime() - start;
+            engine.snapshot(out);
+            return steps / (elapsed / 1e9);
+        }
+    }
+}
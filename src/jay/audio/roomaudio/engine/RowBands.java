@@ -0,0 +1,78 @@
+package jay.audio.roomaudio.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Splits a range of rows into bands and runs a kernel on each, on a ForkJoin
+// pool. run() only returns once every band is done, which is the per-step
+// barrier. With a single thread the kernel is called directly.
+public class RowBands implements AutoCloseable {
+    // Bands smaller than this cost more in scheduling than they save
+    private static final int MIN_BAND_ROWS = 8;
+
+    @FunctionalInterface
+    public interface Kernel {
+        void rows(int j0, int j1);
+    }
+
+    private final int height;
+    private final ForkJoinPool pool;
+    private final int bandRows;
+
+    public RowBands(int height, int threads) {
+        this(height, threads, MIN_BAND_ROWS);
+    }
+
+    // minBandRows: smallest band worth scheduling, e.g. 1 when each "row" is a whole tile
+    public RowBands(int height, int threads, int minBandRows) {
+        this.height = height;
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        // A few bands per thread so work stealing can even out obstacle-heavy rows
+        this.bandRows = Math.max(minBandRows, height / (threads * 4));
+    }
+
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public void run(Kernel kernel) {
+        run(0, height, kernel);
+    }
+
+    // Runs the kernel over rows [from, to)
+    public void run(int from, int to, Kernel kernel) {
+        if (pool == null || to - from <= bandRows) {
+            kernel.rows(from, to);
+        } else {
+            pool.invoke(new Band(kernel, from, to));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) pool.shutdown();
+    }
+
+    private class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Kernel kernel;
+        private final int j0, j1;
+
+        Band(Kernel kernel, int j0, int j1) {
+            this.kernel = kernel;
+            this.j0 = j0;
+            this.j1 = j1;
+        }
+
+        @Override
+        protected void compute() {
+            if (j1 - j0 <= bandRows) {
+                kernel.rows(j0, j1);
+                return;
+            }
+            int mid = (j0 + j1) >>> 1;
+            invokeAll(new Band(kernel, j0, mid), new Band(kernel, mid, j1));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package jay.audio.roomaudio.engine;
+
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.MaterialTable;
+import jay.audio.roomaudio.model.RoomLayout;
+import jay.audio.roomaudio.source.SourceSet;
+
+// Everything a step engine reads to advance the field: grid size, wave constants,
+// room geometry, mode and sources. Engines own the pressure grids themselves.
+public class Scene {
+    private final int width, height;
+    private double c = 343.0;
+    private final double dx;
+    private double dt;
+    private double alpha;
+
+    // Obstacle flag and material ID per cell
+    private final CellProperties cells;
+
+    // Modes
+    private volatile boolean realismMode = false;
+
+    // Global damping for realism mode
+    private double globalDamping = 0.999;
+
+    // Reflection/damping per material ID; the Material enum unless overridden
+    private volatile MaterialTable materialTable = new MaterialTable();
+
+    // Reflection/damping per cell for the current room, material table and mode
+    private final CellCoefficients coefficients;
+
+    private final SourceSet sources;
+
+    // Engines that support it only compute the region that can be non-zero
+    private volatile boolean activeRegionTracking = true;
+    // Pressure magnitude below which a quiet tile may drop out of the active region
+    private double activityThreshold = 1e-9;
+
+    // Bumped whenever the cell properties change so engines can rebuild derived data
+    private volatile long geometryVersion = 0;
+
+    public Scene(int width, int height) {
+        this(width, height, 1.0);
+    }
+
+    // Grid of the given cell size in metres; dt follows so alpha stays 0.5
+    public Scene(int width, int height, double dx) {
+        this.width = width;
+        this.height = height;
+        this.dx = dx;
+
+        dt = (dx / c) * 0.5;
+        alpha = (c * dt / dx);
+
+        cells = new CellProperties(width, height); // default 0 (Air)
+        coefficients = new CellCoefficients(width, height);
+        sources = new SourceSet(width, height);
+    }
+
+    // Scales a room file onto this grid; the whole grid is reset to air first.
+    // The cell size stays this scene's; build the scene with
+    // layout.gridSpacing(width) to take the room's.
+    public void applyRoom(RoomLayout layout) {
+        int loadedWidth = layout.getWidth();
+        int loadedHeight = layout.getHeight();
+        CellProperties loaded = layout.getCells();
+
+        double scaleX = (double)width / (double)loadedWidth;
+        double scaleY = (double)height / (double)loadedHeight;
+
+        cells.clear();
+
+        for (int j=0; j<loadedHeight; j++) {
+            for (int i=0; i<loadedWidth; i++) {
+                byte cell = loaded.get(i, j);
+                if (CellProperties.isObstacle(cell)) {
+                    int startX = (int)(i * scaleX);
+                    int endX = (int)((i+1)*scaleX); if(endX>=width) endX=width-1;
+                    int startY = (int)(j * scaleY);
+                    int endY = (int)((j+1)*scaleY); if(endY>=height) endY=height-1;
+
+                    for (int yy=startY; yy<=endY; yy++) {
+                        cells.fillRow(yy, startX, endX + 1, cell);
+                    }
+                }
+            }
+        }
+        // Binary rooms may carry their own material values; other rooms get the
+        // Material enum's rather than the previous room's
+        materialTable = layout.getMaterialTable() != null ? layout.getMaterialTable() : new MaterialTable();
+        geometryChanged();
+    }
+
+    public void geometryChanged() {
+        geometryVersion++;
+    }
+
+    public long getGeometryVersion() {
+        return geometryVersion;
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >=0 && x < width && y>=0 && y< height;
+    }
+
+    public SourceSet getSources() {
+        return sources;
+    }
+
+    public double getSpeedOfSound() {
+        return c;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // Metres per cell
+    public double getDx() {
+        return dx;
+    }
+
+    public double getDt() {
+        return dt;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public CellProperties getCells() {
+        return cells;
+    }
+
+    public MaterialTable getMaterialTable() {
+        return materialTable;
+    }
+
+    public void setMaterialTable(MaterialTable materialTable) {
+        this.materialTable = materialTable;
+        geometryChanged();
+    }
+
+    public boolean isRealismMode() {
+        return realismMode;
+    }
+
+    public void setRealismMode(boolean realismMode) {
+        this.realismMode = realismMode;
+    }
+
+    public boolean isActiveRegionTracking() {
+        return activeRegionTracking;
+    }
+
+    public void setActiveRegionTracking(boolean activeRegionTracking) {
+        this.activeRegionTracking = activeRegionTracking;
+    }
+
+    public double getActivityThreshold() {
+        return activityThreshold;
+    }
+
+    public void setActivityThreshold(double activityThreshold) {
+        this.activityThreshold = activityThreshold;
+    }
+
+    public double getGlobalDamping() {
+        return globalDamping;
+    }
+
+    // Rebuilt lazily after applyRoom or a mode change. Engines call this once per
+    // step on the simulation thread, before splitting work across threads.
+    public CellCoefficients getCoefficients() {
+        coefficients.update(this);
+        return coefficients;
+    }
+}
@@ -0,0 +1,13 @@
+package jay.audio.roomaudio.engine;
+
+// Single-threaded engine: the whole grid is one band.
+public class SerialEngine extends GridEngine {
+    public SerialEngine(int width, int height) {
+        super(width, height);
+    }
+
+    @Override
+    protected void computeAllRows(Scene scene) {
+        computeRows(scene, rowStart, rowEnd);
+    }
+}
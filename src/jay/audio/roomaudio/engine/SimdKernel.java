@@ -0,0 +1,50 @@
+package jay.audio.roomaudio.engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// GridEngine's fused kernel written with the incubating Vector API, so the
+// band loop is SIMD whether or not HotSpot's superword pass would have
+// vectorized it. Each lane does the same multiplies and adds in the same
+// order as the scalar loop, so results are bit-identical.
+//
+// Only loaded once VectorEngine has found jdk.incubator.vector in the boot
+// layer (java --add-modules jdk.incubator.vector); the class cannot even be
+// initialised without it.
+final class SimdKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private SimdKernel() {
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    // pNew = stencil*(2p - pOld + a2*laplacian) + reflect*p over [k0, k1) of one row
+    static void row(double[] next, double[] cur, double[] old, double[] a, double[] b,
+                    int stride, double a2, int k0, int k1) {
+        int k = k0;
+        int upper = k0 + SPECIES.loopBound(k1 - k0);
+        for (; k < upper; k += SPECIES.length()) {
+            DoubleVector p = DoubleVector.fromArray(SPECIES, cur, k);
+            DoubleVector lap = DoubleVector.fromArray(SPECIES, cur, k + 1)
+                .add(DoubleVector.fromArray(SPECIES, cur, k - 1))
+                .add(DoubleVector.fromArray(SPECIES, cur, k + stride))
+                .add(DoubleVector.fromArray(SPECIES, cur, k - stride))
+                .sub(p.mul(4.0));
+            DoubleVector update = p.mul(2.0)
+                .sub(DoubleVector.fromArray(SPECIES, old, k))
+                .add(lap.mul(a2));
+            update.mul(DoubleVector.fromArray(SPECIES, a, k))
+                .add(DoubleVector.fromArray(SPECIES, b, k).mul(p))
+                .intoArray(next, k);
+        }
+        // Scalar tail
+        for (; k < k1; k++) {
+            double p = cur[k];
+            double lap = cur[k+1] + cur[k-1] + cur[k+stride] + cur[k-stride] - 4*p;
+            next[k] = a[k]*(2*p - old[k] + a2*lap) + b[k]*p;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package jay.audio.roomaudio.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import jay.audio.roomaudio.checkpoint.Checkpoint;
+import jay.audio.roomaudio.checkpoint.CheckpointWriter;
+import jay.audio.roomaudio.metrics.SimulationMetrics;
+import jay.audio.roomaudio.probe.ProbeSet;
+
+// Runs the solver on its own thread, independent of painting. Every frame
+// period it publishes a snapshot through a triple buffer and notifies a
+// listener (typically a repaint request), so the solver never waits on the
+// UI and the UI never waits on the solver.
+//
+// Anything that changes the engine or scene while running is submitted as a
+// command and executed on the simulation thread between steps.
+public class SimulationLoop implements Runnable {
+    private static final long FRAME_NANOS = 16_666_667L; // ~60 frames per second
+
+    private final Scene scene;
+    private StepEngine engine; // simulation thread only once started
+    private final TripleBuffer<Frame> frames;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final ProbeSet probes = new ProbeSet();
+    private final SimulationMetrics metrics = new SimulationMetrics();
+
+    private volatile boolean running = true;
+    private volatile boolean stopped = false;
+    // 0 = as many steps as fit in one frame period
+    private volatile int stepsPerFrame = 0;
+    private volatile Runnable frameListener;
+    private volatile CheckpointWriter checkpoints;
+
+    private Thread thread;
+    private long stepCount = 0;
+
+    public SimulationLoop(Scene scene, StepEngine engine) {
+        this.scene = scene;
+        this.engine = engine;
+        this.frames = new TripleBuffer<>(() -> new Frame(scene.getWidth(), scene.getHeight()));
+        metrics.setStepSize((long) scene.getWidth() * scene.getHeight(), scene.getDt());
+    }
+
+    public void start() {
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void shutdown() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    public void submit(Runnable command) {
+        commands.add(command);
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    public void setEngine(StepEngine next) {
+        submit(() -> {
+            engine.close();
+            engine = next;
+            scene.getSources().rewind();
+        });
+    }
+
+    public void clear() {
+        submit(() -> {
+            engine.clear();
+            scene.getSources().rewind();
+        });
+    }
+
+    // Saves between two steps; the future completes once the file is written
+    public CompletableFuture<Void> saveCheckpoint(File file) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        submit(() -> {
+            try {
+                Checkpoint.save(file, scene, engine);
+                done.complete(null);
+            } catch (IOException | RuntimeException ex) {
+                done.completeExceptionally(ex);
+            }
+        });
+        return done;
+    }
+
+    // Replaces the field, room and sources between two steps
+    public CompletableFuture<Void> restoreCheckpoint(File file) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        submit(() -> {
+            try {
+                stepCount = Checkpoint.restore(file, scene, engine);
+                done.complete(null);
+            } catch (IOException | RuntimeException ex) {
+                done.completeExceptionally(ex);
+            }
+        });
+        return done;
+    }
+
+    // Checkpoints periodically while running; null turns it off
+    public void setCheckpointWriter(CheckpointWriter writer) {
+        this.checkpoints = writer;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setStepsPerFrame(int stepsPerFrame) {
+        this.stepsPerFrame = Math.max(0, stepsPerFrame);
+    }
+
+    public int getStepsPerFrame() {
+        return stepsPerFrame;
+    }
+
+    public void setFrameListener(Runnable listener) {
+        this.frameListener = listener;
+    }
+
+    public ProbeSet getProbes() {
+        return probes;
+    }
+
+    public TripleBuffer<Frame> getFrames() {
+        return frames;
+    }
+
+    // Step timings and frame counts recorded by this loop; views add their render times
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void run() {
+        long nextFrame = System.nanoTime();
+        while (!stopped) {
+            boolean changed = runCommands();
+            if (!running) {
+                if (changed) publish();
+                LockSupport.parkNanos(FRAME_NANOS);
+                nextFrame = System.nanoTime();
+                continue;
+            }
+
+            int n = stepsPerFrame;
+            if (n > 0) {
+                advance(n);
+                publish();
+                // Fixed rate: wait out the rest of the frame period
+                nextFrame += FRAME_NANOS;
+                long wait = nextFrame - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else {
+                    nextFrame = System.nanoTime();
+                }
+            } else {
+                // Free running: step until the frame period is used up or a command arrives
+                long deadline = System.nanoTime() + FRAME_NANOS;
+                do {
+                    advance(engine.getTimeBlock());
+                } while (System.nanoTime() < deadline && commands.isEmpty() && running);
+                publish();
+            }
+        }
+        engine.close();
+    }
+
+    private void advance(int steps) {
+        long start = System.nanoTime();
+        if (probes.isCapturing() && !probes.isEmpty()) {
+            // Probes need every step, so engines that block steps in time run one at a time
+            int dropped = 0;
+            for (int i=0; i<steps; i++) {
+                engine.step(scene);
+                dropped += probes.capture(engine);
+            }
+            if (dropped > 0) metrics.recordDroppedSamples(dropped);
+        } else {
+            engine.advance(scene, steps);
+        }
+        stepCount += steps;
+        metrics.recordSteps(steps, System.nanoTime() - start);
+
+        CheckpointWriter writer = checkpoints;
+        if (writer != null) writer.maybeCheckpoint(scene, engine);
+    }
+
+    private boolean runCommands() {
+        boolean any = false;
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+            any = true;
+        }
+        return any;
+    }
+
+    private void publish() {
+        Frame frame = frames.getBack();
+        engine.snapshot(frame);
+        frame.setStep(stepCount);
+        frames.publish();
+        metrics.recordFrame();
+
+        Runnable listener = frameListener;
+        if (listener != null) listener.run();
+    }
+}
@@ -0,0 +1,47 @@
+package jay.audio.roomaudio.engine;
+
+import java.nio.DoubleBuffer;
+
+// Advances the pressure field of a Scene one timestep at a time.
+public interface StepEngine extends AutoCloseable {
+    void step(Scene scene);
+
+    // Advances several steps; engines that block steps in time override this
+    default void advance(Scene scene, int steps) {
+        for (int i=0; i<steps; i++) {
+            step(scene);
+        }
+    }
+
+    // Number of steps the engine prefers to advance per call
+    default int getTimeBlock() {
+        return 1;
+    }
+
+    void clear();
+
+    // Current pressure at cell (x, y)
+    double sample(int x, int y);
+
+    // Copies row j of the current field (width values) into row
+    void readRow(int j, double[] row);
+
+    // Overwrites row j of the current field, e.g. with a halo row from a neighbouring subdomain
+    void writeRow(int j, double[] row);
+
+    // Copies the current field and its min/max into the frame
+    void snapshot(Frame frame);
+
+    // Writes rows [j0, j1) of the previous and current fields, each row-major,
+    // so a large grid can be saved a slice at a time
+    void saveFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current);
+
+    // Overwrites rows [j0, j1) of both fields with ones written by saveFields.
+    // After clear() and loading every row, stepping continues from them
+    void loadFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current);
+
+    // Releases worker threads, if any
+    @Override
+    default void close() {
+    }
+}
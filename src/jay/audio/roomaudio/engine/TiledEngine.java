@@ -0,0 +1,240 @@
+package jay.audio.roomaudio.engine;
+
+import java.nio.DoubleBuffer;
+
+import jay.audio.roomaudio.model.PressureGrid;
+import jay.audio.roomaudio.source.SourceSet;
+
+// Cache-blocked engine for grids that no longer fit in cache. The grid is cut
+// into 2D tiles; each tile, widened by a halo of T cells, is copied (with its
+// coefficients) into thread-local scratch planes and advanced T timesteps
+// there before its interior is written back. The halo shrinks by one cell per
+// substep, so the interior is exact and main memory is streamed once per T
+// steps instead of every step. Results go to a second pair of grids, since
+// neighbouring tiles still read the inputs through their halos.
+//
+// Uses the scene's branch-free coefficient field in both modes. Does not track
+// active regions; the whole grid is swept.
+public class TiledEngine implements StepEngine {
+    // Bytes of local planes per tile, roughly one core's L2
+    private static final int CACHE_BUDGET = 1024 * 1024;
+    private static final int MAX_TIME_BLOCK = 8;
+
+    private final int width, height;
+    private PressureGrid pOld, pCurrent;
+    private PressureGrid outOld, outCurrent;
+
+    private final int timeBlock;
+    private final int tileW, tileH, tilesX, tilesY;
+    private final RowBands bands;
+    private final ThreadLocal<double[][]> scratch = new ThreadLocal<>();
+
+    // Per-block state read by every tile
+    private Scene scene;
+    private CellCoefficients coefficients;
+    private int blockSteps;
+    private SourceSet sources;
+    // Source signals for the block, [substep * sources + source], damping included
+    private double[] signals = new double[0];
+
+    public TiledEngine(int width, int height) {
+        this(width, height, RowBands.defaultThreads());
+    }
+
+    public TiledEngine(int width, int height, int threads) {
+        this.width = width;
+        this.height = height;
+        pOld = new PressureGrid(width, height);
+        pCurrent = new PressureGrid(width, height);
+        outOld = new PressureGrid(width, height);
+        outCurrent = new PressureGrid(width, height);
+
+        // Three local pressure planes plus two coefficient planes, each
+        // (side + 2T + 2)^2 doubles, should fit the budget
+        timeBlock = MAX_TIME_BLOCK;
+        int side = (int) Math.sqrt(CACHE_BUDGET / (5.0 * 8)) - 2*timeBlock - 2;
+        tileW = Math.min(width, side);
+        tileH = Math.min(height, side);
+        tilesX = (width + tileW - 1) / tileW;
+        tilesY = (height + tileH - 1) / tileH;
+        bands = new RowBands(tilesX * tilesY, threads, 1);
+    }
+
+    @Override
+    public int getTimeBlock() {
+        return timeBlock;
+    }
+
+    @Override
+    public void step(Scene scene) {
+        advance(scene, 1);
+    }
+
+    @Override
+    public void advance(Scene scene, int steps) {
+        this.scene = scene;
+        this.coefficients = scene.getCoefficients();
+        while (steps > 0) {
+            blockSteps = Math.min(timeBlock, steps);
+            prepareSignals();
+            bands.run((t0, t1) -> {
+                for (int t=t0; t<t1; t++) computeTile(t);
+            });
+
+            PressureGrid temp = pOld;
+            pOld = outOld;
+            outOld = temp;
+            temp = pCurrent;
+            pCurrent = outCurrent;
+            outCurrent = temp;
+            sources.advance(blockSteps);
+            steps -= blockSteps;
+        }
+    }
+
+    private void prepareSignals() {
+        sources = scene.getSources();
+        int n = sources.size();
+        if (signals.length < blockSteps * n) signals = new double[blockSteps * n];
+        // Realism mode damps the whole new field, injected pressure included
+        double scale = scene.isRealismMode() ? scene.getGlobalDamping() : 1.0;
+        for (int s=0; s<blockSteps; s++) {
+            for (int src=0; src<n; src++) {
+                signals[s * n + src] = scale * sources.signal(src, s);
+            }
+        }
+    }
+
+    private void computeTile(int tile) {
+        int T = blockSteps;
+        int x0 = (tile % tilesX) * tileW, x1 = Math.min(width, x0 + tileW);
+        int y0 = (tile / tilesX) * tileH, y1 = Math.min(height, y0 + tileH);
+        // Extended region, clamped to the grid; beyond the grid edge the field is always 0
+        int ex0 = Math.max(0, x0 - T), ex1 = Math.min(width, x1 + T);
+        int ey0 = Math.max(0, y0 - T), ey1 = Math.min(height, y1 + T);
+        int ew = ex1 - ex0, eh = ey1 - ey0;
+        int ls = ew + 2;
+
+        double[][] planes = scratchPlanes(ls * (eh + 2));
+        double[] lo = planes[0], lc = planes[1], ln = planes[2];
+        double[] a = planes[3], b = planes[4];
+        zeroRing(lo, ls, ew, eh);
+        zeroRing(lc, ls, ew, eh);
+        zeroRing(ln, ls, ew, eh);
+        for (int j=ey0; j<ey1; j++) {
+            int l = (j - ey0 + 1) * ls + 1;
+            int g = pCurrent.index(ex0, j);
+            System.arraycopy(pOld.getData(), g, lo, l, ew);
+            System.arraycopy(pCurrent.getData(), g, lc, l, ew);
+            System.arraycopy(coefficients.getStencil(), g, a, l, ew);
+            System.arraycopy(coefficients.getReflect(), g, b, l, ew);
+        }
+
+        double a2 = scene.getAlpha()*scene.getAlpha();
+        int n = sources.size();
+
+        for (int s=1; s<=T; s++) {
+            // Cells valid after substep s: the extended region minus s on every side not at the grid edge
+            int rx0 = ex0 == 0 ? 0 : s, rx1 = ex1 == width ? ew : ew - s;
+            int ry0 = ey0 == 0 ? 0 : s, ry1 = ey1 == height ? eh : eh - s;
+            for (int j=ry0; j<ry1; j++) {
+                int l0 = (j + 1) * ls + rx0 + 1;
+                int l1 = l0 + (rx1 - rx0);
+                for (int l=l0; l<l1; l++) {
+                    double p = lc[l];
+                    double lap = lc[l+1] + lc[l-1] + lc[l+ls] + lc[l-ls] - 4*p;
+                    ln[l] = a[l]*(2*p - lo[l] + a2*lap) + b[l]*p;
+                }
+            }
+
+            for (int src=0; src<n; src++) {
+                int sx = sources.getX(src) - ex0;
+                int sy = sources.getY(src) - ey0;
+                if (sx >= rx0 && sx < rx1 && sy >= ry0 && sy < ry1) {
+                    ln[(sy + 1) * ls + sx + 1] += signals[(s - 1) * n + src];
+                }
+            }
+
+            double[] temp = lo;
+            lo = lc;
+            lc = ln;
+            ln = temp;
+        }
+
+        for (int j=y0; j<y1; j++) {
+            int l = (j - ey0 + 1) * ls + (x0 - ex0) + 1;
+            System.arraycopy(lo, l, outOld.getData(), outOld.index(x0, j), x1 - x0);
+            System.arraycopy(lc, l, outCurrent.getData(), outCurrent.index(x0, j), x1 - x0);
+        }
+    }
+
+    private double[][] scratchPlanes(int size) {
+        double[][] planes = scratch.get();
+        if (planes == null || planes[0].length < size) {
+            planes = new double[5][size];
+            scratch.set(planes);
+        }
+        return planes;
+    }
+
+    // The one-cell ring around the local region stands in for the grid's ghost border
+    private static void zeroRing(double[] plane, int ls, int ew, int eh) {
+        for (int i=0; i<ls; i++) {
+            plane[i] = 0;
+            plane[(eh + 1) * ls + i] = 0;
+        }
+        for (int j=1; j<=eh; j++) {
+            plane[j * ls] = 0;
+            plane[j * ls + ew + 1] = 0;
+        }
+    }
+
+    @Override
+    public void clear() {
+        pOld.clear();
+        pCurrent.clear();
+        outOld.clear();
+        outCurrent.clear();
+    }
+
+    @Override
+    public void saveFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            old.put(pOld.getData(), pOld.index(0, j), width);
+            current.put(pCurrent.getData(), pCurrent.index(0, j), width);
+        }
+    }
+
+    @Override
+    public void loadFields(int j0, int j1, DoubleBuffer old, DoubleBuffer current) {
+        for (int j=j0; j<j1; j++) {
+            old.get(pOld.getData(), pOld.index(0, j), width);
+            current.get(pCurrent.getData(), pCurrent.index(0, j), width);
+        }
+    }
+
+    @Override
+    public double sample(int x, int y) {
+        return pCurrent.get(x, y);
+    }
+
+    @Override
+    public void readRow(int j, double[] row) {
+        System.arraycopy(pCurrent.getData(), pCurrent.index(0, j), row, 0, width);
+    }
+
+    @Override
+    public void writeRow(int j, double[] row) {
+        System.arraycopy(row, 0, pCurrent.getData(), pCurrent.index(0, j), width);
+    }
+
+    @Override
+    public void snapshot(Frame frame) {
+        frame.fill(pCurrent.getData(), pCurrent.index(0, 0), pCurrent.getStride());
+    }
+
+    @Override
+    public void close() {
+        bands.close();
+    }
+}
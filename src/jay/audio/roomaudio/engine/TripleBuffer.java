@@ -0,0 +1,44 @@
+package jay.audio.roomaudio.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Lock-free hand-off between one writer and one reader. The writer fills the
+// back slot and publishes it by swapping it with the middle slot; the reader
+// swaps the middle slot into the front only when something new was published.
+// Neither side ever waits for the other.
+public class TripleBuffer<T> {
+    // Low two bits: index of the middle slot. FRESH: the middle slot has not been read yet.
+    private static final int FRESH = 4;
+
+    private final Object[] slots = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int front = 0; // reader only
+    private int back = 2;  // writer only
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i=0; i<3; i++) {
+            slots[i] = factory.get();
+        }
+    }
+
+    // Writer side: the slot to fill next
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) slots[back];
+    }
+
+    // Writer side: makes the back slot visible to the reader
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & 3;
+    }
+
+    // Reader side: the most recently published slot (or the last one read if nothing is new)
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & 3;
+        }
+        return (T) slots[front];
+    }
+}
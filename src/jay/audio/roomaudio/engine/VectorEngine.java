@@ -0,0 +1,58 @@
+package jay.audio.roomaudio.engine;
+
+// Parallel engine that uses the fused, branch-free kernel in both modes.
+// Obstacles, materials and boundaries live in the scene's CellCoefficients,
+// which act as lane masks, so each band is one straight-line loop over
+// consecutive array slots.
+//
+// When the JVM runs with --add-modules jdk.incubator.vector, rows go through
+// SimdKernel's explicit DoubleVector loop (SPECIES_PREFERRED, e.g. 4 lanes
+// with AVX2). Otherwise it falls back to GridEngine's scalar fused loop and
+// leaves vectorization to HotSpot's superword pass. Both give the same bits.
+public class VectorEngine extends ParallelEngine {
+    private static final boolean SIMD = simdAvailable();
+
+    public VectorEngine(int width, int height) {
+        super(width, height);
+    }
+
+    public VectorEngine(int width, int height, int threads) {
+        super(width, height, threads);
+    }
+
+    // Whether this JVM steps with the Vector API kernel
+    public static boolean isSimd() {
+        return SIMD;
+    }
+
+    // True when the module is in the boot layer and its preferred species has more than one lane.
+    // SimdKernel is not touched without the module, since loading it would fail.
+    private static boolean simdAvailable() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return false;
+        try {
+            return SimdKernel.lanes() > 1;
+        } catch (LinkageError ex) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void computeRows(Scene scene, int j0, int j1) {
+        if (!SIMD) {
+            fusedRows(scene, j0, j1);
+            return;
+        }
+        double[] next = pNew.getData();
+        double[] cur = pCurrent.getData();
+        double[] old = pOld.getData();
+        double[] a = coefficients.getStencil();
+        double[] b = coefficients.getReflect();
+        int stride = pCurrent.getStride();
+        double a2 = scene.getAlpha()*scene.getAlpha();
+
+        for (int j=j0; j<j1; j++) {
+            int k0 = pCurrent.index(colStart, j);
+            SimdKernel.row(next, cur, old, a, b, stride, a2, k0, k0 + (colEnd - colStart));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package jay.audio.roomaudio.geometric;
+
+// Sound energy arriving at one receiver, binned by arrival time. Energies are
+// relative: a source of gain g emits g^2 in total, and a receiver reports
+// energy per unit area (cells^2) around it.
+public class EnergyHistogram {
+    // Bins averaged together before looking for the noise floor
+    private static final double SMOOTHING_SECONDS = 0.01;
+    // Share of the bins at the end taken as the first noise estimate
+    private static final double NOISE_TAIL = 0.1;
+    private static final int LUNDEBY_ITERATIONS = 5;
+
+    private final double binSeconds;
+    private final double[] bins;
+
+    public EnergyHistogram(int bins, double binSeconds) {
+        this.binSeconds = binSeconds;
+        this.bins = new double[bins];
+    }
+
+    // Wraps bins filled elsewhere, e.g. by a ray tracer worker
+    EnergyHistogram(double[] bins, double binSeconds) {
+        this.binSeconds = binSeconds;
+        this.bins = bins;
+    }
+
+    public double[] getBins() {
+        return bins;
+    }
+
+    public double getBinSeconds() {
+        return binSeconds;
+    }
+
+    public double getTotalEnergy() {
+        double total = 0;
+        for (double e : bins) total += e;
+        return total;
+    }
+
+    // Schroeder backward integral in dB relative to the total, one value per bin
+    public double[] decayCurve() {
+        return decayCurve(bins.length, 0);
+    }
+
+    // The integral over bins [0, end) plus tail energy assumed to arrive after them
+    private double[] decayCurve(int end, double tail) {
+        double[] curve = new double[end];
+        double remaining = tail;
+        for (int b=end-1; b>=0; b--) {
+            remaining += bins[b];
+            curve[b] = remaining;
+        }
+        double total = curve.length == 0 ? 0 : curve[0];
+        for (int b=0; b<curve.length; b++) {
+            curve[b] = total > 0 && curve[b] > 0 ? 10 * Math.log10(curve[b] / total) : Double.NEGATIVE_INFINITY;
+        }
+        return curve;
+    }
+
+    // Reverberation time in seconds: the decay curve's slope between -5 and -35 dB (T30)
+    // extrapolated to 60 dB, or between -5 and -25 dB (T20) if the energy falls less than
+    // 35 dB before it meets the noise floor or the end of the histogram. NaN if it falls
+    // less than 25 dB.
+    //
+    // The integral is cut where the decay meets the noise floor and the energy beyond
+    // is added back from the fitted decay rate (Lundeby's method), so a longer
+    // histogram adds neither noise nor a missing tail to the curve.
+    public double decayTime() {
+        Truncation cut = truncate();
+        if (cut == null || cut.range < 25) return Double.NaN;
+        double[] curve = decayCurve(cut.end, cut.tail);
+        double t = cut.range >= 35 ? fitDecay(curve, -5, -35) : Double.NaN;
+        return Double.isNaN(t) ? fitDecay(curve, -5, -25) : t;
+    }
+
+    // Where the decay sinks into the noise floor
+    private static class Truncation {
+        // First bin left out of the integral
+        int end;
+        // Energy of the decay continued past end
+        double tail;
+        // dB between the early level and the noise floor
+        double range;
+    }
+
+    // Lundeby's iteration on levels averaged over about 10 ms: take the noise floor
+    // from the last tenth of the bins, fit the decay down to 10 dB above it, find
+    // where the line crosses it, and re-estimate the floor from the bins past that
+    // crossing. null if there is nothing above the floor to fit.
+    private Truncation truncate() {
+        int n = bins.length;
+        if (n == 0) return null;
+        int peak = 0;
+        for (int b=1; b<n; b++) {
+            if (bins[b] > bins[peak]) peak = b;
+        }
+        if (bins[peak] <= 0) return null;
+        int window = (int) Math.max(1, Math.round(SMOOTHING_SECONDS / binSeconds));
+        int windows = (n - peak) / window;
+        if (windows < 2) return null;
+        double[] time = new double[windows], level = new double[windows];
+        for (int w=0; w<windows; w++) {
+            int b0 = peak + w * window;
+            time[w] = (b0 + window / 2.0) * binSeconds;
+            level[w] = 10 * Math.log10(mean(b0, b0 + window));
+        }
+
+        Truncation cut = new Truncation();
+        double noise = mean(n - Math.max(1, (int) (n * NOISE_TAIL)), n);
+        if (noise <= 0) {
+            // Nothing arrives at the end (rays fell below their energy floor): the
+            // decay is complete, so the integral needs neither cut nor tail
+            cut.end = n;
+            double lowest = level[0];
+            for (double l : level) {
+                if (l > Double.NEGATIVE_INFINITY) lowest = Math.min(lowest, l);
+            }
+            cut.range = level[0] - lowest;
+            return cut;
+        }
+
+        double slope = 0, crossing = n * binSeconds;
+        for (int iteration=0; iteration<LUNDEBY_ITERATIONS; iteration++) {
+            double floor = 10 * Math.log10(noise);
+            int fitted = 0;
+            while (fitted < windows && level[fitted] > floor + 10) fitted++;
+            if (fitted < 2) return null;
+            double[] line = fitLine(time, level, 0, fitted);
+            slope = line[1];
+            if (slope >= 0) return null;
+            double previous = crossing;
+            crossing = Math.min(n * binSeconds, (floor - line[0]) / slope);
+            // The floor proper starts once the decay would be another 10 dB down
+            int quiet = (int) ((crossing - 10 / slope) / binSeconds);
+            if (quiet >= 0 && quiet <= n - Math.max(1, (int) (n * NOISE_TAIL))) noise = mean(quiet, n);
+            if (Math.abs(crossing - previous) < binSeconds) break;
+        }
+        cut.end = (int) Math.max(peak + 1, Math.min(n, Math.round(crossing / binSeconds)));
+        // The decay continued from the floor level at the crossing, 10^(slope t / 10)
+        cut.tail = noise * 10 / (-slope * Math.log(10)) / binSeconds;
+        cut.range = level[0] - 10 * Math.log10(noise);
+        return cut;
+    }
+
+    private double mean(int b0, int b1) {
+        double sum = 0;
+        for (int b=b0; b<b1; b++) sum += bins[b];
+        return sum / (b1 - b0);
+    }
+
+    // Least-squares line through points [from, to): {intercept, slope}
+    private static double[] fitLine(double[] x, double[] y, int from, int to) {
+        double n = 0, sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (int i=from; i<to; i++) {
+            n++;
+            sx += x[i];
+            sy += y[i];
+            sxx += x[i] * x[i];
+            sxy += x[i] * y[i];
+        }
+        double slope = (n * sxy - sx * sy) / (n * sxx - sx * sx);
+        return new double[] {(sy - slope * sx) / n, slope};
+    }
+
+    private double fitDecay(double[] curve, double upper, double lower) {
+        int first = -1, last = -1;
+        for (int b=0; b<curve.length; b++) {
+            if (first < 0 && curve[b] <= upper) first = b;
+            if (curve[b] >= lower) last = b;
+        }
+        // The curve has to get below the lower level before it ends
+        if (first < 0 || last <= first || last == curve.length - 1) return Double.NaN;
+        // Least-squares line through the curve between the two levels
+        double[] time = new double[last + 1];
+        for (int b=first; b<=last; b++) time[b] = (b + 0.5) * binSeconds;
+        double slope = fitLine(time, curve, first, last + 1)[1];
+        return slope < 0 ? -60.0 / slope : Double.NaN;
+    }
+}
@@ -0,0 +1,82 @@
+package jay.audio.roomaudio.geometric;
+
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.source.SourceSet;
+
+// What the geometric engines need from a Scene, copied so they can run on
+// another thread while the simulation continues: the walls with their
+// acceleration grid, the source positions and gains, and the scene's
+// speed of sound, cell size and sample period.
+public class GeometricRoom {
+    private final Walls walls;
+    private final WallGrid grid;
+    private final double[] sourceX, sourceY, sourceGain;
+    private final double speedOfSound;
+    private final double dx;
+    private final double dt;
+
+    private GeometricRoom(Walls walls, double[] sourceX, double[] sourceY, double[] sourceGain,
+                          double speedOfSound, double dx, double dt) {
+        this.walls = walls;
+        this.grid = new WallGrid(walls);
+        this.sourceX = sourceX;
+        this.sourceY = sourceY;
+        this.sourceGain = sourceGain;
+        this.speedOfSound = speedOfSound;
+        this.dx = dx;
+        this.dt = dt;
+    }
+
+    // Call on the thread that owns the scene, e.g. as a SimulationLoop command
+    public static GeometricRoom capture(Scene scene) {
+        SourceSet sources = scene.getSources();
+        int n = sources.size();
+        double[] x = new double[n], y = new double[n], gain = new double[n];
+        for (int s=0; s<n; s++) {
+            // Cell centres
+            x[s] = sources.getX(s) + 0.5;
+            y[s] = sources.getY(s) + 0.5;
+            gain[s] = sources.getGain(s);
+        }
+        return new GeometricRoom(Walls.fromScene(scene), x, y, gain,
+            scene.getSpeedOfSound(), scene.getDx(), scene.getDt());
+    }
+
+    public Walls getWalls() {
+        return walls;
+    }
+
+    public WallGrid getGrid() {
+        return grid;
+    }
+
+    public int getSourceCount() {
+        return sourceX.length;
+    }
+
+    public double getSourceX(int s) {
+        return sourceX[s];
+    }
+
+    public double getSourceY(int s) {
+        return sourceY[s];
+    }
+
+    public double getSourceGain(int s) {
+        return sourceGain[s];
+    }
+
+    public double getSpeedOfSound() {
+        return speedOfSound;
+    }
+
+    // Metres per cell
+    public double getDx() {
+        return dx;
+    }
+
+    // Sample period of the responses, the scene's step
+    public double getDt() {
+        return dt;
+    }
+}
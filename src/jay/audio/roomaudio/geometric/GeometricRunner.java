@@ -0,0 +1,190 @@
+package jay.audio.roomaudio.geometric;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import jay.audio.roomaudio.batch.BatchRun;
+import jay.audio.roomaudio.batch.RunConfig;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.RowBands;
+
+// Command-line entry point for the geometric engines. Takes the headless
+// runner's room, size, mode, materials, source, probe, duration and output
+// options, plus its own:
+//   --method image-source|rays   engine (default image-source)
+//   --order N    highest reflection order (image sources, default 3)
+//   --rays N     rays in total, shared between sources (ray tracing, default 1000000)
+//   --radius R   receiver radius in cells (ray tracing, default 2)
+//
+// Writes to the output directory:
+//   probes.csv    impulse response at every probe, in HeadlessRunner's layout (image sources)
+//   arrivals.csv  probe, time, amplitude and reflection order of every path (image sources)
+//   energy.csv    energy per 1 ms bin at every probe (ray tracing)
+//   stats.txt     settings, timing and, for ray tracing, each probe's decay time
+public class GeometricRunner {
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            printUsage();
+            return;
+        }
+        try {
+            String method = "image-source";
+            int order = 3;
+            long rays = 1_000_000;
+            double radius = 2.0;
+            List<String> rest = new ArrayList<>();
+            for (int a=0; a<args.length; a++) {
+                if (args[a].equals("--method") && a + 1 < args.length) {
+                    method = args[++a];
+                } else if (args[a].equals("--order") && a + 1 < args.length) {
+                    order = Integer.parseInt(args[++a]);
+                } else if (args[a].equals("--rays") && a + 1 < args.length) {
+                    rays = Long.parseLong(args[++a]);
+                } else if (args[a].equals("--radius") && a + 1 < args.length) {
+                    radius = Double.parseDouble(args[++a]);
+                } else {
+                    rest.add(args[a]);
+                }
+            }
+            RunConfig config = RunConfig.parse(rest.toArray(new String[0]));
+            Scene scene = BatchRun.createScene(config, null);
+            for (int[] xy : config.getProbes()) BatchRun.checkInside(scene, xy, "Probe");
+            double duration = config.resolveSteps(scene.getDt()) * scene.getDt();
+            if (method.equals("rays")) {
+                runRays(config, scene, duration, rays, radius);
+                return;
+            }
+            if (!method.equals("image-source")) throw new IllegalArgumentException("Unknown method: " + method);
+
+            long start = System.nanoTime();
+            GeometricRoom room = GeometricRoom.capture(scene);
+            ImpulseResponse[] responses;
+            int reached;
+            long images;
+            try (ImageSourceEngine engine = new ImageSourceEngine(RowBands.defaultThreads())) {
+                engine.setMaxOrder(order);
+                responses = engine.compute(room, config.getProbes(), duration);
+                reached = engine.getOrderReached();
+                images = engine.getImageCount();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            File dir = config.getOutputDir();
+            if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir.getPath());
+            writeResponses(config.getProbes(), responses, new File(dir, "probes.csv"));
+            writeArrivals(config.getProbes(), responses, new File(dir, "arrivals.csv"));
+            try (PrintWriter out = new PrintWriter(new File(dir, "stats.txt"))) {
+                out.println("room=" + (config.getRoom() == null ? "" : config.getRoom().getPath()));
+                out.println("width=" + config.getWidth());
+                out.println("height=" + config.getHeight());
+                out.println("mode=" + (config.isRealismMode() ? "realism" : "ideal"));
+                out.println("method=image-source");
+                out.println("walls=" + room.getWalls().size());
+                out.println("order=" + reached);
+                out.println("images=" + images);
+                out.println("dt=" + scene.getDt());
+                out.println("simulatedSeconds=" + duration);
+                out.println("wallSeconds=" + seconds);
+            }
+            System.out.printf("%d walls, %d images up to order %d in %.1f ms, results in %s%n",
+                room.getWalls().size(), images, reached, seconds * 1e3, dir.getPath());
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void runRays(RunConfig config, Scene scene, double duration, long rays, double radius)
+            throws IOException {
+        long start = System.nanoTime();
+        GeometricRoom room = GeometricRoom.capture(scene);
+        EnergyHistogram[] histograms;
+        try (RayTracer tracer = new RayTracer(RowBands.defaultThreads())) {
+            tracer.setRays(rays);
+            tracer.setReceiverRadius(radius);
+            histograms = tracer.trace(room, config.getProbes(), duration);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        File dir = config.getOutputDir();
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir.getPath());
+        writeEnergy(config.getProbes(), histograms, new File(dir, "energy.csv"));
+        try (PrintWriter out = new PrintWriter(new File(dir, "stats.txt"))) {
+            out.println("room=" + (config.getRoom() == null ? "" : config.getRoom().getPath()));
+            out.println("width=" + config.getWidth());
+            out.println("height=" + config.getHeight());
+            out.println("mode=" + (config.isRealismMode() ? "realism" : "ideal"));
+            out.println("method=rays");
+            out.println("walls=" + room.getWalls().size());
+            out.println("rays=" + rays);
+            out.println("radius=" + radius);
+            out.println("simulatedSeconds=" + duration);
+            out.println("wallSeconds=" + seconds);
+            out.println("raysPerSecond=" + rays / seconds);
+            for (int p=0; p<histograms.length; p++) {
+                int[] xy = config.getProbes().get(p);
+                out.println("decayTime.p_" + xy[0] + "_" + xy[1] + "=" + histograms[p].decayTime());
+            }
+        }
+        System.out.printf("%d walls, %d rays in %.1f ms, results in %s%n",
+            room.getWalls().size(), rays, seconds * 1e3, dir.getPath());
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: GeometricRunner [--method image-source|rays] [--order N] [--rays N] [--radius R]");
+        System.err.println("       [--room FILE] [--size WxH] [--mode ideal|realism]");
+        System.err.println("       [--materials ID=R/D,...] [--steps N | --duration SECONDS]");
+        System.err.println("       [--source X,Y]... [--array X0,Y0,X1,Y1,N]... [--probe X,Y]... [--out DIR]");
+    }
+
+    static void writeResponses(List<int[]> probes, ImpulseResponse[] responses, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            StringBuilder header = new StringBuilder("step,time");
+            for (int[] xy : probes) header.append(",p_").append(xy[0]).append('_').append(xy[1]);
+            out.println(header);
+            if (responses.length == 0) return;
+            double dt = responses[0].getDt();
+            for (int n=0; n<responses[0].getSamples().length; n++) {
+                StringBuilder row = new StringBuilder();
+                row.append(n).append(',').append(n * dt);
+                for (ImpulseResponse ir : responses) row.append(',').append(ir.getSamples()[n]);
+                out.println(row);
+            }
+        }
+    }
+
+    private static void writeEnergy(List<int[]> probes, EnergyHistogram[] histograms, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            StringBuilder header = new StringBuilder("bin,time");
+            for (int[] xy : probes) header.append(",p_").append(xy[0]).append('_').append(xy[1]);
+            out.println(header);
+            if (histograms.length == 0) return;
+            double binSeconds = histograms[0].getBinSeconds();
+            for (int b=0; b<histograms[0].getBins().length; b++) {
+                StringBuilder row = new StringBuilder();
+                row.append(b).append(',').append(b * binSeconds);
+                for (EnergyHistogram h : histograms) row.append(',').append(h.getBins()[b]);
+                out.println(row);
+            }
+        }
+    }
+
+    private static void writeArrivals(List<int[]> probes, ImpulseResponse[] responses, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("probe,time,amplitude,order");
+            for (int p=0; p<responses.length; p++) {
+                String probe = probes.get(p)[0] + "_" + probes.get(p)[1];
+                ImpulseResponse ir = responses[p];
+                for (int a=0; a<ir.getArrivalCount(); a++) {
+                    out.println(probe + "," + ir.getArrivalTime(a) + "," + ir.getArrivalAmplitude(a)
+                        + "," + ir.getArrivalOrder(a));
+                }
+            }
+        }
+    }
+}
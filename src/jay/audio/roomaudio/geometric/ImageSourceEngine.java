@@ -0,0 +1,254 @@
+package jay.audio.roomaudio.geometric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import jay.audio.roomaudio.model.Wave;
+
+// Early reflections by the image-source method. Every source is mirrored
+// across every wall it faces, those images across every wall they face, and
+// so on up to maxOrder, skipping images that cannot reach any receiver within
+// the requested duration. An image contributes at a receiver if the path
+// traced back from the receiver hits each of its walls in turn with no other
+// wall in between; its contribution is a Wave from the image position,
+// scaled by the product of the wall reflection factors.
+//
+// Image generation runs level by level, each level split across the pool.
+// Path checks for all orders are then submitted together, so workers spread
+// over the orders. Compared with stepping the FDTD grid for the same time
+// span this takes milliseconds for the first few orders.
+public class ImageSourceEngine implements AutoCloseable {
+    // Images per generation or validation task
+    private static final int CHUNK = 2048;
+
+    private final ForkJoinPool pool;
+    private int maxOrder = 3;
+    private long maxImages = 4_000_000;
+    // Air absorption per metre, the Wave model's alpha
+    private double airAttenuation = 0.0;
+
+    private int orderReached;
+    private long imageCount;
+
+    public ImageSourceEngine(int threads) {
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    // One level of the image tree, as parallel arrays
+    private static class Level {
+        int size = 0;
+        double[] x, y, gain;
+        int[] wall, parent;
+
+        Level(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+            gain = new double[capacity];
+            wall = new int[capacity];
+            parent = new int[capacity];
+        }
+
+        void add(double ix, double iy, double g, int w, int p) {
+            if (size == x.length) {
+                int n = Math.max(16, size * 2);
+                x = Arrays.copyOf(x, n);
+                y = Arrays.copyOf(y, n);
+                gain = Arrays.copyOf(gain, n);
+                wall = Arrays.copyOf(wall, n);
+                parent = Arrays.copyOf(parent, n);
+            }
+            x[size] = ix;
+            y[size] = iy;
+            gain[size] = g;
+            wall[size] = w;
+            parent[size] = p;
+            size++;
+        }
+
+        void append(Level other) {
+            for (int n=0; n<other.size; n++) {
+                add(other.x[n], other.y[n], other.gain[n], other.wall[n], other.parent[n]);
+            }
+        }
+    }
+
+    // Responses for each probe (cell coordinates), duration seconds long at the room's dt
+    public ImpulseResponse[] compute(GeometricRoom room, List<int[]> probes, double duration) {
+        Walls walls = room.getWalls();
+        double dt = room.getDt();
+        int length = (int) Math.ceil(duration / dt) + 1;
+        // Longest useful path, in cells
+        double maxDistance = duration * room.getSpeedOfSound() / room.getDx();
+
+        // Order 0: the sources themselves
+        List<Level> levels = new ArrayList<>();
+        Level sources = new Level(room.getSourceCount());
+        for (int s=0; s<room.getSourceCount(); s++) {
+            sources.add(room.getSourceX(s), room.getSourceY(s), room.getSourceGain(s), -1, -1);
+        }
+        levels.add(sources);
+        imageCount = sources.size;
+        orderReached = 0;
+        for (int order=1; order<=maxOrder; order++) {
+            Level next = reflect(levels.get(order - 1), walls, maxDistance);
+            if (next.size == 0 || imageCount + next.size > maxImages) break;
+            levels.add(next);
+            imageCount += next.size;
+            orderReached = order;
+        }
+
+        List<Callable<ImpulseResponse[]>> tasks = new ArrayList<>();
+        for (int order=0; order<levels.size(); order++) {
+            Level level = levels.get(order);
+            for (int n0=0; n0<level.size; n0+=CHUNK) {
+                int from = n0, to = Math.min(level.size, n0 + CHUNK), k = order;
+                tasks.add(() -> contributions(room, levels, k, from, to, probes, length, maxDistance));
+            }
+        }
+        ImpulseResponse[] result = new ImpulseResponse[probes.size()];
+        for (int p=0; p<result.length; p++) result[p] = new ImpulseResponse(length, dt);
+        for (ImpulseResponse[] partial : invokeAll(tasks)) {
+            for (int p=0; p<result.length; p++) result[p].merge(partial[p]);
+        }
+        for (ImpulseResponse ir : result) ir.sortArrivals();
+        return result;
+    }
+
+    // Mirrors every image of the level across every wall it faces
+    private Level reflect(Level level, Walls walls, double maxDistance) {
+        List<Callable<Level>> tasks = new ArrayList<>();
+        for (int n0=0; n0<level.size; n0+=CHUNK) {
+            int from = n0, to = Math.min(level.size, n0 + CHUNK);
+            tasks.add(() -> {
+                Level out = new Level(0);
+                for (int n=from; n<to; n++) {
+                    double px = level.x[n], py = level.y[n];
+                    for (int w=0; w<walls.size(); w++) {
+                        // Reflecting straight back across the same wall undoes the last reflection
+                        if (w == level.wall[n] || !walls.inFront(w, px, py)) continue;
+                        double ix = px, iy = py;
+                        if (walls.getAxis(w) == Walls.VERTICAL) ix = walls.mirror(w, px);
+                        else iy = walls.mirror(w, py);
+                        // Any path through this wall is at least this long
+                        if (walls.distance(w, ix, iy) > maxDistance) continue;
+                        out.add(ix, iy, level.gain[n] * walls.getReflection(w), w, n);
+                    }
+                }
+                return out;
+            });
+        }
+        Level next = new Level(0);
+        for (Level part : invokeAll(tasks)) next.append(part);
+        return next;
+    }
+
+    private ImpulseResponse[] contributions(GeometricRoom room, List<Level> levels, int order, int from, int to,
+                                            List<int[]> probes, int length, double maxDistance) {
+        WallGrid grid = room.getGrid();
+        Walls walls = room.getWalls();
+        WallGrid.Hit hit = new WallGrid.Hit();
+        double c = room.getSpeedOfSound();
+        double dx = room.getDx();
+        ImpulseResponse[] out = new ImpulseResponse[probes.size()];
+        for (int p=0; p<out.length; p++) out[p] = new ImpulseResponse(length, room.getDt());
+
+        Level level = levels.get(order);
+        for (int n=from; n<to; n++) {
+            for (int p=0; p<out.length; p++) {
+                double rx = probes.get(p)[0] + 0.5, ry = probes.get(p)[1] + 0.5;
+                double distance = Math.hypot(level.x[n] - rx, level.y[n] - ry);
+                if (distance > maxDistance || !visible(levels, order, n, rx, ry, walls, grid, hit)) continue;
+                double metres = distance * dx;
+                double time = metres / c;
+                Wave wave = new Wave(level.x[n] * dx, level.y[n] * dx, 0, level.gain[n], airAttenuation);
+                out[p].add(time, wave.getAmplitude(Math.round(time * 1e9), c), order);
+            }
+        }
+        return out;
+    }
+
+    // Traces the path of image n back from the receiver through its walls to the source
+    private static boolean visible(List<Level> levels, int order, int n, double rx, double ry,
+                                   Walls walls, WallGrid grid, WallGrid.Hit hit) {
+        double px = rx, py = ry;
+        int last = -1;
+        for (int k=order; k>0; k--) {
+            Level level = levels.get(k);
+            int w = level.wall[n];
+            if (!walls.inFront(w, px, py)) return false;
+            double ix = level.x[n], iy = level.y[n];
+            double qx, qy;
+            if (walls.getAxis(w) == Walls.VERTICAL) {
+                double t = (walls.getPosition(w) - px) / (ix - px);
+                qx = walls.getPosition(w);
+                qy = py + t * (iy - py);
+                if (qy < walls.getFrom(w) || qy > walls.getTo(w)) return false;
+            } else {
+                double t = (walls.getPosition(w) - py) / (iy - py);
+                qy = walls.getPosition(w);
+                qx = px + t * (ix - px);
+                if (qx < walls.getFrom(w) || qx > walls.getTo(w)) return false;
+            }
+            if (grid.occluded(px, py, qx, qy, last, hit)) return false;
+            px = qx;
+            py = qy;
+            last = w;
+            n = level.parent[n];
+        }
+        Level sources = levels.get(0);
+        return !grid.occluded(px, py, sources.x[n], sources.y[n], last, hit);
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> f : pool.invokeAll(tasks)) results.add(f.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+    public void setMaxOrder(int maxOrder) {
+        if (maxOrder < 0) throw new IllegalArgumentException("Order must be >= 0: " + maxOrder);
+        this.maxOrder = maxOrder;
+    }
+
+    public int getMaxOrder() {
+        return maxOrder;
+    }
+
+    // Stops at the last complete order that fits, so memory stays bounded
+    public void setMaxImages(long maxImages) {
+        this.maxImages = maxImages;
+    }
+
+    public void setAirAttenuation(double alphaPerMetre) {
+        this.airAttenuation = alphaPerMetre;
+    }
+
+    // Highest order fully included by the last compute()
+    public int getOrderReached() {
+        return orderReached;
+    }
+
+    // Images generated by the last compute(), sources included
+    public long getImageCount() {
+        return imageCount;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
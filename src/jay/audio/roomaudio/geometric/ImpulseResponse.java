@@ -0,0 +1,93 @@
+package jay.audio.roomaudio.geometric;
+
+import java.util.Arrays;
+
+// Response at one receiver, sampled at dt, plus the list of discrete arrivals
+// it was built from (time, amplitude, reflection order). Each arrival is
+// split linearly between the two nearest samples, so its timing survives
+// sub-sample delays. Not thread-safe: workers fill their own and merge.
+public class ImpulseResponse {
+    private final double dt;
+    private final double[] samples;
+
+    private int count = 0;
+    private double[] times = new double[16];
+    private double[] amplitudes = new double[16];
+    private int[] orders = new int[16];
+
+    public ImpulseResponse(int length, double dt) {
+        this.dt = dt;
+        this.samples = new double[length];
+    }
+
+    // Arrivals past the end are dropped
+    public void add(double time, double amplitude, int order) {
+        double s = time / dt;
+        int i = (int) s;
+        if (i >= samples.length) return;
+        double frac = s - i;
+        samples[i] += amplitude * (1 - frac);
+        if (i + 1 < samples.length) samples[i + 1] += amplitude * frac;
+        append(time, amplitude, order);
+    }
+
+    public void merge(ImpulseResponse other) {
+        for (int i=0; i<samples.length; i++) samples[i] += other.samples[i];
+        for (int a=0; a<other.count; a++) {
+            append(other.times[a], other.amplitudes[a], other.orders[a]);
+        }
+    }
+
+    private void append(double time, double amplitude, int order) {
+        if (count == times.length) {
+            times = Arrays.copyOf(times, count * 2);
+            amplitudes = Arrays.copyOf(amplitudes, count * 2);
+            orders = Arrays.copyOf(orders, count * 2);
+        }
+        times[count] = time;
+        amplitudes[count] = amplitude;
+        orders[count] = order;
+        count++;
+    }
+
+    // Orders the arrival list by time
+    public void sortArrivals() {
+        Integer[] order = new Integer[count];
+        for (int a=0; a<count; a++) order[a] = a;
+        Arrays.sort(order, (p, q) -> Double.compare(times[p], times[q]));
+        double[] t = new double[count], amp = new double[count];
+        int[] o = new int[count];
+        for (int a=0; a<count; a++) {
+            t[a] = times[order[a]];
+            amp[a] = amplitudes[order[a]];
+            o[a] = orders[order[a]];
+        }
+        times = t;
+        amplitudes = amp;
+        orders = o;
+    }
+
+    public double[] getSamples() {
+        return samples;
+    }
+
+    public double getDt() {
+        return dt;
+    }
+
+    public int getArrivalCount() {
+        return count;
+    }
+
+    public double getArrivalTime(int a) {
+        return times[a];
+    }
+
+    public double getArrivalAmplitude(int a) {
+        return amplitudes[a];
+    }
+
+    public int getArrivalOrder(int a) {
+        return orders[a];
+    }
+}
@@ -0,0 +1,242 @@
+package jay.audio.roomaudio.geometric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stochastic ray tracing for late reverberation and high frequencies, where
+// the FDTD grid would need a very fine dx. Each source emits rays evenly in
+// angle (jittered); a ray bounces off walls specularly, or in a random
+// direction with the scattering probability, losing 1 - R^2 of its energy at
+// each wall of reflection factor R (the material table, i.e. the Material enum
+// unless overridden; lossless in ideal mode). Every receiver is a small
+// disc: a ray crossing it adds energy * chord / area to the time bin of its
+// closest approach.
+//
+// Rays are traced in fixed-size batches through the WallGrid. One worker
+// per thread pulls batch numbers from a counter and keeps its own bins,
+// scratch hit and random state, so tracing allocates nothing per ray or per
+// batch and scales with cores. A batch's random stream depends only on the
+// seed and batch number, so results only vary with the thread count by
+// the rounding of the per-worker sums.
+public class RayTracer implements AutoCloseable {
+    private static final int BATCH = 4096;
+
+    private final ForkJoinPool pool;
+    private final int threads;
+    private long rays = 1_000_000;
+    private double receiverRadius = 2.0;
+    private double binSeconds = 0.001;
+    private double scattering = 0.1;
+    private long seed = 1;
+    // Rays stop below this fraction of their initial energy
+    private double energyFloor = 1e-6;
+
+    public RayTracer(int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    // Energy-time histograms for each probe (cell coordinates) over duration seconds
+    public EnergyHistogram[] trace(GeometricRoom room, List<int[]> probes, double duration) {
+        int sources = room.getSourceCount();
+        int binCount = (int) Math.ceil(duration / binSeconds);
+        if (sources == 0 || rays <= 0) return histograms(new double[probes.size()][binCount]);
+        long raysPerSource = Math.max(1, rays / sources);
+        long batchesPerSource = (raysPerSource + BATCH - 1) / BATCH;
+        long batches = batchesPerSource * sources;
+
+        double[] rx = new double[probes.size()], ry = new double[probes.size()];
+        for (int p=0; p<rx.length; p++) {
+            rx[p] = probes.get(p)[0] + 0.5;
+            ry[p] = probes.get(p)[1] + 0.5;
+        }
+        // Energy kept per reflection, R^2
+        Walls walls = room.getWalls();
+        double[] kept = new double[walls.size()];
+        for (int w=0; w<kept.length; w++) kept[w] = walls.getReflection(w) * walls.getReflection(w);
+
+        AtomicLong nextBatch = new AtomicLong();
+        List<Callable<double[][]>> workers = new ArrayList<>();
+        for (int t=0; t<threads; t++) {
+            workers.add(() -> {
+                Worker worker = new Worker(room, kept, rx, ry, binCount, duration);
+                for (long b; (b = nextBatch.getAndIncrement()) < batches; ) {
+                    int s = (int) (b / batchesPerSource);
+                    long first = (b % batchesPerSource) * BATCH;
+                    long count = Math.min(BATCH, raysPerSource - first);
+                    worker.batch(s, first, count, raysPerSource, b);
+                }
+                return worker.bins;
+            });
+        }
+        double[][] total = new double[probes.size()][binCount];
+        for (double[][] part : invokeAll(workers)) {
+            for (int p=0; p<total.length; p++) {
+                for (int i=0; i<binCount; i++) total[p][i] += part[p][i];
+            }
+        }
+        return histograms(total);
+    }
+
+    private EnergyHistogram[] histograms(double[][] bins) {
+        EnergyHistogram[] out = new EnergyHistogram[bins.length];
+        for (int p=0; p<out.length; p++) out[p] = new EnergyHistogram(bins[p], binSeconds);
+        return out;
+    }
+
+    // Per-thread state; everything a batch touches is allocated once here
+    private class Worker {
+        final GeometricRoom room;
+        final WallGrid grid;
+        final Walls walls;
+        final double[] kept;
+        final double[] rx, ry;
+        final double[][] bins;
+        final WallGrid.Hit hit = new WallGrid.Hit();
+        final double maxDistance;
+        // Cells per second
+        final double speed;
+        final double radius2, depositScale;
+        long random;
+
+        Worker(GeometricRoom room, double[] kept, double[] rx, double[] ry, int binCount, double duration) {
+            this.room = room;
+            this.grid = room.getGrid();
+            this.walls = room.getWalls();
+            this.kept = kept;
+            this.rx = rx;
+            this.ry = ry;
+            this.bins = new double[rx.length][binCount];
+            this.speed = room.getSpeedOfSound() / room.getDx();
+            this.maxDistance = duration * speed;
+            this.radius2 = receiverRadius * receiverRadius;
+            this.depositScale = 1.0 / (Math.PI * radius2);
+        }
+
+        void batch(int source, long first, long count, long raysPerSource, long batchNumber) {
+            random = seed * 0x9E3779B97F4A7C15L + batchNumber;
+            double sx = room.getSourceX(source), sy = room.getSourceY(source);
+            double gain = room.getSourceGain(source);
+            double e0 = gain * gain / raysPerSource;
+            for (long r=first; r<first+count; r++) {
+                // Stratified in angle, jittered within each stratum
+                double angle = 2 * Math.PI * (r + nextDouble()) / raysPerSource;
+                trace(sx, sy, Math.cos(angle), Math.sin(angle), e0);
+            }
+        }
+
+        void trace(double x, double y, double dx, double dy, double energy) {
+            double floor = energy * energyFloor;
+            double travelled = 0;
+            int last = -1;
+            while (energy > floor && travelled < maxDistance) {
+                double remaining = maxDistance - travelled;
+                boolean found = grid.intersect(x, y, dx, dy, 1e-9, remaining, last, hit);
+                double length = found ? hit.t : remaining;
+                deposit(x, y, dx, dy, length, travelled, energy);
+                if (!found) return;
+
+                x += dx * length;
+                y += dy * length;
+                travelled += length;
+                int w = hit.wall;
+                energy *= kept[w];
+                last = w;
+                if (scattering > 0 && nextDouble() < scattering) {
+                    // Diffuse: Lambert-distributed about the wall normal
+                    double sin = 2 * nextDouble() - 1;
+                    double cos = Math.sqrt(1 - sin * sin) * walls.getFacing(w);
+                    if (walls.getAxis(w) == Walls.VERTICAL) {
+                        dx = cos;
+                        dy = sin;
+                    } else {
+                        dx = sin;
+                        dy = cos;
+                    }
+                } else if (walls.getAxis(w) == Walls.VERTICAL) {
+                    dx = -dx;
+                } else {
+                    dy = -dy;
+                }
+            }
+        }
+
+        // Adds the ray segment's energy to every receiver disc it crosses
+        void deposit(double x, double y, double dx, double dy, double length, double travelled, double energy) {
+            for (int p=0; p<rx.length; p++) {
+                double ox = rx[p] - x, oy = ry[p] - y;
+                double along = ox * dx + oy * dy;
+                double d2 = ox * ox + oy * oy - along * along;
+                if (d2 >= radius2) continue;
+                double half = Math.sqrt(radius2 - d2);
+                double chord = Math.min(length, along + half) - Math.max(0, along - half);
+                if (chord <= 0) continue;
+                double time = (travelled + Math.max(0, Math.min(length, along))) / speed;
+                int bin = (int) (time / binSeconds);
+                if (bin < bins[p].length) bins[p][bin] += energy * chord * depositScale;
+            }
+        }
+
+        // SplitMix64
+        double nextDouble() {
+            long z = (random += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z = z ^ (z >>> 31);
+            return (z >>> 11) * 0x1.0p-53;
+        }
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> f : pool.invokeAll(tasks)) results.add(f.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+    public void setRays(long rays) {
+        this.rays = rays;
+    }
+
+    public long getRays() {
+        return rays;
+    }
+
+    // In cells
+    public void setReceiverRadius(double radius) {
+        if (radius <= 0) throw new IllegalArgumentException("Receiver radius must be positive: " + radius);
+        this.receiverRadius = radius;
+    }
+
+    public void setBinSeconds(double binSeconds) {
+        if (binSeconds <= 0) throw new IllegalArgumentException("Bin width must be positive: " + binSeconds);
+        this.binSeconds = binSeconds;
+    }
+
+    // Fraction of reflections that scatter diffusely, 0..1
+    public void setScattering(double scattering) {
+        this.scattering = Math.max(0, Math.min(1, scattering));
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,141 @@
+package jay.audio.roomaudio.geometric;
+
+// Uniform-grid acceleration structure over Walls: the room is split into
+// square buckets of BUCKET cells, each listing the walls that touch it. A ray
+// walks the buckets it crosses (3D-DDA style) and only tests their walls, so
+// a query costs about the number of buckets crossed rather than the number
+// of walls. Buckets are stored flat (start offsets into one index array).
+//
+// Queries only read the structure and write into a caller-owned Hit, so any
+// number of threads can trace through one grid without allocating.
+public class WallGrid {
+    public static final int BUCKET = 8;
+    private static final double EPS = 1e-9;
+
+    // Result of a query; reuse one per thread
+    public static class Hit {
+        public double t;
+        public int wall;
+    }
+
+    private final Walls walls;
+    private final int columns, rows;
+    private final int[] bucketStart;
+    private final int[] bucketWalls;
+
+    public WallGrid(Walls walls) {
+        this.walls = walls;
+        this.columns = (walls.getWidth() + BUCKET - 1) / BUCKET;
+        this.rows = (walls.getHeight() + BUCKET - 1) / BUCKET;
+        int buckets = columns * rows;
+
+        // Two passes: count per bucket, then fill
+        int[] counts = new int[buckets + 1];
+        for (int w=0; w<walls.size(); w++) {
+            forEachBucket(w, b -> counts[b]++);
+        }
+        bucketStart = new int[buckets + 1];
+        for (int b=0; b<buckets; b++) bucketStart[b + 1] = bucketStart[b] + counts[b];
+        bucketWalls = new int[bucketStart[buckets]];
+        int[] fill = new int[buckets];
+        for (int w=0; w<walls.size(); w++) {
+            final int wall = w;
+            forEachBucket(w, b -> bucketWalls[bucketStart[b] + fill[b]++] = wall);
+        }
+    }
+
+    private interface BucketVisitor {
+        void visit(int bucket);
+    }
+
+    private void forEachBucket(int w, BucketVisitor visitor) {
+        int line = (int) walls.getPosition(w);
+        int start = (int) walls.getFrom(w), end = (int) walls.getTo(w);
+        // A wall on a bucket edge belongs to the buckets on both sides
+        int lo = Math.max(0, (line - 1) / BUCKET), hi = Math.min(walls.getAxis(w) == Walls.VERTICAL ? columns - 1 : rows - 1, line / BUCKET);
+        int a0 = Math.max(0, (start - 1) / BUCKET);
+        int a1 = Math.min((walls.getAxis(w) == Walls.VERTICAL ? rows : columns) - 1, end / BUCKET);
+        for (int c=lo; c<=hi; c++) {
+            for (int a=a0; a<=a1; a++) {
+                visitor.visit(walls.getAxis(w) == Walls.VERTICAL ? a * columns + c : c * columns + a);
+            }
+        }
+    }
+
+    // Nearest wall hit by (ox, oy) + t*(dx, dy) with tMin < t < tMax, ignoring wall skip
+    // (e.g. the wall the ray just left). Only walls facing the ray count. Returns false if none.
+    public boolean intersect(double ox, double oy, double dx, double dy, double tMin, double tMax,
+                             int skip, Hit hit) {
+        return nearest(ox, oy, dx, dy, tMin, tMax, skip, true, hit);
+    }
+
+    // True if a wall other than skip blocks the open segment between the two points.
+    // Walls count from either side, so a point inside an obstacle is blocked too.
+    public boolean occluded(double x0, double y0, double x1, double y1, int skip, Hit scratch) {
+        return nearest(x0, y0, x1 - x0, y1 - y0, EPS, 1 - EPS, skip, false, scratch);
+    }
+
+    private boolean nearest(double ox, double oy, double dx, double dy, double tMin, double tMax,
+                            int skip, boolean frontOnly, Hit hit) {
+        int bx = clamp((int) Math.floor(ox / BUCKET), columns);
+        int by = clamp((int) Math.floor(oy / BUCKET), rows);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        double tDeltaX = stepX != 0 ? BUCKET / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double tDeltaY = stepY != 0 ? BUCKET / Math.abs(dy) : Double.POSITIVE_INFINITY;
+        double tNextX = stepX > 0 ? ((bx + 1) * BUCKET - ox) / dx
+            : stepX < 0 ? (bx * BUCKET - ox) / dx : Double.POSITIVE_INFINITY;
+        double tNextY = stepY > 0 ? ((by + 1) * BUCKET - oy) / dy
+            : stepY < 0 ? (by * BUCKET - oy) / dy : Double.POSITIVE_INFINITY;
+
+        double best = tMax;
+        int bestWall = -1;
+        while (true) {
+            int b = by * columns + bx;
+            for (int k=bucketStart[b]; k<bucketStart[b + 1]; k++) {
+                int w = bucketWalls[k];
+                if (w == skip) continue;
+                double t = hitWall(w, ox, oy, dx, dy, frontOnly);
+                if (t > tMin && t < best) {
+                    best = t;
+                    bestWall = w;
+                }
+            }
+            double exit = Math.min(tNextX, tNextY);
+            // Anything closer than the bucket exit cannot be beaten by later buckets
+            if (best <= exit || exit >= tMax) break;
+            if (tNextX < tNextY) {
+                bx += stepX;
+                if (bx < 0 || bx >= columns) break;
+                tNextX += tDeltaX;
+            } else {
+                by += stepY;
+                if (by < 0 || by >= rows) break;
+                tNextY += tDeltaY;
+            }
+        }
+        if (bestWall < 0) return false;
+        hit.t = best;
+        hit.wall = bestWall;
+        return true;
+    }
+
+    // Ray parameter where it crosses wall w (from the air side if frontOnly), or NaN
+    private double hitWall(int w, double ox, double oy, double dx, double dy, boolean frontOnly) {
+        boolean vertical = walls.getAxis(w) == Walls.VERTICAL;
+        double d = vertical ? dx : dy;
+        if (frontOnly ? d * walls.getFacing(w) >= 0 : d == 0) return Double.NaN;
+        double t = (walls.getPosition(w) - (vertical ? ox : oy)) / d;
+        double along = vertical ? oy + t * dy : ox + t * dx;
+        if (along < walls.getFrom(w) - EPS || along > walls.getTo(w) + EPS) return Double.NaN;
+        return t;
+    }
+
+    private static int clamp(int v, int n) {
+        return v < 0 ? 0 : v >= n ? n - 1 : v;
+    }
+
+    public Walls getWalls() {
+        return walls;
+    }
+}
@@ -0,0 +1,189 @@
+package jay.audio.roomaudio.geometric;
+
+import java.util.Arrays;
+
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.Material;
+import jay.audio.roomaudio.model.MaterialTable;
+
+// The room's obstacle grid as axis-aligned wall segments, one per run of cell
+// faces between a solid cell and an air cell, merged along the face while the
+// material and facing stay the same. Stored as parallel arrays.
+//
+// Coordinates are in cells with cell (i, j) covering [i, i+1) x [j, j+1), so
+// walls lie on integer lines. As in the FDTD engines, the outermost ring of
+// cells is solid and made of the boundary material (concrete).
+public class Walls {
+    public static final byte VERTICAL = 0;   // x = position, spanning y in [from, to]
+    public static final byte HORIZONTAL = 1; // y = position, spanning x in [from, to]
+
+    private int count = 0;
+    private byte[] axis = new byte[64];
+    private double[] position = new double[64];
+    private double[] from = new double[64];
+    private double[] to = new double[64];
+    // +1 if the air side is towards larger coordinates, -1 otherwise
+    private byte[] facing = new byte[64];
+    private int[] material = new int[64];
+    // Pressure reflection factor of the wall, see fromScene
+    private double[] reflection = new double[64];
+
+    private final int width, height;
+
+    private Walls(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // Walls of the scene's current room. Realism mode reflects with each material's
+    // reflection value; ideal mode walls are lossless and pressure-releasing (factor -1),
+    // like the p=0 obstacle cells of the FDTD engines.
+    public static Walls fromScene(Scene scene) {
+        CellProperties cells = scene.getCells();
+        MaterialTable table = scene.getMaterialTable();
+        boolean realism = scene.isRealismMode();
+        int w = cells.getWidth(), h = cells.getHeight();
+        Walls walls = new Walls(w, h);
+        int boundary = Material.CONCRETE.getId();
+
+        // Faces between columns i-1 and i
+        for (int i=1; i<w; i++) {
+            int runStart = -1, runFacing = 0, runMaterial = 0;
+            for (int j=0; j<=h; j++) {
+                int f = 0, m = 0;
+                if (j < h) {
+                    boolean left = isSolid(cells, i-1, j), right = isSolid(cells, i, j);
+                    if (left != right) {
+                        f = left ? 1 : -1;
+                        m = materialOf(cells, left ? i-1 : i, j, boundary);
+                    }
+                }
+                if (runStart >= 0 && (f != runFacing || m != runMaterial)) {
+                    walls.add(VERTICAL, i, runStart, j, runFacing, runMaterial, table, realism);
+                    runStart = -1;
+                }
+                if (f != 0 && runStart < 0) {
+                    runStart = j;
+                    runFacing = f;
+                    runMaterial = m;
+                }
+            }
+        }
+        // Faces between rows j-1 and j
+        for (int j=1; j<h; j++) {
+            int runStart = -1, runFacing = 0, runMaterial = 0;
+            for (int i=0; i<=w; i++) {
+                int f = 0, m = 0;
+                if (i < w) {
+                    boolean above = isSolid(cells, i, j-1), below = isSolid(cells, i, j);
+                    if (above != below) {
+                        f = above ? 1 : -1;
+                        m = materialOf(cells, i, above ? j-1 : j, boundary);
+                    }
+                }
+                if (runStart >= 0 && (f != runFacing || m != runMaterial)) {
+                    walls.add(HORIZONTAL, j, runStart, i, runFacing, runMaterial, table, realism);
+                    runStart = -1;
+                }
+                if (f != 0 && runStart < 0) {
+                    runStart = i;
+                    runFacing = f;
+                    runMaterial = m;
+                }
+            }
+        }
+        return walls;
+    }
+
+    private static boolean isSolid(CellProperties cells, int i, int j) {
+        return i == 0 || j == 0 || i == cells.getWidth()-1 || j == cells.getHeight()-1 || cells.isObstacle(i, j);
+    }
+
+    private static int materialOf(CellProperties cells, int i, int j, int boundary) {
+        if (i == 0 || j == 0 || i == cells.getWidth()-1 || j == cells.getHeight()-1) return boundary;
+        return cells.getMaterial(i, j);
+    }
+
+    private void add(byte a, double pos, double start, double end, int f, int m, MaterialTable table, boolean realism) {
+        if (count == axis.length) grow();
+        axis[count] = a;
+        position[count] = pos;
+        from[count] = start;
+        to[count] = end;
+        facing[count] = (byte) f;
+        material[count] = m;
+        reflection[count] = realism ? table.getReflection(m) : -1.0;
+        count++;
+    }
+
+    private void grow() {
+        int n = axis.length * 2;
+        axis = Arrays.copyOf(axis, n);
+        position = Arrays.copyOf(position, n);
+        from = Arrays.copyOf(from, n);
+        to = Arrays.copyOf(to, n);
+        facing = Arrays.copyOf(facing, n);
+        material = Arrays.copyOf(material, n);
+        reflection = Arrays.copyOf(reflection, n);
+    }
+
+    // Mirror image of x (VERTICAL) or y (HORIZONTAL) across wall w
+    public double mirror(int w, double coordinate) {
+        return 2 * position[w] - coordinate;
+    }
+
+    // True if (x, y) is strictly on the air side of wall w's line
+    public boolean inFront(int w, double x, double y) {
+        double c = axis[w] == VERTICAL ? x : y;
+        return (c - position[w]) * facing[w] > 0;
+    }
+
+    // Distance from (x, y) to the nearest point of wall w
+    public double distance(int w, double x, double y) {
+        double along = axis[w] == VERTICAL ? y : x;
+        double across = (axis[w] == VERTICAL ? x : y) - position[w];
+        double outside = along < from[w] ? from[w] - along : along > to[w] ? along - to[w] : 0.0;
+        return Math.sqrt(across * across + outside * outside);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte getAxis(int w) {
+        return axis[w];
+    }
+
+    public double getPosition(int w) {
+        return position[w];
+    }
+
+    public double getFrom(int w) {
+        return from[w];
+    }
+
+    public double getTo(int w) {
+        return to[w];
+    }
+
+    public int getFacing(int w) {
+        return facing[w];
+    }
+
+    public int getMaterial(int w) {
+        return material[w];
+    }
+
+    public double getReflection(int w) {
+        return reflection[w];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,194 @@
+package jay.audio.roomaudio.hybrid;
+
+import java.util.List;
+
+import jay.audio.roomaudio.acoustics.Crossover;
+import jay.audio.roomaudio.acoustics.Resampler;
+import jay.audio.roomaudio.engine.EngineType;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.engine.StepEngine;
+import jay.audio.roomaudio.geometric.GeometricRoom;
+import jay.audio.roomaudio.geometric.ImageSourceEngine;
+import jay.audio.roomaudio.geometric.ImpulseResponse;
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.model.RoomLayout;
+import jay.audio.roomaudio.source.SourceSet;
+import jay.audio.roomaudio.source.Waveform;
+
+// Full-band impulse responses for rooms too large to step at a fine dx. The
+// wave solver runs on a grid coarsened by an integer factor, so it has
+// factor^2 fewer cells and takes factor times fewer steps, and only its low
+// band is kept: below the crossover, where the coarse grid still has about
+// ten cells per wavelength. The high band comes from the image-source engine
+// on the full-resolution walls. A Linkwitz-Riley crossover splits the two
+// and they are summed at the fine solver's sample rate.
+//
+// The two methods use different units, so at each probe the high band is
+// scaled to match the wave solver below the crossover over the direct sound
+// (up to two crossover periods after the first geometric arrival).
+public class HybridEngine {
+    // Coarse cells per shortest wavelength kept from the wave solver
+    private static final double CELLS_PER_WAVELENGTH = 10;
+
+    private final int threads;
+    private EngineType engineType = EngineType.PARALLEL;
+    private int order = 3;
+    // Hz; NaN picks it from the coarse cell size
+    private double crossover = Double.NaN;
+
+    private double crossoverUsed;
+    private double[] levelGains;
+    private long waveNanos, geometricNanos;
+
+    public HybridEngine(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // A copy of the scene on a grid factor times coarser, with the same materials, mode
+    // and sources (as impulses). Call on the thread that owns the scene.
+    public static Scene coarsen(Scene scene, int factor) {
+        if (factor < 1) throw new IllegalArgumentException("Coarsening factor must be >= 1: " + factor);
+        int width = (scene.getWidth() + factor - 1) / factor;
+        int height = (scene.getHeight() + factor - 1) / factor;
+        Scene coarse = new Scene(width, height, scene.getDx() * factor);
+        // Scaling down keeps every obstacle, so thin walls stay closed
+        coarse.applyRoom(new RoomLayout(scene.getCells(), scene.getDx(), null));
+        coarse.setMaterialTable(scene.getMaterialTable());
+        coarse.setRealismMode(scene.isRealismMode());
+
+        SourceSet sources = scene.getSources();
+        for (int s=0; s<sources.size(); s++) {
+            int x = sources.getX(s) / factor, y = sources.getY(s) / factor;
+            checkOpen(coarse, x, y, "Source " + sources.getX(s) + "," + sources.getY(s));
+            // A pulse in a coarse cell radiates about factor times the pressure of a fine one
+            coarse.getSources().add(x, y, Waveform.impulse(), sources.getGain(s) / factor);
+        }
+        return coarse;
+    }
+
+    private static void checkOpen(Scene coarse, int x, int y, String what) {
+        // The outermost ring of cells is the boundary wall
+        boolean ring = x == 0 || y == 0 || x == coarse.getWidth() - 1 || y == coarse.getHeight() - 1;
+        if (ring || CellProperties.isObstacle(coarse.getCells().get(x, y))) {
+            throw new IllegalArgumentException(what + " is inside a wall on the coarse grid; use a smaller factor");
+        }
+    }
+
+    // Responses for each probe (fine cell coordinates), [probe][sample] at the fine
+    // grid's dt, from the room captured at full resolution and its coarsened scene
+    public double[][] compute(GeometricRoom room, Scene coarse, List<int[]> probes, double duration) {
+        double dt = room.getDt();
+        int length = (int) Math.ceil(duration / dt) + 1;
+        int factor = (int) Math.round(coarse.getDx() / room.getDx());
+        crossoverUsed = Double.isNaN(crossover)
+            ? room.getSpeedOfSound() / (CELLS_PER_WAVELENGTH * coarse.getDx()) : crossover;
+        Crossover filter = new Crossover(crossoverUsed, 1.0 / dt);
+
+        long start = System.nanoTime();
+        double[][] wave = waveResponses(coarse, probes, factor, duration, dt, length);
+        waveNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ImpulseResponse[] geometric;
+        try (ImageSourceEngine engine = new ImageSourceEngine(threads)) {
+            engine.setMaxOrder(order);
+            geometric = engine.compute(room, probes, duration);
+        }
+        geometricNanos = System.nanoTime() - start;
+
+        double[][] out = new double[probes.size()][];
+        levelGains = new double[probes.size()];
+        double[][] high = new double[probes.size()][];
+        double gainSum = 0;
+        int matched = 0;
+        for (int p=0; p<out.length; p++) {
+            double[] samples = geometric[p].getSamples();
+            high[p] = filter.highPass(samples);
+            out[p] = filter.lowPass(wave[p]);
+            levelGains[p] = Double.NaN;
+            if (geometric[p].getArrivalCount() == 0) continue;
+            // Both low bands over the direct sound
+            double[] geometricLow = filter.lowPass(samples);
+            int end = Math.min(length, (int) Math.ceil((geometric[p].getArrivalTime(0) + 2 / crossoverUsed) / dt));
+            double waveEnergy = 0, geometricEnergy = 0;
+            for (int n=0; n<end; n++) {
+                waveEnergy += out[p][n] * out[p][n];
+                geometricEnergy += geometricLow[n] * geometricLow[n];
+            }
+            if (waveEnergy > 0 && geometricEnergy > 0) {
+                levelGains[p] = Math.sqrt(waveEnergy / geometricEnergy);
+                gainSum += levelGains[p];
+                matched++;
+            }
+        }
+        // Probes without a usable direct sound take the average level
+        double fallback = matched > 0 ? gainSum / matched : 1.0;
+        for (int p=0; p<out.length; p++) {
+            if (Double.isNaN(levelGains[p])) levelGains[p] = fallback;
+            for (int n=0; n<length; n++) out[p][n] += levelGains[p] * high[p][n];
+        }
+        return out;
+    }
+
+    // Steps the coarse grid and resamples each probe's series to the fine rate
+    private double[][] waveResponses(Scene coarse, List<int[]> probes, int factor, double duration,
+                                     double dt, int length) {
+        int[][] cells = new int[probes.size()][];
+        for (int p=0; p<cells.length; p++) {
+            int[] xy = probes.get(p);
+            cells[p] = new int[] {Math.min(xy[0] / factor, coarse.getWidth() - 1),
+                                  Math.min(xy[1] / factor, coarse.getHeight() - 1)};
+            checkOpen(coarse, cells[p][0], cells[p][1], "Probe " + xy[0] + "," + xy[1]);
+        }
+        int steps = (int) Math.ceil(duration / coarse.getDt()) + 1;
+        // Sample n + 1 is the field after step n, as in HeadlessRunner's probes.csv
+        float[][] series = new float[probes.size()][steps + 1];
+        try (StepEngine engine = engineType.create(coarse.getWidth(), coarse.getHeight())) {
+            for (int n=0; n<steps; n++) {
+                engine.step(coarse);
+                for (int p=0; p<cells.length; p++) {
+                    series[p][n + 1] = (float) engine.sample(cells[p][0], cells[p][1]);
+                }
+            }
+        }
+        double[][] out = new double[probes.size()][length];
+        for (int p=0; p<out.length; p++) {
+            float[] resampled = Resampler.resample(series[p], 1.0 / coarse.getDt(), 1.0 / dt);
+            for (int n=0; n<Math.min(length, resampled.length); n++) out[p][n] = resampled[n];
+        }
+        return out;
+    }
+
+    public void setEngineType(EngineType engineType) {
+        this.engineType = engineType;
+    }
+
+    // Highest image-source order for the high band
+    public void setOrder(int order) {
+        if (order < 0) throw new IllegalArgumentException("Order must be >= 0: " + order);
+        this.order = order;
+    }
+
+    // In Hz, or NaN for the frequency whose wavelength is ten coarse cells
+    public void setCrossover(double crossover) {
+        this.crossover = crossover;
+    }
+
+    // Crossover frequency of the last compute()
+    public double getCrossoverUsed() {
+        return crossoverUsed;
+    }
+
+    // Scale applied to each probe's high band by the last compute()
+    public double[] getLevelGains() {
+        return levelGains;
+    }
+
+    public long getWaveNanos() {
+        return waveNanos;
+    }
+
+    public long getGeometricNanos() {
+        return geometricNanos;
+    }
+}
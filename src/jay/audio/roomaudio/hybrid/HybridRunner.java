@@ -0,0 +1,120 @@
+package jay.audio.roomaudio.hybrid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import jay.audio.roomaudio.batch.BatchRun;
+import jay.audio.roomaudio.batch.RunConfig;
+import jay.audio.roomaudio.engine.RowBands;
+import jay.audio.roomaudio.engine.Scene;
+import jay.audio.roomaudio.geometric.GeometricRoom;
+
+// Command-line entry point for the hybrid engine. Takes the headless runner's
+// room, size, mode, materials, engine, source, probe, duration and output
+// options (--size is the fine grid), plus its own:
+//   --coarsen K      wave solver grid K times coarser (default 4)
+//   --crossover HZ   split frequency (default: wavelength of ten coarse cells)
+//   --order N        highest image-source order for the high band (default 3)
+//
+// Writes to the output directory:
+//   probes.csv  full-band impulse response at every probe, at the fine grid's dt
+//   stats.txt   settings, grid sizes, crossover, level gains and timing
+public class HybridRunner {
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            printUsage();
+            return;
+        }
+        try {
+            int factor = 4;
+            double crossover = Double.NaN;
+            int order = 3;
+            List<String> rest = new ArrayList<>();
+            for (int a=0; a<args.length; a++) {
+                if (args[a].equals("--coarsen") && a + 1 < args.length) {
+                    factor = Integer.parseInt(args[++a]);
+                } else if (args[a].equals("--crossover") && a + 1 < args.length) {
+                    crossover = Double.parseDouble(args[++a]);
+                } else if (args[a].equals("--order") && a + 1 < args.length) {
+                    order = Integer.parseInt(args[++a]);
+                } else {
+                    rest.add(args[a]);
+                }
+            }
+            RunConfig config = RunConfig.parse(rest.toArray(new String[0]));
+            Scene scene = BatchRun.createScene(config, null);
+            for (int[] xy : config.getProbes()) BatchRun.checkInside(scene, xy, "Probe");
+            double duration = config.resolveSteps(scene.getDt()) * scene.getDt();
+
+            long start = System.nanoTime();
+            Scene coarse = HybridEngine.coarsen(scene, factor);
+            GeometricRoom room = GeometricRoom.capture(scene);
+            HybridEngine engine = new HybridEngine(RowBands.defaultThreads());
+            engine.setEngineType(config.getEngineType());
+            engine.setOrder(order);
+            engine.setCrossover(crossover);
+            double[][] responses = engine.compute(room, coarse, config.getProbes(), duration);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            File dir = config.getOutputDir();
+            if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir.getPath());
+            writeResponses(config.getProbes(), responses, scene.getDt(), new File(dir, "probes.csv"));
+            try (PrintWriter out = new PrintWriter(new File(dir, "stats.txt"))) {
+                out.println("room=" + (config.getRoom() == null ? "" : config.getRoom().getPath()));
+                out.println("width=" + config.getWidth());
+                out.println("height=" + config.getHeight());
+                out.println("mode=" + (config.isRealismMode() ? "realism" : "ideal"));
+                out.println("method=hybrid");
+                out.println("engine=" + config.getEngineType());
+                out.println("coarsen=" + factor);
+                out.println("coarseWidth=" + coarse.getWidth());
+                out.println("coarseHeight=" + coarse.getHeight());
+                out.println("crossover=" + engine.getCrossoverUsed());
+                out.println("order=" + order);
+                out.println("dt=" + scene.getDt());
+                out.println("coarseDt=" + coarse.getDt());
+                out.println("simulatedSeconds=" + duration);
+                out.println("waveSeconds=" + engine.getWaveNanos() / 1e9);
+                out.println("geometricSeconds=" + engine.getGeometricNanos() / 1e9);
+                out.println("wallSeconds=" + seconds);
+                for (int p=0; p<responses.length; p++) {
+                    int[] xy = config.getProbes().get(p);
+                    out.println("levelGain.p_" + xy[0] + "_" + xy[1] + "=" + engine.getLevelGains()[p]);
+                }
+            }
+            System.out.printf("%dx%d coarse grid, crossover %.1f Hz, done in %.1f ms, results in %s%n",
+                coarse.getWidth(), coarse.getHeight(), engine.getCrossoverUsed(), seconds * 1e3, dir.getPath());
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: HybridRunner [--coarsen K] [--crossover HZ] [--order N]");
+        System.err.println("       [--room FILE] [--size WxH] [--mode ideal|realism] [--materials ID=R/D,...]");
+        System.err.println("       [--engine SERIAL|PARALLEL|VECTOR|FLOAT|TILED] [--steps N | --duration SECONDS]");
+        System.err.println("       [--source X,Y]... [--array X0,Y0,X1,Y1,N]... [--probe X,Y]... [--out DIR]");
+    }
+
+    private static void writeResponses(List<int[]> probes, double[][] responses, double dt, File file)
+            throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            StringBuilder header = new StringBuilder("step,time");
+            for (int[] xy : probes) header.append(",p_").append(xy[0]).append('_').append(xy[1]);
+            out.println(header);
+            if (responses.length == 0) return;
+            for (int n=0; n<responses[0].length; n++) {
+                StringBuilder row = new StringBuilder();
+                row.append(n).append(',').append(n * dt);
+                for (double[] r : responses) row.append(',').append(r[n]);
+                out.println(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package jay.audio.roomaudio.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import jay.audio.roomaudio.model.RoomFile;
+import jay.audio.roomaudio.model.RoomLayout;
+
+// Converts text rooms to the binary format.
+//
+// Usage: RoomConverter IN.txt|DIR [OUT.room|DIR] [--cell-size METRES]
+//
+// With a directory, every .txt room in it is converted next to the original.
+// Files that fail to parse are reported and skipped.
+public class RoomConverter {
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        File in = null, out = null;
+        // 0 leaves the cell size unset, as in the text room
+        double cellSize = 0;
+        for (int a=0; a<args.length; a++) {
+            if (args[a].equals("--cell-size")) {
+                if (a + 1 == args.length) {
+                    usage();
+                    System.exit(1);
+                }
+                cellSize = Double.parseDouble(args[++a]);
+            } else if (in == null) {
+                in = new File(args[a]);
+            } else {
+                out = new File(args[a]);
+            }
+        }
+        if (in == null) {
+            usage();
+            System.exit(1);
+        }
+
+        boolean failed = false;
+        if (in.isDirectory()) {
+            File dir = out == null ? in : out;
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                System.err.println("Cannot create " + dir.getPath());
+                System.exit(1);
+            }
+            File[] files = in.listFiles((d, name) -> name.endsWith(".txt"));
+            if (files == null) files = new File[0];
+            for (File file : files) {
+                failed |= !convert(file, new File(dir, binaryName(file)), cellSize);
+            }
+        } else {
+            failed = !convert(in, out == null ? new File(in.getParentFile(), binaryName(in)) : out, cellSize);
+        }
+        if (failed) System.exit(1);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: RoomConverter IN.txt|DIR [OUT.room|DIR] [--cell-size METRES]");
+    }
+
+    private static String binaryName(File text) {
+        String name = text.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot < 0 ? name : name.substring(0, dot)) + ".room";
+    }
+
+    private static boolean convert(File in, File out, double cellSize) {
+        try {
+            long start = System.nanoTime();
+            RoomLayout text = RoomLayout.loadText(in);
+            RoomLayout layout = new RoomLayout(text.getCells(), cellSize, null);
+            RoomFile.write(layout, out);
+            System.out.printf("%s -> %s (%dx%d, %d -> %d bytes, %.0f ms)%n", in.getName(), out.getName(),
+                layout.getWidth(), layout.getHeight(), in.length(), out.length(), (System.nanoTime() - start) / 1e6);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println(in.getName() + " skipped: " + ex.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package jay.audio.roomaudio.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+// Reads a WAV file (8/16/24/32-bit PCM or 32-bit float) into one float array
+// per channel, scaled to [-1, 1] for PCM. Raw float32 files (.f32, as written
+// by WavWriter in raw mode) are read as mono at a caller-supplied rate.
+public class WavReader {
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final int sampleRate;
+    private final float[][] channels;
+
+    private WavReader(int sampleRate, float[][] channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    public static WavReader readRaw(File file, int sampleRate) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        float[] samples = new float[buf.remaining() / 4];
+        buf.asFloatBuffer().get(samples);
+        return new WavReader(sampleRate, new float[][] {samples});
+    }
+
+    public static WavReader read(File file) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < 12 || buf.getInt(0) != 0x46464952 || buf.getInt(8) != 0x45564157) {
+            throw new IOException("Not a WAV file: " + file.getName());
+        }
+
+        int format = -1, channelCount = 0, rate = 0, bits = 0;
+        int pos = 12;
+        while (pos + 8 <= buf.limit()) {
+            int id = buf.getInt(pos);
+            int size = buf.getInt(pos + 4);
+            int body = pos + 8;
+            if (id == 0x20746d66) { // "fmt "
+                format = buf.getShort(body) & 0xFFFF;
+                channelCount = buf.getShort(body + 2);
+                rate = buf.getInt(body + 4);
+                bits = buf.getShort(body + 14);
+                if (format == WAVE_FORMAT_EXTENSIBLE && size >= 26) {
+                    format = buf.getShort(body + 24) & 0xFFFF;
+                }
+            } else if (id == 0x61746164) { // "data"
+                if (format < 0) throw new IOException("WAV data before format chunk");
+                // Streams that were never finalized report 0; take the rest of the file
+                int length = size <= 0 || body + size > buf.limit() ? buf.limit() - body : size;
+                return new WavReader(rate, decode(buf, body, length, format, channelCount, bits));
+            }
+            pos = body + size + (size & 1);
+        }
+        throw new IOException("WAV file has no data chunk: " + file.getName());
+    }
+
+    private static float[][] decode(ByteBuffer buf, int start, int length, int format, int channelCount, int bits)
+            throws IOException {
+        int bytes = bits / 8;
+        if (channelCount <= 0 || bytes <= 0) throw new IOException("Unsupported WAV layout");
+        int frames = length / (bytes * channelCount);
+        float[][] out = new float[channelCount][frames];
+        int pos = start;
+        for (int f=0; f<frames; f++) {
+            for (int c=0; c<channelCount; c++, pos+=bytes) {
+                out[c][f] = sample(buf, pos, format, bits);
+            }
+        }
+        return out;
+    }
+
+    private static float sample(ByteBuffer buf, int pos, int format, int bits) throws IOException {
+        if (format == WAVE_FORMAT_IEEE_FLOAT && bits == 32) return buf.getFloat(pos);
+        if (format != WAVE_FORMAT_PCM) throw new IOException("Unsupported WAV format " + format + "/" + bits + " bit");
+        switch (bits) {
+            case 8: return ((buf.get(pos) & 0xFF) - 128) / 128f;
+            case 16: return buf.getShort(pos) / 32768f;
+            case 24: {
+                int v = (buf.get(pos) & 0xFF) | (buf.get(pos + 1) & 0xFF) << 8 | buf.get(pos + 2) << 16;
+                return v / 8388608f;
+            }
+            case 32: return buf.getInt(pos) / 2147483648f;
+            default: throw new IOException("Unsupported PCM width " + bits);
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public float[][] getChannels() {
+        return channels;
+    }
+}
@@ -0,0 +1,95 @@
+package jay.audio.roomaudio.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Streams 32-bit float samples to a file, either as a WAV (IEEE float,
+// interleaved channels) or as raw little-endian float32. The WAV header is
+// written up front and its sizes patched in on close, so the length need not
+// be known in advance. As non-PCM formats require, the format chunk carries
+// cbSize and a fact chunk gives the length in frames.
+public class WavWriter implements AutoCloseable {
+    // RIFF header, 18-byte fmt chunk, fact chunk and data chunk header
+    private static final int HEADER_BYTES = 58;
+    private static final int FACT_LENGTH_OFFSET = 46;
+    private static final int DATA_SIZE_OFFSET = 54;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+
+    private final FileChannel channel;
+    private final boolean raw;
+    private final int channels;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private long dataBytes = 0;
+
+    public WavWriter(File file, int sampleRate, int channels, boolean raw) throws IOException {
+        this.raw = raw;
+        this.channels = channels;
+        this.channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (!raw) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(new byte[] {'R', 'I', 'F', 'F'}).putInt(0).put(new byte[] {'W', 'A', 'V', 'E'});
+            header.put(new byte[] {'f', 'm', 't', ' '}).putInt(18)
+                .putShort((short) WAVE_FORMAT_IEEE_FLOAT).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * channels * 4)
+                .putShort((short) (channels * 4)).putShort((short) 32)
+                .putShort((short) 0); // cbSize: no extension
+            header.put(new byte[] {'f', 'a', 'c', 't'}).putInt(4).putInt(0);
+            header.put(new byte[] {'d', 'a', 't', 'a'}).putInt(0);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+        }
+    }
+
+    public void write(float[] samples, int count) throws IOException {
+        for (int i=0; i<count; i++) {
+            if (buffer.remaining() < 4) flush();
+            buffer.putFloat(samples[i]);
+        }
+        dataBytes += 4L * count;
+    }
+
+    // Writes whole channels, interleaving them frame by frame
+    public void writeChannels(float[][] channels) throws IOException {
+        int frames = channels[0].length;
+        for (int f=0; f<frames; f++) {
+            for (float[] channel : channels) {
+                if (buffer.remaining() < 4) flush();
+                buffer.putFloat(channel[f]);
+            }
+        }
+        dataBytes += 4L * frames * channels.length;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (!raw) {
+                // WAV sizes are 32-bit; very long captures are clamped
+                int data = (int) Math.min(dataBytes, Integer.MAX_VALUE - HEADER_BYTES);
+                ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                size.putInt(0, data + HEADER_BYTES - 8);
+                channel.write(size, 4);
+                size.clear();
+                size.putInt(0, data / (4 * channels));
+                channel.write(size, FACT_LENGTH_OFFSET);
+                size.clear();
+                size.putInt(0, data);
+                channel.write(size, DATA_SIZE_OFFSET);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package jay.audio.roomaudio.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of durations in nanoseconds: values below 16 get their
+// own bucket, larger values fall into 8 linear sub-buckets per power of two,
+// so any recorded value is reported within 12.5%.
+//
+// Single writer: record() is called by one thread only and never blocks or
+// allocates. Any thread may take a snapshot; rates and percentiles over an
+// interval come from subtracting two snapshots.
+public class LatencyHistogram {
+    private static final int LINEAR = 16;
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = LINEAR + (63 - 4) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    // Records the same value n times, e.g. the average step time of a block of n steps
+    public void record(long nanos, long n) {
+        if (n <= 0) return;
+        if (nanos < 0) nanos = 0;
+        int b = bucket(nanos);
+        // Only this thread writes, so ordered stores are enough
+        counts.lazySet(b, counts.get(b) + n);
+        sum.lazySet(sum.get() + nanos * n);
+        if (nanos > max.get()) max.lazySet(nanos);
+        count.lazySet(count.get() + n);
+    }
+
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    static int bucket(long v) {
+        if (v < LINEAR) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return LINEAR + (exp - 4) * SUB + sub;
+    }
+
+    // Midpoint of the bucket's value range
+    static long value(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int exp = (bucket - LINEAR) / SUB + 4;
+        int sub = (bucket - LINEAR) % SUB;
+        long lower = (long) (SUB + sub) << (exp - SUB_BITS);
+        long width = 1L << (exp - SUB_BITS);
+        return lower + width / 2;
+    }
+
+    public Snapshot snapshot() {
+        // Count first: a concurrent record may make the buckets sum to slightly more
+        long n = count.get();
+        long[] copy = new long[BUCKETS];
+        for (int b=0; b<BUCKETS; b++) copy[b] = counts.get(b);
+        return new Snapshot(copy, n, sum.get(), max.get());
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        // What was recorded after earlier was taken; the maximum stays the all-time one
+        public Snapshot since(Snapshot earlier) {
+            long[] diff = new long[counts.length];
+            for (int b=0; b<diff.length; b++) diff[b] = counts[b] - earlier.counts[b];
+            return new Snapshot(diff, count - earlier.count, sum - earlier.sum, max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        // Approximate value below which a fraction q (0..1) of the recorded values lie
+        public long percentile(double q) {
+            long total = 0;
+            for (long c : counts) total += c;
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int b=0; b<counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) return Math.min(value(b), max);
+            }
+            return max;
+        }
+    }
+}
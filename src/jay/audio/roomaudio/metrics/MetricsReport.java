@@ -0,0 +1,131 @@
+package jay.audio.roomaudio.metrics;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Rates and latency distributions between two snapshots of the same SimulationMetrics.
+public class MetricsReport {
+    private final double wallSeconds;
+    private final long steps;
+    private final long frames;
+    private final long rendered;
+    private final long droppedSamples;
+    private final double stepsPerSecond;
+    private final double cellsPerSecond;
+    private final double realTimeFactor;
+    // NaN if the JVM cannot report allocation
+    private final double allocationRate;
+    private final LatencyHistogram.Snapshot stepLatency;
+    private final LatencyHistogram.Snapshot renderTime;
+
+    public MetricsReport(SimulationMetrics.Snapshot from, SimulationMetrics.Snapshot to) {
+        wallSeconds = Math.max(1e-9, (to.nanos - from.nanos) / 1e9);
+        steps = to.steps - from.steps;
+        frames = to.frames - from.frames;
+        rendered = to.rendered - from.rendered;
+        droppedSamples = to.droppedSamples - from.droppedSamples;
+        stepsPerSecond = steps / wallSeconds;
+        cellsPerSecond = stepsPerSecond * to.cellsPerStep;
+        realTimeFactor = steps * to.dt / wallSeconds;
+        long allocated = to.allocatedBytes - from.allocatedBytes;
+        // Threads that ended in between take their allocations with them, so a drop means unknown
+        allocationRate = from.allocatedBytes < 0 || allocated < 0 ? Double.NaN : allocated / wallSeconds;
+        stepLatency = to.stepLatency.since(from.stepLatency);
+        renderTime = to.renderTime.since(from.renderTime);
+    }
+
+    public double getWallSeconds() {
+        return wallSeconds;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getRenderedFrames() {
+        return rendered;
+    }
+
+    // Published frames that were replaced before the view painted them
+    public long getDroppedFrames() {
+        return Math.max(0, frames - rendered);
+    }
+
+    // Probe samples lost because the recorder fell behind
+    public long getDroppedProbeSamples() {
+        return droppedSamples;
+    }
+
+    public double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    public double getCellsPerSecond() {
+        return cellsPerSecond;
+    }
+
+    public double getStepsPerFrame() {
+        return frames == 0 ? 0.0 : (double) steps / frames;
+    }
+
+    public double getRealTimeFactor() {
+        return realTimeFactor;
+    }
+
+    // Bytes per second
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    // Nanoseconds per step
+    public LatencyHistogram.Snapshot getStepLatency() {
+        return stepLatency;
+    }
+
+    // Nanoseconds per paint
+    public LatencyHistogram.Snapshot getRenderTime() {
+        return renderTime;
+    }
+
+    // key=value lines, like the headless runner's stats.txt
+    public void write(PrintWriter out) {
+        out.println("wallSeconds=" + wallSeconds);
+        out.println("steps=" + steps);
+        out.println("stepsPerSecond=" + stepsPerSecond);
+        out.println("cellsPerSecond=" + cellsPerSecond);
+        out.println("realTimeFactor=" + realTimeFactor);
+        out.println("allocationBytesPerSecond=" + allocationRate);
+        out.println("stepLatencyMeanNanos=" + stepLatency.getMean());
+        out.println("stepLatencyP50Nanos=" + stepLatency.percentile(0.50));
+        out.println("stepLatencyP90Nanos=" + stepLatency.percentile(0.90));
+        out.println("stepLatencyP99Nanos=" + stepLatency.percentile(0.99));
+        out.println("stepLatencyMaxNanos=" + stepLatency.getMax());
+        out.println("frames=" + frames);
+        out.println("stepsPerFrame=" + getStepsPerFrame());
+        out.println("renderedFrames=" + rendered);
+        out.println("droppedFrames=" + getDroppedFrames());
+        out.println("droppedProbeSamples=" + droppedSamples);
+        out.println("renderMeanNanos=" + renderTime.getMean());
+        out.println("renderP99Nanos=" + renderTime.percentile(0.99));
+    }
+
+    // Short lines for an on-screen overlay
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%.0f steps/s  %.1f Mcells/s", stepsPerSecond, cellsPerSecond / 1e6));
+        lines.add(String.format("step p50 %.1f us  p99 %.1f us", stepLatency.percentile(0.50) / 1e3,
+            stepLatency.percentile(0.99) / 1e3));
+        lines.add(String.format("%.1f steps/frame  realtime x%.4f", getStepsPerFrame(), realTimeFactor));
+        lines.add(String.format("render %.2f ms  p99 %.2f ms  dropped %d", renderTime.getMean() / 1e6,
+            renderTime.percentile(0.99) / 1e6, getDroppedFrames()));
+        lines.add(Double.isNaN(allocationRate) ? "alloc n/a"
+            : String.format("alloc %.1f MB/s", allocationRate / 1e6));
+        if (droppedSamples > 0) lines.add("WARNING: " + droppedSamples + " probe samples dropped");
+        return lines;
+    }
+}
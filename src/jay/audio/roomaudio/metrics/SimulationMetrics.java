@@ -0,0 +1,206 @@
+package jay.audio.roomaudio.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Counters for the hot paths: solver steps and frame publishing are recorded
+// by the simulation thread, rendering by the paint thread. Each counter has a
+// single writer, so recording is a few plain stores per call (once per
+// advance or frame, never per cell) with no locks and no allocation.
+//
+// Readers take snapshots and compare them: MetricsReport turns two snapshots
+// into rates. current() keeps a rolling one-second window for the JMX bean
+// and the HUD; only readers synchronize on it.
+public class SimulationMetrics implements SimulationMetricsMBean {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final LatencyHistogram stepLatency = new LatencyHistogram();
+    private final LatencyHistogram renderTime = new LatencyHistogram();
+
+    // Simulation thread
+    private volatile long steps = 0;
+    private volatile long frames = 0;
+    // Probe samples lost because the recorder fell behind
+    private volatile long droppedSamples = 0;
+    // Paint thread
+    private volatile long rendered = 0;
+
+    private volatile long cellsPerStep = 0;
+    private volatile double dt = 0.0;
+
+    // Reader side
+    private Snapshot windowStart;
+    private MetricsReport lastWindow;
+
+    // Cells updated per step and simulated seconds per step, for the rates
+    public void setStepSize(long cellsPerStep, double dt) {
+        this.cellsPerStep = cellsPerStep;
+        this.dt = dt;
+    }
+
+    // steps solver steps that took nanos in total
+    public void recordSteps(int steps, long nanos) {
+        if (steps <= 0) return;
+        stepLatency.record(nanos / steps, steps);
+        this.steps += steps;
+    }
+
+    public void recordDroppedSamples(int samples) {
+        droppedSamples += samples;
+    }
+
+    public void recordFrame() {
+        frames++;
+    }
+
+    public void recordRender(long nanos) {
+        renderTime.record(nanos);
+        rendered++;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // The last complete one-second window, or everything so far during the first second
+    public synchronized MetricsReport current() {
+        Snapshot now = snapshot();
+        if (windowStart == null) windowStart = now;
+        if (now.nanos - windowStart.nanos >= WINDOW_NANOS) {
+            lastWindow = new MetricsReport(windowStart, now);
+            windowStart = now;
+        }
+        return lastWindow != null ? lastWindow : new MetricsReport(windowStart, now);
+    }
+
+    // Registers with the platform MBean server as
+    // jay.audio.roomaudio:type=SimulationMetrics,name=<kind>-<n>; returns the name, or null if refused
+    public ObjectName register(String kind) {
+        try {
+            ObjectName name = new ObjectName("jay.audio.roomaudio:type=SimulationMetrics,name="
+                + kind + "-" + IDS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            return name;
+        } catch (JMException ex) {
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ex) {
+            // Already gone
+        }
+    }
+
+    // Cumulative counters at one instant
+    public static class Snapshot {
+        final long nanos;
+        final long steps;
+        final long frames;
+        final long droppedSamples;
+        final long rendered;
+        final long cellsPerStep;
+        final double dt;
+        // All threads, so engine worker pools count too; -1 if the JVM cannot tell
+        final long allocatedBytes;
+        final LatencyHistogram.Snapshot stepLatency;
+        final LatencyHistogram.Snapshot renderTime;
+
+        Snapshot(SimulationMetrics metrics) {
+            nanos = System.nanoTime();
+            steps = metrics.steps;
+            frames = metrics.frames;
+            droppedSamples = metrics.droppedSamples;
+            rendered = metrics.rendered;
+            cellsPerStep = metrics.cellsPerStep;
+            dt = metrics.dt;
+            allocatedBytes = Allocation.totalAllocatedBytes();
+            stepLatency = metrics.stepLatency.snapshot();
+            renderTime = metrics.renderTime.snapshot();
+        }
+    }
+
+    // MBean attributes, over the current window
+
+    @Override
+    public long getStepCount() {
+        return steps;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public long getDroppedProbeSamples() {
+        return droppedSamples;
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        return current().getStepsPerSecond();
+    }
+
+    @Override
+    public double getCellsPerSecond() {
+        return current().getCellsPerSecond();
+    }
+
+    @Override
+    public double getStepsPerFrame() {
+        return current().getStepsPerFrame();
+    }
+
+    @Override
+    public double getRealTimeFactor() {
+        return current().getRealTimeFactor();
+    }
+
+    @Override
+    public double getAllocationBytesPerSecond() {
+        return current().getAllocationRate();
+    }
+
+    @Override
+    public double getStepLatencyMeanMicros() {
+        return current().getStepLatency().getMean() / 1e3;
+    }
+
+    @Override
+    public double getStepLatencyP50Micros() {
+        return current().getStepLatency().percentile(0.50) / 1e3;
+    }
+
+    @Override
+    public double getStepLatencyP99Micros() {
+        return current().getStepLatency().percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getStepLatencyMaxMicros() {
+        return stepLatency.snapshot().getMax() / 1e3;
+    }
+
+    @Override
+    public double getRenderMeanMillis() {
+        return current().getRenderTime().getMean() / 1e6;
+    }
+
+    @Override
+    public double getRenderP99Millis() {
+        return current().getRenderTime().percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return current().getDroppedFrames();
+    }
+}
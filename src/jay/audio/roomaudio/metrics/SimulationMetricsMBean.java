@@ -0,0 +1,38 @@
+package jay.audio.roomaudio.metrics;
+
+// JMX view of SimulationMetrics. Rates, latencies and render times cover the
+// last one-second window; the counts are totals.
+public interface SimulationMetricsMBean {
+    long getStepCount();
+
+    long getFrameCount();
+
+    long getDroppedFrames();
+
+    // Probe samples the recorder lost; non-zero means recorded files have gaps
+    long getDroppedProbeSamples();
+
+    double getStepsPerSecond();
+
+    double getCellsPerSecond();
+
+    double getStepsPerFrame();
+
+    // Simulated seconds per wall-clock second
+    double getRealTimeFactor();
+
+    double getAllocationBytesPerSecond();
+
+    double getStepLatencyMeanMicros();
+
+    double getStepLatencyP50Micros();
+
+    double getStepLatencyP99Micros();
+
+    // Since the start
+    double getStepLatencyMaxMicros();
+
+    double getRenderMeanMillis();
+
+    double getRenderP99Millis();
+}
@@ -0,0 +1,84 @@
+package jay.audio.roomaudio.model;
+
+import java.util.Arrays;
+
+// Room geometry as one byte per cell, row-major: the low 7 bits hold the
+// material ID and the top bit marks an obstacle. Material 0 is air, so a
+// zeroed store is an empty room.
+public class CellProperties {
+    public static final int OBSTACLE = 0x80;
+    public static final int MATERIAL_MASK = 0x7f;
+
+    private final int width, height;
+    private final byte[] cells;
+
+    public CellProperties(int width, int height) {
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid too large: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.cells = new byte[width * height];
+    }
+
+    public static byte pack(boolean obstacle, int material) {
+        if (material < 0 || material >= MaterialTable.SIZE) {
+            throw new IllegalArgumentException("Material ID out of range: " + material);
+        }
+        return (byte) (obstacle ? material | OBSTACLE : material);
+    }
+
+    public static boolean isObstacle(byte cell) {
+        return cell < 0;
+    }
+
+    public static int getMaterial(byte cell) {
+        return cell & MATERIAL_MASK;
+    }
+
+    public int index(int i, int j) {
+        return j * width + i;
+    }
+
+    public boolean isObstacle(int i, int j) {
+        return cells[j * width + i] < 0;
+    }
+
+    public int getMaterial(int i, int j) {
+        return cells[j * width + i] & MATERIAL_MASK;
+    }
+
+    public byte get(int i, int j) {
+        return cells[j * width + i];
+    }
+
+    public void set(int i, int j, boolean obstacle, int material) {
+        cells[j * width + i] = pack(obstacle, material);
+    }
+
+    public void set(int i, int j, byte cell) {
+        cells[j * width + i] = cell;
+    }
+
+    // Cells [i0, i1) of row j
+    public void fillRow(int j, int i0, int i1, byte cell) {
+        Arrays.fill(cells, j * width + i0, j * width + i1, cell);
+    }
+
+    public void clear() {
+        Arrays.fill(cells, (byte) 0);
+    }
+
+    // The backing array, row-major; cell (i, j) is at j*width + i
+    public byte[] getData() {
+        return cells;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
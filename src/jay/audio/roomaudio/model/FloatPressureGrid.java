@@ -0,0 +1,53 @@
+package jay.audio.roomaudio.model;
+
+import java.util.Arrays;
+
+// Single-precision counterpart of PressureGrid, with the same strided
+// row-major layout and ghost border.
+public class FloatPressureGrid {
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final float[] data;
+
+    public FloatPressureGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+        this.data = new float[stride * (height + 2)];
+    }
+
+    // Flat index of cell (i, j), where i is the column (x) and j the row (y)
+    public int index(int i, int j) {
+        return (j + 1) * stride + (i + 1);
+    }
+
+    public float get(int i, int j) {
+        return data[index(i, j)];
+    }
+
+    public void set(int i, int j, float value) {
+        data[index(i, j)] = value;
+    }
+
+    public void clear() {
+        Arrays.fill(data, 0.0f);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    // Backing array, including the ghost border
+    public float[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,48 @@
+package jay.audio.roomaudio.model;
+
+// Reflection and damping per material ID. Starts from the Material enum, and
+// individual IDs can be overridden to try other surfaces without editing rooms.
+public class MaterialTable {
+    // Material IDs take 7 bits: single digits in text rooms, up to 127 in binary rooms.
+    // IDs without a Material behave like air.
+    public static final int SIZE = 128;
+
+    private final double[] reflection = new double[SIZE];
+    private final double[] damping = new double[SIZE];
+
+    public MaterialTable() {
+        for (int id=0; id<SIZE; id++) {
+            reflection[id] = Material.fromId(id).getReflection();
+            damping[id] = Material.fromId(id).getDamping();
+        }
+    }
+
+    public MaterialTable set(int id, double reflection, double damping) {
+        if (id < 0 || id >= SIZE) throw new IllegalArgumentException("Material ID must be 0-" + (SIZE - 1) + ": " + id);
+        this.reflection[id] = reflection;
+        this.damping[id] = damping;
+        return this;
+    }
+
+    // Overrides in the form ID=REFLECTION/DAMPING, e.g. "1=0.9/0.99,3=0.5/0.95"
+    public static MaterialTable parse(String overrides) {
+        MaterialTable table = new MaterialTable();
+        if (overrides.isEmpty() || overrides.equalsIgnoreCase("default")) return table;
+        for (String entry : overrides.split(",")) {
+            String[] idValues = entry.split("=");
+            String[] values = idValues.length == 2 ? idValues[1].split("/") : new String[0];
+            if (values.length != 2) throw new IllegalArgumentException("Expected ID=REFLECTION/DAMPING: " + entry);
+            table.set(Integer.parseInt(idValues[0].trim()),
+                Double.parseDouble(values[0].trim()), Double.parseDouble(values[1].trim()));
+        }
+        return table;
+    }
+
+    public double getReflection(int id) {
+        return reflection[id];
+    }
+
+    public double getDamping(int id) {
+        return damping[id];
+    }
+}
@@ -0,0 +1,60 @@
+package jay.audio.roomaudio.model;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+
+// Pressure field in off-heap memory, with the same ghost border as
+// PressureGrid. Rows are reached through row(j) and rowOffset(j); the ghost
+// rows j = -1 and j = height are addressable too.
+public class OffHeapGrid implements AutoCloseable {
+    private final int width, height;
+    private final int stride;
+    private final OffHeapStore store;
+    private final DoubleBuffer[] chunks;
+
+    public OffHeapGrid(int width, int height, File backingDir) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+        store = new OffHeapStore(height + 2, stride * 8, backingDir);
+        chunks = new DoubleBuffer[store.getChunkCount()];
+        for (int c=0; c<chunks.length; c++) {
+            chunks[c] = store.getChunk(c).asDoubleBuffer();
+        }
+    }
+
+    // Buffer holding row j; index it from rowOffset(j) + i for column i
+    public DoubleBuffer row(int j) {
+        return chunks[store.chunkIndex(j + 1)];
+    }
+
+    // Index of cell (0, j) in row(j)
+    public int rowOffset(int j) {
+        return store.rowOffset(j + 1) / 8 + 1;
+    }
+
+    public double get(int i, int j) {
+        return row(j).get(rowOffset(j) + i);
+    }
+
+    public void set(int i, int j, double value) {
+        row(j).put(rowOffset(j) + i, value);
+    }
+
+    public void clear() {
+        store.clear();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+}
@@ -0,0 +1,143 @@
+package jay.audio.roomaudio.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+// Row-addressed memory outside the Java heap: direct buffers, or regions of a
+// memory-mapped file when a backing directory is given. A single buffer is
+// limited to 2 GB, so rows are grouped into chunks of at most CHUNK_BYTES and
+// every row lies entirely within one chunk.
+//
+// Direct buffers count against -XX:MaxDirectMemorySize, which defaults to
+// -Xmx; mapped files have no such cap.
+public class OffHeapStore implements AutoCloseable {
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final int rows;
+    private final int rowBytes;
+    private final int rowsPerChunk;
+    private final ByteBuffer[] chunks;
+    private final File file;
+
+    // backingDir null: direct memory; otherwise a temporary file in that directory
+    public OffHeapStore(int rows, int rowBytes, File backingDir) {
+        if ((long) rowBytes > CHUNK_BYTES) throw new IllegalArgumentException("Row too large: " + rowBytes + " bytes");
+        this.rows = rows;
+        this.rowBytes = rowBytes;
+        this.rowsPerChunk = (int) Math.min(rows, CHUNK_BYTES / rowBytes);
+        int chunkCount = (rows + rowsPerChunk - 1) / rowsPerChunk;
+        chunks = new ByteBuffer[chunkCount];
+        try {
+            if (backingDir == null) {
+                file = null;
+                try {
+                    for (int c=0; c<chunkCount; c++) {
+                        chunks[c] = ByteBuffer.allocateDirect(chunkRows(c) * rowBytes);
+                    }
+                } catch (OutOfMemoryError ex) {
+                    throw new IllegalStateException(directMemoryMessage((long) rows * rowBytes), ex);
+                }
+            } else {
+                file = File.createTempFile("grid", ".bin", backingDir);
+                file.deleteOnExit();
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                     FileChannel channel = raf.getChannel()) {
+                    raf.setLength((long) rows * rowBytes);
+                    // Mappings stay valid after the channel is closed
+                    for (int c=0; c<chunkCount; c++) {
+                        long offset = (long) c * rowsPerChunk * rowBytes;
+                        chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) chunkRows(c) * rowBytes);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot create grid file in " + backingDir, ex);
+        }
+        for (ByteBuffer chunk : chunks) chunk.order(ByteOrder.nativeOrder());
+    }
+
+    // Bytes of direct memory this JVM may allocate: -XX:MaxDirectMemorySize, or -Xmx when unset
+    public static long directMemoryLimit() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long limit = Long.parseLong(hotspot.getVMOption("MaxDirectMemorySize").getValue());
+            if (limit > 0) return limit;
+        } catch (RuntimeException ex) {
+            // Not HotSpot; assume the usual default
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    // Direct memory already taken by buffers in this JVM
+    public static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+
+    public static String directMemoryMessage(long bytes) {
+        return String.format("Off-heap grid needs %d MB of direct memory but only %d MB of the %d MB limit is free. "
+            + "Raise it with -XX:MaxDirectMemorySize (default: -Xmx) or use memory-mapped files with --grid-dir DIR.",
+            bytes >> 20, Math.max(0, directMemoryLimit() - directMemoryUsed()) >> 20, directMemoryLimit() >> 20);
+    }
+
+    private int chunkRows(int c) {
+        return Math.min(rowsPerChunk, rows - c * rowsPerChunk);
+    }
+
+    // Chunk holding row r
+    public ByteBuffer chunk(int r) {
+        return chunks[r / rowsPerChunk];
+    }
+
+    public int chunkIndex(int r) {
+        return r / rowsPerChunk;
+    }
+
+    // Byte offset of row r within its chunk
+    public int rowOffset(int r) {
+        return (r % rowsPerChunk) * rowBytes;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getRowBytes() {
+        return rowBytes;
+    }
+
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    public ByteBuffer getChunk(int c) {
+        return chunks[c];
+    }
+
+    public void clear() {
+        byte[] zeros = new byte[rowBytes];
+        for (int r=0; r<rows; r++) {
+            ByteBuffer row = chunk(r).duplicate();
+            row.position(rowOffset(r));
+            row.put(zeros);
+        }
+    }
+
+    // Direct buffers are freed when collected; mapped files are deleted here
+    // (the mapping itself lasts until the buffers are collected)
+    @Override
+    public void close() {
+        if (file != null) file.delete();
+    }
+}
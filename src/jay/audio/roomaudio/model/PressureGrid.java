@@ -0,0 +1,54 @@
+package jay.audio.roomaudio.model;
+
+import java.util.Arrays;
+
+// Pressure field stored row-major in one contiguous array.
+// A one-cell ghost border surrounds the grid so the 5-point stencil can read
+// neighbours of edge cells without leaving the array; ghost cells stay 0.
+public class PressureGrid {
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final double[] data;
+
+    public PressureGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 2;
+        this.data = new double[stride * (height + 2)];
+    }
+
+    // Flat index of cell (i, j), where i is the column (x) and j the row (y)
+    public int index(int i, int j) {
+        return (j + 1) * stride + (i + 1);
+    }
+
+    public double get(int i, int j) {
+        return data[index(i, j)];
+    }
+
+    public void set(int i, int j, double value) {
+        data[index(i, j)] = value;
+    }
+
+    public void clear() {
+        Arrays.fill(data, 0.0);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    // Backing array, including the ghost border
+    public double[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,252 @@
+package jay.audio.roomaudio.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+// Binary room format for large floor plans, little-endian:
+//
+//   magic "AXRM", version
+//   width, height (int), cell size in metres (double, 0 if unknown); batch
+//   runs scale it to the grid's dx (RoomLayout.gridSpacing)
+//   material count (int), then count x (reflection, damping) doubles for IDs
+//   0..count-1; 0 means the room uses the Material enum
+//   obstacle plane: encoding byte, byte length (int), data
+//   material plane: encoding byte, byte length (int), data
+//
+// Planes are row-major. Obstacles are bit-packed (PACKED, LSB first) or run
+// lengths alternating between free and obstacle, starting with free (RLE).
+// Materials are one byte per cell (PACKED) or (ID, run length) pairs (RLE).
+// Run lengths are unsigned LEB128 varints. The writer picks whichever
+// encoding is smaller for each plane.
+//
+// Files are read through a memory-mapped channel and decoded in one pass.
+public class RoomFile {
+    private static final int MAGIC = 0x4d525841; // "AXRM" little-endian
+    private static final int VERSION = 1;
+    private static final byte PACKED = 0, RLE = 1;
+
+    public static boolean isBinary(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= 4 && Integer.reverseBytes(raf.readInt()) == MAGIC;
+        }
+    }
+
+    public static RoomLayout read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Room file too large.");
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            in.order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                return decode(in);
+            } catch (RuntimeException ex) {
+                // Truncated files surface as buffer underflows
+                throw new IOException("Invalid room file (truncated or corrupt).", ex);
+            }
+        }
+    }
+
+    private static RoomLayout decode(ByteBuffer in) throws IOException {
+        if (in.remaining() < 8 || in.getInt() != MAGIC) throw new IOException("Invalid room file.");
+        int version = in.getInt();
+        if (version != VERSION) throw new IOException("Unsupported room file version " + version + ".");
+        int width = in.getInt();
+        int height = in.getInt();
+        if (width <= 0 || height <= 0) throw new IOException("Invalid room size " + width + "x" + height + ".");
+        double cellSize = in.getDouble();
+        if (!(cellSize >= 0) || Double.isInfinite(cellSize)) throw new IOException("Invalid cell size " + cellSize + ".");
+
+        int materialCount = in.getInt();
+        if (materialCount < 0 || materialCount > MaterialTable.SIZE) {
+            throw new IOException("Invalid material count " + materialCount + ".");
+        }
+        MaterialTable table = null;
+        if (materialCount > 0) {
+            table = new MaterialTable();
+            for (int id=0; id<materialCount; id++) {
+                table.set(id, in.getDouble(), in.getDouble());
+            }
+        }
+
+        if ((long) width * height > Integer.MAX_VALUE) throw new IOException("Room too large.");
+        // Both planes decode straight into the packed cells: IDs first, then obstacle bits on top
+        CellProperties cells = new CellProperties(width, height);
+        byte obstacleEncoding = in.get();
+        ByteBuffer obstacles = plane(in);
+        byte materialEncoding = in.get();
+        decodeMaterials(materialEncoding, plane(in), cells.getData());
+        decodeObstacles(obstacleEncoding, obstacles, cells.getData());
+        return new RoomLayout(cells, cellSize, table);
+    }
+
+    // The next length-prefixed plane as its own buffer
+    private static ByteBuffer plane(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) throw new IOException("Invalid room file (plane length).");
+        ByteBuffer data = in.slice();
+        data.limit(length);
+        in.position(in.position() + length);
+        return data;
+    }
+
+    private static void decodeObstacles(byte encoding, ByteBuffer data, byte[] cells) throws IOException {
+        int n = cells.length;
+        if (encoding == PACKED) {
+            if (data.remaining() < (n + 7L) / 8) throw new IOException("Invalid room file (obstacles).");
+            for (int c=0; c<n; c+=8) {
+                int bits = data.get();
+                for (int b=0; b<8 && c+b<n; b++) {
+                    cells[c + b] |= ((bits >> b) & 1) << 7;
+                }
+            }
+        } else if (encoding == RLE) {
+            boolean obstacle = false;
+            int c = 0;
+            while (c < n) {
+                long run = readVarint(data);
+                if (run > n - c) throw new IOException("Invalid room file (obstacle runs).");
+                if (obstacle) {
+                    for (int k=c; k<c+(int) run; k++) cells[k] |= CellProperties.OBSTACLE;
+                }
+                c += (int) run;
+                obstacle = !obstacle;
+            }
+        } else {
+            throw new IOException("Unknown obstacle encoding " + encoding + ".");
+        }
+    }
+
+    private static void decodeMaterials(byte encoding, ByteBuffer data, byte[] cells) throws IOException {
+        int n = cells.length;
+        if (encoding == PACKED) {
+            if (data.remaining() < n) throw new IOException("Invalid room file (materials).");
+            data.get(cells);
+            for (byte id : cells) checkId(id);
+        } else if (encoding == RLE) {
+            int c = 0;
+            while (c < n) {
+                byte id = (byte) checkId(data.get());
+                long run = readVarint(data);
+                if (run > n - c) throw new IOException("Invalid room file (material runs).");
+                Arrays.fill(cells, c, c + (int) run, id);
+                c += (int) run;
+            }
+        } else {
+            throw new IOException("Unknown material encoding " + encoding + ".");
+        }
+    }
+
+    private static int checkId(byte b) throws IOException {
+        if (b < 0) throw new IOException("Invalid material ID " + (b & 0xff) + ".");
+        return b;
+    }
+
+    private static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift=0; shift<63; shift+=7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Invalid room file (run length).");
+    }
+
+    public static void write(RoomLayout layout, File file) throws IOException {
+        int width = layout.getWidth();
+        int height = layout.getHeight();
+        byte[] flags = new byte[width * height];
+        byte[] ids = new byte[width * height];
+        toPlanes(layout.getCells().getData(), flags, ids);
+
+        byte[][] obstacles = smaller(packObstacles(flags), runs(flags, false));
+        byte[][] materials = smaller(new byte[][] {{PACKED}, ids}, runs(ids, true));
+        MaterialTable table = layout.getMaterialTable();
+        int materialCount = table == null ? 0 : MaterialTable.SIZE;
+
+        ByteBuffer header = ByteBuffer.allocate(4 + 4 + 4 + 4 + 8 + 4 + materialCount * 16)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(width);
+        header.putInt(height);
+        header.putDouble(layout.getCellSize());
+        header.putInt(materialCount);
+        for (int id=0; id<materialCount; id++) {
+            header.putDouble(table.getReflection(id));
+            header.putDouble(table.getDamping(id));
+        }
+        header.flip();
+
+        try (FileOutputStream out = new FileOutputStream(file);
+             FileChannel channel = out.getChannel()) {
+            channel.write(header);
+            writePlane(channel, obstacles);
+            writePlane(channel, materials);
+        }
+    }
+
+    // Splits the packed cells into the two planes
+    private static void toPlanes(byte[] cells, byte[] flags, byte[] ids) {
+        for (int c=0; c<cells.length; c++) {
+            flags[c] = (byte) ((cells[c] >> 7) & 1);
+            ids[c] = (byte) (cells[c] & CellProperties.MATERIAL_MASK);
+        }
+    }
+
+    // {encoding}, data
+    private static byte[][] smaller(byte[][] a, byte[][] b) {
+        return a[1].length <= b[1].length ? a : b;
+    }
+
+    private static void writePlane(FileChannel channel, byte[][] plane) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(5).order(ByteOrder.LITTLE_ENDIAN);
+        prefix.put(plane[0][0]);
+        prefix.putInt(plane[1].length);
+        prefix.flip();
+        channel.write(prefix);
+        ByteBuffer data = ByteBuffer.wrap(plane[1]);
+        while (data.hasRemaining()) channel.write(data);
+    }
+
+    private static byte[][] packObstacles(byte[] flags) {
+        byte[] bits = new byte[(flags.length + 7) / 8];
+        for (int c=0; c<flags.length; c++) {
+            bits[c >> 3] |= flags[c] << (c & 7);
+        }
+        return new byte[][] {{PACKED}, bits};
+    }
+
+    // Obstacle runs alternate starting from free and store only lengths;
+    // material runs store (ID, length)
+    private static byte[][] runs(byte[] cells, boolean withValues) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte value = withValues ? cells[0] : 0;
+        int start = 0;
+        for (int c=0; c<=cells.length; c++) {
+            if (c == cells.length || cells[c] != value) {
+                if (withValues) out.write(value);
+                writeVarint(out, c - start);
+                if (c == cells.length) break;
+                value = cells[c];
+                start = c;
+            }
+        }
+        return new byte[][] {{RLE}, out.toByteArray()};
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
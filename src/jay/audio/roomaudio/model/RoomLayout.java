@@ -0,0 +1,108 @@
+package jay.audio.roomaudio.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+// A room as stored on disk: packed cell properties at file resolution.
+// Scene.applyRoom scales it onto the simulation grid.
+public class RoomLayout {
+    private final int width, height;
+    private final CellProperties cells;
+    // Metres per cell as recorded by the file, or 0 when it does not say (text rooms)
+    private final double cellSize;
+    // The room's own material values, or null to use the Material enum
+    private final MaterialTable materialTable;
+
+    // Packs [x][y] planes such as the room builder's
+    public RoomLayout(int width, int height, boolean[][] obstacles, int[][] materials) {
+        this(pack(width, height, obstacles, materials), 0, null);
+    }
+
+    public RoomLayout(CellProperties cells, double cellSize, MaterialTable materialTable) {
+        this.width = cells.getWidth();
+        this.height = cells.getHeight();
+        this.cells = cells;
+        this.cellSize = cellSize;
+        this.materialTable = materialTable;
+    }
+
+    private static CellProperties pack(int width, int height, boolean[][] obstacles, int[][] materials) {
+        CellProperties cells = new CellProperties(width, height);
+        for (int j=0; j<height; j++) {
+            for (int i=0; i<width; i++) {
+                cells.set(i, j, obstacles[i][j], materials[i][j]);
+            }
+        }
+        return cells;
+    }
+
+    // Reads either format; binary rooms are recognised by their header
+    public static RoomLayout load(File file) throws IOException {
+        if (RoomFile.isBinary(file)) {
+            return RoomFile.read(file);
+        }
+        return loadText(file);
+    }
+
+    // Text format: "width height", then height lines of 0/1 obstacles, then height lines of material digits
+    public static RoomLayout loadText(File file) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line = br.readLine();
+            if (line == null) throw new IOException("Invalid room file.");
+            String[] parts = line.split(" ");
+            int loadedWidth = Integer.parseInt(parts[0]);
+            int loadedHeight = Integer.parseInt(parts[1]);
+
+            CellProperties cells = new CellProperties(loadedWidth, loadedHeight);
+            byte[] data = cells.getData();
+            for (int j=0; j<loadedHeight; j++) {
+                line = br.readLine();
+                if(line == null || line.length()<loadedWidth)
+                    throw new IOException("Invalid room file format (obstacles).");
+                for (int i=0; i<loadedWidth; i++) {
+                    if (line.charAt(i) == '1') data[j*loadedWidth + i] = (byte) CellProperties.OBSTACLE;
+                }
+            }
+
+            for (int j=0;j<loadedHeight;j++){
+                line = br.readLine();
+                if(line==null || line.length()<loadedWidth)
+                    throw new IOException("Invalid room file format (materials).");
+                for (int i=0;i<loadedWidth;i++) {
+                    char c = line.charAt(i);
+                    if(c < '0' || c>'9') throw new IOException("Invalid material digit.");
+                    data[j*loadedWidth + i] |= c - '0';
+                }
+            }
+            return new RoomLayout(cells, 0, null);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public CellProperties getCells() {
+        return cells;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    // Metres per simulation cell once the room is scaled across gridWidth
+    // cells, or the Scene default of 1 when the file has no cell size
+    public double gridSpacing(int gridWidth) {
+        return cellSize > 0 ? cellSize * width / gridWidth : 1.0;
+    }
+
+    public MaterialTable getMaterialTable() {
+        return materialTable;
+    }
+}
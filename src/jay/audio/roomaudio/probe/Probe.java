@@ -0,0 +1,31 @@
+package jay.audio.roomaudio.probe;
+
+// A virtual microphone at one grid cell.
+public class Probe {
+    private final int id;
+    private final int x, y;
+    private final SampleRing ring;
+
+    Probe(int id, int x, int y, int capacity) {
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.ring = new SampleRing(capacity);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public SampleRing getRing() {
+        return ring;
+    }
+}
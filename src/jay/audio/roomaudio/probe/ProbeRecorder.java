@@ -0,0 +1,134 @@
+package jay.audio.roomaudio.probe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+import jay.audio.roomaudio.io.WavWriter;
+
+// Background writer that drains every probe's ring into its own file
+// (probe_<id>_<x>_<y>.wav or .f32). It runs on its own thread so disk I/O
+// never stalls the simulation; probes added while recording are picked up on
+// the next pass.
+//
+// A probe whose ring overflows loses samples, so its file has gaps. close()
+// writes recording.txt with each probe's written and dropped sample counts.
+public class ProbeRecorder implements AutoCloseable {
+    private static final long POLL_NANOS = 5_000_000L;
+
+    private final ProbeSet probes;
+    private final File dir;
+    private final int sampleRate;
+    private final boolean raw;
+    private final Map<Probe, WavWriter> writers = new LinkedHashMap<>();
+    // Per probe: samples written, and the ring's dropped count when recording started.
+    // Filled by the writer thread, read by getDroppedSamples from any thread.
+    private final Map<Probe, long[]> counts = new ConcurrentHashMap<>();
+    private final float[] chunk = new float[4096];
+
+    private final Thread thread;
+    private volatile boolean stopped = false;
+    private volatile IOException failure;
+
+    // sampleRate: samples per second of simulated time, i.e. 1/dt
+    public ProbeRecorder(ProbeSet probes, File dir, int sampleRate, boolean raw) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir.getPath());
+        this.probes = probes;
+        this.dir = dir;
+        this.sampleRate = sampleRate;
+        this.raw = raw;
+        this.thread = new Thread(this::run, "probe-writer");
+        this.thread.setDaemon(true);
+
+        // Anything captured before recording started is stale
+        for (Probe probe : probes.getProbes()) {
+            while (probe.getRing().drain(chunk) > 0) { }
+            counts.put(probe, new long[] {0, probe.getRing().getDropped()});
+        }
+        probes.setCapturing(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (!stopped) {
+                drainAll();
+                LockSupport.parkNanos(POLL_NANOS);
+            }
+            drainAll();
+        } catch (IOException ex) {
+            failure = ex;
+            probes.setCapturing(false);
+        } finally {
+            for (WavWriter writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (IOException ex) {
+                    if (failure == null) failure = ex;
+                }
+            }
+        }
+    }
+
+    private void drainAll() throws IOException {
+        for (Probe probe : probes.getProbes()) {
+            WavWriter writer = writers.get(probe);
+            if (writer == null) {
+                String name = "probe_" + probe.getId() + "_" + probe.getX() + "_" + probe.getY() + (raw ? ".f32" : ".wav");
+                writer = new WavWriter(new File(dir, name), sampleRate, 1, raw);
+                writers.put(probe, writer);
+                counts.putIfAbsent(probe, new long[2]);
+            }
+            long[] count = counts.get(probe);
+            int n;
+            while ((n = probe.getRing().drain(chunk)) > 0) {
+                writer.write(chunk, n);
+                count[0] += n;
+            }
+        }
+    }
+
+    // Stops capturing, writes out what is buffered, closes the files and writes recording.txt
+    @Override
+    public void close() throws IOException {
+        probes.setCapturing(false);
+        stopped = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try (PrintWriter out = new PrintWriter(new File(dir, "recording.txt"))) {
+            out.println("sampleRate=" + sampleRate);
+            out.println("droppedSamples=" + getDroppedSamples());
+            for (Map.Entry<Probe, WavWriter> entry : writers.entrySet()) {
+                Probe probe = entry.getKey();
+                String key = "probe." + probe.getId() + ".";
+                out.println(key + "position=" + probe.getX() + "," + probe.getY());
+                out.println(key + "samples=" + counts.get(probe)[0]);
+                out.println(key + "droppedSamples=" + dropped(probe));
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    // Samples lost to full rings since recording started, over every probe recorded so
+    // far; the files are missing that many. Exact once close() has returned.
+    public long getDroppedSamples() {
+        long total = 0;
+        for (Probe probe : counts.keySet()) {
+            total += dropped(probe);
+        }
+        return total;
+    }
+
+    private long dropped(Probe probe) {
+        long[] count = counts.get(probe);
+        return probe.getRing().getDropped() - (count == null ? 0 : count[1]);
+    }
+}
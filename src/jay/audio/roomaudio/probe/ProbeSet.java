@@ -0,0 +1,56 @@
+package jay.audio.roomaudio.probe;
+
+import jay.audio.roomaudio.engine.StepEngine;
+
+// The probes of one simulation. The list is copy-on-write, so the simulation
+// thread reads it without locks while the UI adds or removes probes; each
+// probe's ring is preallocated so capturing a step allocates nothing.
+public class ProbeSet {
+    // Samples buffered per probe before the writer must catch up
+    public static final int RING_CAPACITY = 1 << 16;
+
+    private volatile Probe[] probes = new Probe[0];
+    private volatile boolean capturing = false;
+    private int nextId = 0;
+
+    public synchronized Probe add(int x, int y) {
+        Probe probe = new Probe(nextId++, x, y, RING_CAPACITY);
+        Probe[] next = new Probe[probes.length + 1];
+        System.arraycopy(probes, 0, next, 0, probes.length);
+        next[probes.length] = probe;
+        probes = next;
+        return probe;
+    }
+
+    public synchronized void clear() {
+        probes = new Probe[0];
+    }
+
+    public Probe[] getProbes() {
+        return probes;
+    }
+
+    public boolean isEmpty() {
+        return probes.length == 0;
+    }
+
+    // Samples are only taken while a consumer is attached
+    public void setCapturing(boolean capturing) {
+        this.capturing = capturing;
+    }
+
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    // Simulation thread, once per step. Returns how many samples were dropped
+    // because a ring was full.
+    public int capture(StepEngine engine) {
+        if (!capturing) return 0;
+        int dropped = 0;
+        for (Probe probe : probes) {
+            if (!probe.getRing().offer((float) engine.sample(probe.getX(), probe.getY()))) dropped++;
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,57 @@
+package jay.audio.roomaudio.probe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer, single-consumer ring of samples. The simulation thread
+// offers one sample per step and never blocks: if the consumer falls behind
+// the sample is dropped and counted instead.
+public class SampleRing {
+    private final float[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to write, producer only
+    private final AtomicLong tail = new AtomicLong(); // next slot to read, consumer only
+    private long cachedTail = 0; // producer's last view of tail
+    private volatile long dropped = 0;
+
+    // capacity is rounded up to a power of two
+    public SampleRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        buffer = new float[size];
+        mask = size - 1;
+    }
+
+    // Producer side
+    public boolean offer(float sample) {
+        long h = head.get();
+        if (h - cachedTail >= buffer.length) {
+            cachedTail = tail.get();
+            if (h - cachedTail >= buffer.length) {
+                dropped++;
+                return false;
+            }
+        }
+        buffer[(int) h & mask] = sample;
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    // Consumer side: moves up to dst.length samples into dst and returns how many
+    public int drain(float[] dst) {
+        long t = tail.get();
+        int n = (int) Math.min(head.get() - t, dst.length);
+        for (int i=0; i<n; i++) {
+            dst[i] = buffer[(int) (t + i) & mask];
+        }
+        tail.lazySet(t + n);
+        return n;
+    }
+
+    // Samples refused since the ring was created
+    public long getDropped() {
+        return dropped;
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+}
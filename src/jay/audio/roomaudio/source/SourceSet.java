@@ -0,0 +1,195 @@
+package jay.audio.roomaudio.source;
+
+import java.util.Arrays;
+
+// All sources of a scene, stored as parallel arrays so injection is one tight
+// loop over primitives however many sources there are. Each source plays its
+// waveform from the step it was placed; the set keeps the step counter,
+// which engines advance after every step they compute.
+//
+// Owned by the simulation thread: UI changes go through SimulationLoop.submit.
+public class SourceSet {
+    public static final double DEFAULT_GAIN = 50.0;
+
+    private final int width, height;
+
+    private int count = 0;
+    private int[] x = new int[4];
+    private int[] y = new int[4];
+    // Flat index in the strided layout of PressureGrid/FloatPressureGrid
+    private int[] cell = new int[4];
+    private double[] gain = new double[4];
+    private long[] start = new long[4];
+    private double[][] table = new double[4][];
+    private boolean[] loop = new boolean[4];
+    private Waveform[] waveform = new Waveform[4];
+
+    private long step = 0;
+    // Bumped whenever a source is added, removed or changed, or the step is set
+    // other than by advance(), so copies held elsewhere know to refresh
+    private long version = 0;
+
+    public SourceSet(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // Returns the new source's index
+    public int add(int sx, int sy, Waveform waveform, double sourceGain) {
+        if (sx < 0 || sx >= width || sy < 0 || sy >= height) {
+            throw new IllegalArgumentException("Source outside the grid: " + sx + "," + sy);
+        }
+        if (count == x.length) grow();
+        int s = count++;
+        x[s] = sx;
+        y[s] = sy;
+        cell[s] = (sy + 1) * (width + 2) + sx + 1;
+        gain[s] = sourceGain;
+        setWaveform(s, waveform);
+        return s;
+    }
+
+    public int add(int sx, int sy) {
+        return add(sx, sy, Waveform.continuous(), DEFAULT_GAIN);
+    }
+
+    // Swaps the last source into slot s, so indices of later sources change
+    public void remove(int s) {
+        version++;
+        int last = --count;
+        x[s] = x[last];
+        y[s] = y[last];
+        cell[s] = cell[last];
+        gain[s] = gain[last];
+        start[s] = start[last];
+        table[s] = table[last];
+        loop[s] = loop[last];
+        waveform[s] = waveform[last];
+        table[last] = null;
+        waveform[last] = null;
+    }
+
+    // Keeps only the first n sources
+    public void truncate(int n) {
+        version++;
+        for (int s=n; s<count; s++) {
+            table[s] = null;
+            waveform[s] = null;
+        }
+        count = Math.min(count, n);
+    }
+
+    public void clear() {
+        truncate(0);
+    }
+
+    // Changes the waveform and restarts it from the current step
+    public void setWaveform(int s, Waveform w) {
+        version++;
+        waveform[s] = w;
+        table[s] = w.getTable();
+        loop[s] = w.isLooping();
+        start[s] = step;
+    }
+
+    public void setAll(Waveform waveform) {
+        for (int s=0; s<count; s++) setWaveform(s, waveform);
+    }
+
+    // Adds every source's signal for the current step, times scale, to a field
+    // in the strided ghost-border layout
+    public void inject(double[] field, double scale) {
+        for (int s=0; s<count; s++) {
+            field[cell[s]] += scale * signal(s, 0);
+        }
+    }
+
+    public void inject(float[] field, double scale) {
+        for (int s=0; s<count; s++) {
+            field[cell[s]] += (float) (scale * signal(s, 0));
+        }
+    }
+
+    // Gain-scaled signal of source s, ahead steps after the current one
+    public double signal(int s, int ahead) {
+        long t = step + ahead - start[s];
+        double[] values = table[s];
+        if (t >= values.length) {
+            if (!loop[s]) return 0;
+            t %= values.length;
+        }
+        return gain[s] * values[(int) t];
+    }
+
+    // False once a one-shot waveform has finished
+    public boolean isSounding(int s) {
+        return loop[s] || step - start[s] < table[s].length;
+    }
+
+    public void advance(int steps) {
+        step += steps;
+    }
+
+    // Back to step 0 with every waveform restarted, e.g. when the field is cleared
+    public void rewind() {
+        version++;
+        step = 0;
+        Arrays.fill(start, 0, count, 0L);
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    // For restoring a checkpoint; waveforms keep their start steps
+    public void setStep(long step) {
+        version++;
+        this.step = step;
+    }
+
+    // Step at which source s started its waveform
+    public long getStart(int s) {
+        return start[s];
+    }
+
+    public void setStart(int s, long startStep) {
+        version++;
+        start[s] = startStep;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Waveform getWaveform(int s) {
+        return waveform[s];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getX(int s) {
+        return x[s];
+    }
+
+    public int getY(int s) {
+        return y[s];
+    }
+
+    public double getGain(int s) {
+        return gain[s];
+    }
+
+    private void grow() {
+        int n = x.length * 2;
+        x = Arrays.copyOf(x, n);
+        y = Arrays.copyOf(y, n);
+        cell = Arrays.copyOf(cell, n);
+        gain = Arrays.copyOf(gain, n);
+        start = Arrays.copyOf(start, n);
+        table = Arrays.copyOf(table, n);
+        loop = Arrays.copyOf(loop, n);
+        waveform = Arrays.copyOf(waveform, n);
+    }
+}
@@ -0,0 +1,142 @@
+package jay.audio.roomaudio.source;
+
+import java.io.File;
+import java.io.IOException;
+
+import jay.audio.roomaudio.acoustics.Resampler;
+import jay.audio.roomaudio.io.WavReader;
+import jay.audio.roomaudio.model.SoundSource;
+
+// A source signal precomputed at the solver rate: value n is injected on the
+// n-th step after the source starts. One-shot tables are silent once they run
+// out; looping tables repeat. Tables are immutable, so sources can share them.
+public final class Waveform {
+    // Longest table a looping sine may use to fit a whole number of cycles
+    private static final int MAX_LOOP = 1 << 16;
+
+    private final double[] table;
+    private final boolean loop;
+
+    private Waveform(double[] table, boolean loop) {
+        this.table = table;
+        this.loop = loop;
+    }
+
+    // Arbitrary values at the solver rate, e.g. restored from a checkpoint
+    public static Waveform of(double[] table, boolean loop) {
+        if (table.length == 0) throw new IllegalArgumentException("Empty waveform");
+        return new Waveform(table.clone(), loop);
+    }
+
+    // The original behaviour: the same pressure added every step
+    public static Waveform continuous() {
+        return new Waveform(new double[] {1.0}, true);
+    }
+
+    // One step of unit pressure, for impulse responses
+    public static Waveform impulse() {
+        return new Waveform(new double[] {1.0}, false);
+    }
+
+    // Ricker (Mexican hat) pulse peaking at peakFrequency, delayed so it starts near 0
+    public static Waveform ricker(double peakFrequency, double dt) {
+        checkFrequency(peakFrequency, dt);
+        double delay = 1.5 / peakFrequency;
+        int n = (int) Math.ceil(2 * delay / dt) + 1;
+        double[] table = new double[n];
+        for (int i=0; i<n; i++) {
+            double a = Math.PI * peakFrequency * (i * dt - delay);
+            table[i] = (1 - 2*a*a) * Math.exp(-a*a);
+        }
+        return new Waveform(table, false);
+    }
+
+    // Looping unit sine. The table holds a whole number of cycles, so the
+    // frequency is rounded to the nearest one that fits in MAX_LOOP steps.
+    public static Waveform sine(double frequency, double dt) {
+        checkFrequency(frequency, dt);
+        double period = 1.0 / (frequency * dt);
+        int bestCycles = 1, bestLength = Math.max(1, (int) Math.round(period));
+        double bestErr = Double.MAX_VALUE;
+        for (int cycles=1; cycles * period <= MAX_LOOP; cycles++) {
+            double exact = cycles * period;
+            double err = Math.abs(exact - Math.round(exact)) / exact;
+            if (err < bestErr) {
+                bestErr = err;
+                bestCycles = cycles;
+                bestLength = (int) Math.round(exact);
+                if (err < 1e-6) break;
+            }
+        }
+        double[] table = new double[bestLength];
+        for (int i=0; i<bestLength; i++) {
+            table[i] = Math.sin(2 * Math.PI * bestCycles * i / bestLength);
+        }
+        return new Waveform(table, true);
+    }
+
+    public static Waveform sine(SoundSource source, double dt) {
+        return sine(source.getFrequency(), dt);
+    }
+
+    // Recorded signal, resampled from its own rate to the solver rate; played once
+    public static Waveform sample(float[] data, double sampleRate, double dt) {
+        float[] resampled = Resampler.resample(data, sampleRate, 1.0 / dt);
+        double[] table = new double[resampled.length];
+        for (int i=0; i<table.length; i++) table[i] = resampled[i];
+        return new Waveform(table, false);
+    }
+
+    // First channel of a WAV file
+    public static Waveform load(File file, double dt) throws IOException {
+        WavReader wav = WavReader.read(file);
+        return sample(wav.getChannels()[0], wav.getSampleRate(), dt);
+    }
+
+    // continuous | impulse | ricker:HZ | sine:HZ | sample:FILE
+    public static Waveform parse(String spec, double dt) throws IOException {
+        int colon = spec.indexOf(':');
+        String kind = (colon < 0 ? spec : spec.substring(0, colon)).toLowerCase();
+        String arg = colon < 0 ? null : spec.substring(colon + 1);
+        switch (kind) {
+            case "continuous": return continuous();
+            case "impulse": return impulse();
+            case "ricker": return ricker(parseFrequency(arg, spec), dt);
+            case "sine": return sine(parseFrequency(arg, spec), dt);
+            case "sample":
+                if (arg == null) throw new IllegalArgumentException("Missing file in " + spec);
+                return load(new File(arg), dt);
+            default: throw new IllegalArgumentException("Unknown waveform " + spec);
+        }
+    }
+
+    private static double parseFrequency(String arg, String spec) {
+        if (arg == null) throw new IllegalArgumentException("Missing frequency in " + spec);
+        return Double.parseDouble(arg);
+    }
+
+    private static void checkFrequency(double frequency, double dt) {
+        double nyquist = 0.5 / dt;
+        if (!(frequency > 0 && frequency < nyquist)) {
+            throw new IllegalArgumentException(String.format(
+                "Frequency must be between 0 and %.1f Hz (solver Nyquist): %s", nyquist, frequency));
+        }
+    }
+
+    double[] getTable() {
+        return table;
+    }
+
+    // Copy of the values, one per step
+    public double[] getValues() {
+        return table.clone();
+    }
+
+    public int getLength() {
+        return table.length;
+    }
+
+    public boolean isLooping() {
+        return loop;
+    }
+}
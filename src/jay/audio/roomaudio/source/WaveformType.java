@@ -0,0 +1,31 @@
+package jay.audio.roomaudio.source;
+
+import jay.audio.roomaudio.model.SoundSource;
+
+// Waveforms selectable from the UI; sample files are only available headless
+public enum WaveformType {
+    CONTINUOUS("Continuous"),
+    IMPULSE("Impulse"),
+    RICKER("Ricker Pulse"),
+    SINE("Sine");
+
+    private final String name;
+
+    WaveformType(String name) {
+        this.name = name;
+    }
+
+    public String getDisplayName() {
+        return name;
+    }
+
+    // Ricker and sine use the source's frequency
+    public Waveform create(SoundSource source, double dt) {
+        switch (this) {
+            case IMPULSE: return Waveform.impulse();
+            case RICKER: return Waveform.ricker(source.getFrequency(), dt);
+            case SINE: return Waveform.sine(source, dt);
+            default: return Waveform.continuous();
+        }
+    }
+}
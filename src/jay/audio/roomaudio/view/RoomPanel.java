@@ -5,91 +5,154 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.List;
 
 import jay.audio.roomaudio.model.Wave;
 import jay.audio.roomaudio.controller.RoomController;
+import jay.audio.roomaudio.engine.Frame;
+import jay.audio.roomaudio.engine.TripleBuffer;
+import jay.audio.roomaudio.model.CellProperties;
+import jay.audio.roomaudio.probe.Probe;
 
 public class RoomPanel extends JPanel {
+    // Obstacles in a distinct semi-transparent color: dark red, alpha=100
+    private static final int OBSTACLE_ARGB = (100<<24) | (139<<16);
+    private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 160);
+
+    // Gray level for each of the 256 normalized pressure steps. The extra entry
+    // absorbs float rounding when the maximum lands just past 255.
+    private static final int[] GRAY_LUT = new int[257];
+    static {
+        for (int i=0; i<GRAY_LUT.length; i++) {
+            int gray = Math.min(i, 255);
+            GRAY_LUT[i] = (gray<<16)|(gray<<8)|gray;
+        }
+    }
+
     private RoomController controller;
-    private double[][] pressureField;
+    private TripleBuffer<Frame> frames;
+
+    // Reused every frame; pixels are written straight into the raster's int array
+    private BufferedImage image;
+    private int[] pixels;
+
+    // Rebuilt only when the room geometry changes
+    private BufferedImage obstacleOverlay;
+    private long overlayVersion = -1;
+
+    private volatile boolean hudVisible = false;
 
     public RoomPanel(RoomController controller, int width, int height) {
         this.controller = controller;
         this.setBackground(Color.WHITE);
         setPreferredSize(new Dimension(width, height));
 
-        this.pressureField = new double[width][height];
-
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                controller.setSourcePosition(e.getX(), e.getY());
+                // Shift-click places a probe (virtual microphone) instead of a source
+                if (e.isShiftDown()) {
+                    controller.addProbe(e.getX(), e.getY());
+                    repaint();
+                } else {
+                    controller.setSourcePosition(e.getX(), e.getY());
+                }
             }
         });
     }
 
-    public void updatePressureField(double[][] field) {
-        this.pressureField = field;
+    // Frames are published by the simulation thread; painting only ever reads the newest one
+    public void setFrames(TripleBuffer<Frame> frames) {
+        this.frames = frames;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (pressureField == null) return;
-
-        int w = pressureField.length;
-        int h = pressureField[0].length;
-        BufferedImage img = new BufferedImage(w,h,BufferedImage.TYPE_INT_RGB);
-
-        double min = Double.POSITIVE_INFINITY;
-        double max = Double.NEGATIVE_INFINITY;
-        for(int i=0;i<w;i++){
-            for(int j=0;j<h;j++){
-                if(pressureField[i][j]<min) min=pressureField[i][j];
-                if(pressureField[i][j]>max) max=pressureField[i][j];
-            }
+        if (frames == null) return;
+        long paintStart = System.nanoTime();
+
+        Frame frame = frames.acquire();
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        if (image == null || image.getWidth() != w || image.getHeight() != h) {
+            image = new BufferedImage(w,h,BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            overlayVersion = -1;
         }
 
-        double range = (max - min);
-        if(range < 1e-9) range = 1e-9;
+        // The solver records the range while copying the frame, so no extra scan here
+        float min = frame.getMin();
+        float range = frame.getMax() - min;
+        if(range < 1e-9f) range = 1e-9f;
+        float scale = 255 / range;
 
-        for(int i=0;i<w;i++){
-            for(int j=0;j<h;j++){
-                double val = pressureField[i][j];
-                double norm = (val - min)/range;
-                int gray = (int)(norm*255);
-                img.setRGB(i,j,(gray<<16)|(gray<<8)|gray);
-            }
+        float[] data = frame.getValues();
+        int[] out = pixels;
+        for(int k=0;k<data.length;k++){
+            out[k] = GRAY_LUT[(int)((data[k] - min)*scale)];
         }
 
-        g.drawImage(img,0,0,null);
-
-        // Overlay obstacles in a distinct semi-transparent color
-        // Let's say dark red with some transparency
-        g.setColor(new Color(139,0,0,100)); // RGBA (Dark Red, Alpha=100)
-        boolean[][] obstacles = controllerGetObstacles();
-        if(obstacles != null) {
-            for (int i=0;i<w;i++) {
-                for (int j=0;j<h;j++) {
-                    if(obstacles[i][j]) {
-                        g.fillRect(i,j,1,1);
-                    }
-                }
-            }
+        g.drawImage(image,0,0,null);
+
+        updateObstacleOverlay(w, h);
+        g.drawImage(obstacleOverlay,0,0,null);
+
+        g.setColor(Color.CYAN);
+        for (Probe probe : controller.getProbes()) {
+            int x = probe.getX(), y = probe.getY();
+            g.drawLine(x-3, y, x+3, y);
+            g.drawLine(x, y-3, x, y+3);
+        }
+
+        if (hudVisible) drawHud(g);
+        controller.getMetrics().recordRender(System.nanoTime() - paintStart);
+    }
+
+    // Solver and render metrics over the last second, top left
+    private void drawHud(Graphics g) {
+        List<String> lines = controller.getMetrics().current().summary();
+        FontMetrics fm = g.getFontMetrics();
+        int lineHeight = fm.getHeight();
+        int boxWidth = 0;
+        for (String line : lines) boxWidth = Math.max(boxWidth, fm.stringWidth(line));
+        g.setColor(HUD_BACKGROUND);
+        g.fillRect(4, 4, boxWidth + 8, lines.size() * lineHeight + 6);
+        g.setColor(Color.GREEN);
+        for (int n=0; n<lines.size(); n++) {
+            g.drawString(lines.get(n), 8, 6 + n * lineHeight + fm.getAscent());
         }
     }
 
-    private boolean[][] controllerGetObstacles() {
-        // Reflection: The code currently does not provide a public getter for obstacles.
-        // We can add a getter in RoomController or just make obstacles public.
-        // Let's add a simple public method in RoomController to retrieve obstacles array:
-        return controller.getObstacles();
+    public void setHudVisible(boolean visible) {
+        hudVisible = visible;
+        repaint();
+    }
+
+    public boolean isHudVisible() {
+        return hudVisible;
+    }
+
+    private void updateObstacleOverlay(int w, int h) {
+        // Read the version first so a room applied mid-rebuild triggers another rebuild
+        long version = controller.getGeometryVersion();
+        if (obstacleOverlay != null && version == overlayVersion) return;
+
+        if (obstacleOverlay == null || obstacleOverlay.getWidth() != w || obstacleOverlay.getHeight() != h) {
+            obstacleOverlay = new BufferedImage(w,h,BufferedImage.TYPE_INT_ARGB);
+        }
+        int[] overlay = ((DataBufferInt) obstacleOverlay.getRaster().getDataBuffer()).getData();
+        // Same row-major layout as the image, so one linear pass
+        byte[] cells = controller.getCells().getData();
+        for (int k=0;k<overlay.length;k++) {
+            overlay[k] = CellProperties.isObstacle(cells[k]) ? OBSTACLE_ARGB : 0;
+        }
+        overlayVersion = version;
     }
 
     public void setGridSize(int w, int h) {
-        this.pressureField = new double[w][h];
         this.setPreferredSize(new Dimension(w, h));
         this.revalidate();
     }
-}
\ No newline at end of file
+}